@@ -3,7 +3,9 @@ package com.xcs.wx.aop;
 import cn.hutool.core.annotation.AnnotationUtil;
 import com.baomidou.dynamic.datasource.annotation.DS;
 import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import com.xcs.wx.exception.BizException;
 import com.xcs.wx.util.DSNameUtil;
+import com.xcs.wx.util.DecryptStateHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -31,7 +33,12 @@ public class RepositoryAspect {
             DS dsAnnotation = AnnotationUtil.getAnnotation(targetClass, DS.class);
             // 有指定的注解
             if (dsAnnotation != null) {
-                DynamicDataSourceContextHolder.push(DSNameUtil.getDSName(dsAnnotation.value()));
+                String dsName = DSNameUtil.getDSName(dsAnnotation.value());
+                // 数据库还在后台解密中
+                if (DecryptStateHolder.isPending(dsName)) {
+                    throw new BizException(-1, "数据库正在解密中，暂不可用，请稍后再试！");
+                }
+                DynamicDataSourceContextHolder.push(dsName);
             }
             return joinPoint.proceed();
         } finally {
@@ -0,0 +1,76 @@
+package com.xcs.wx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据库解密配置
+ *
+ * @author xcs
+ * @date 2024年7月2日10:21:37
+ **/
+@Data
+@Configuration(proxyBeanMethods = false)
+@ConfigurationProperties(prefix = "decrypt")
+public class DecryptProperties {
+
+    /**
+     * 是否开启单文件按页并行解密
+     */
+    private boolean parallel = true;
+
+    /**
+     * 开启并行解密的文件大小阈值，单位：字节
+     */
+    private long parallelThreshold = 64L * 1024 * 1024;
+
+    /**
+     * 同时解密的文件数量，默认与CPU核数一致
+     */
+    private int fileParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 是否开启增量解密，只解密密文发生变化的页
+     */
+    private boolean incremental = true;
+
+    /**
+     * 是否直接读取加密数据库，聊天记录等热点查询不依赖解密后的文件，
+     * 读取的是微信正在写入的文件，只在有可用索引时生效，默认关闭
+     */
+    private boolean directRead = false;
+
+    /**
+     * 直接读取时每个数据库最多缓存的页数，每页4096字节
+     */
+    private int pageCacheSize = 2048;
+
+    /**
+     * 解密完成后是否为查询创建索引并执行ANALYZE
+     */
+    private boolean optimize = true;
+
+    /**
+     * 优化时是否执行VACUUM，会重写整个文件，之后该文件无法增量解密
+     */
+    private boolean vacuum = false;
+
+    /**
+     * 是否稀疏输出，填充页面（全0页）不再截断后续内容，而是在输出文件中留下空洞
+     */
+    private boolean sparse = false;
+
+    /**
+     * 解密后加载到内存中的数据库，查询不再读取磁盘，例如：MicroMsg.db、Misc.db，默认不加载
+     */
+    private List<String> inMemoryDbs = new ArrayList<>();
+
+    /**
+     * 数据源的连接池空闲多久后关闭，再次访问时重新创建，单位：毫秒，小于等于0时不关闭
+     */
+    private long dataSourceIdleTimeout = 30L * 60 * 1000;
+}
@@ -0,0 +1,108 @@
+package com.xcs.wx.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 解密后数据库的连接配置，解密后的数据库只读不写，按只读场景调优
+ *
+ * @author xcs
+ * @date 2024年7月16日15:08:41
+ **/
+@Data
+@Configuration(proxyBeanMethods = false)
+@ConfigurationProperties(prefix = "sqlite")
+public class SqliteProperties {
+
+    /**
+     * 默认的连接配置
+     */
+    private Profile profile = new Profile(true, true, true, 256L * 1024 * 1024, -32768, "MEMORY");
+
+    /**
+     * 所有数据源的连接总数上限，超出时关闭最久未使用的空闲连接
+     */
+    private int maxConnections = 64;
+
+    /**
+     * 所有连接的页缓存总大小上限，按每个连接的cache_size估算，单位：字节
+     */
+    private long maxCacheSize = 1024L * 1024 * 1024;
+
+    /**
+     * 按数据库名称覆盖的连接配置，key为匹配数据库名称的正则表达式，只需要填写需要覆盖的配置项
+     */
+    private Map<String, Profile> overrides = new LinkedHashMap<>();
+
+    /**
+     * 获取数据库的连接配置，第一个匹配的覆盖配置生效
+     *
+     * @param dbName 数据库名称
+     * @return 连接配置
+     */
+    public Profile resolve(String dbName) {
+        return overrides.entrySet().stream()
+                .filter(entry -> dbName.matches(entry.getKey()))
+                .findFirst()
+                .map(entry -> profile.merge(entry.getValue()))
+                .orElse(profile);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Profile {
+
+        /**
+         * 是否以只读方式打开
+         */
+        private Boolean readOnly;
+
+        /**
+         * 是否声明文件不会被修改（immutable=1），SQLite不再加锁也不再检查文件变化
+         */
+        private Boolean immutable;
+
+        /**
+         * 是否禁止执行写入语句（PRAGMA query_only）
+         */
+        private Boolean queryOnly;
+
+        /**
+         * 内存映射读取的大小，单位：字节，0表示不使用内存映射（PRAGMA mmap_size）
+         */
+        private Long mmapSize;
+
+        /**
+         * 每个连接的页缓存大小，正数为页数，负数为KB（PRAGMA cache_size）
+         */
+        private Integer cacheSize;
+
+        /**
+         * 临时表与临时索引的存储位置：DEFAULT、FILE、MEMORY（PRAGMA temp_store）
+         */
+        private String tempStore;
+
+        /**
+         * 用覆盖配置中不为空的配置项替换当前的配置项
+         *
+         * @param override 覆盖配置
+         * @return 合并后的配置
+         */
+        public Profile merge(Profile override) {
+            return new Profile(
+                    override.readOnly != null ? override.readOnly : readOnly,
+                    override.immutable != null ? override.immutable : immutable,
+                    override.queryOnly != null ? override.queryOnly : queryOnly,
+                    override.mmapSize != null ? override.mmapSize : mmapSize,
+                    override.cacheSize != null ? override.cacheSize : cacheSize,
+                    override.tempStore != null ? override.tempStore : tempStore);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.xcs.wx.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.xcs.wx.util.RoundRobinExecutor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池配置
+ *
+ * @author xcs
+ * @date 2024年7月2日14:11:26
+ **/
+@Configuration(proxyBeanMethods = false)
+public class ThreadPoolConfig {
+
+    /**
+     * 数据库解密线程池，线程数由 decrypt.file-parallelism 决定，默认与CPU核数一致
+     *
+     * @param decryptProperties 解密配置
+     * @return ThreadPoolExecutor
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor decryptExecutor(DecryptProperties decryptProperties) {
+        int poolSize = Math.max(1, decryptProperties.getFileParallelism());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                ThreadFactoryBuilder.create().setNamePrefix("wx-decrypt-").setDaemon(true).build());
+        // 空闲时释放线程
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 数据库解密调度器，多个账号同时解密时按账号轮流占用 decryptExecutor 的线程
+     *
+     * @param decryptExecutor   数据库解密线程池
+     * @param decryptProperties 解密配置
+     * @return RoundRobinExecutor
+     */
+    @Bean
+    public RoundRobinExecutor decryptScheduler(ThreadPoolExecutor decryptExecutor, DecryptProperties decryptProperties) {
+        return new RoundRobinExecutor(decryptExecutor, Math.max(1, decryptProperties.getFileParallelism()));
+    }
+}
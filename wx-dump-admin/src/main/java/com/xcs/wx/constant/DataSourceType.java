@@ -3,6 +3,7 @@ package com.xcs.wx.constant;
 import cn.hutool.extra.spring.SpringUtil;
 import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
 import com.xcs.wx.service.UserService;
+import com.xcs.wx.util.DecryptStateHolder;
 
 import javax.sql.DataSource;
 import java.util.Collections;
@@ -85,6 +86,8 @@ public class DataSourceType {
         // 筛选出符合模式的数据源键，并进行降序排序
         return dataSources.keySet().stream()
                 .filter(key -> key.matches(pattern))
+                // 排除还在解密中的数据库
+                .filter(key -> !DecryptStateHolder.isPending(key))
                 .sorted(Comparator.naturalOrder())
                 .collect(Collectors.toList());
     }
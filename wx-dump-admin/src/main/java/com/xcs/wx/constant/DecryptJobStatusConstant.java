@@ -0,0 +1,28 @@
+package com.xcs.wx.constant;
+
+/**
+ * 解密任务状态常量
+ *
+ * @author xcs
+ * @date 2024年7月6日10:05:31
+ **/
+public class DecryptJobStatusConstant {
+
+    private DecryptJobStatusConstant() {
+    }
+
+    /**
+     * 运行中
+     */
+    public static final String RUNNING = "running";
+
+    /**
+     * 已完成
+     */
+    public static final String COMPLETED = "completed";
+
+    /**
+     * 已取消
+     */
+    public static final String CANCELLED = "cancelled";
+}
@@ -0,0 +1,33 @@
+package com.xcs.wx.constant;
+
+/**
+ * 解密状态常量
+ *
+ * @author xcs
+ * @date 2024年7月2日14:05:12
+ **/
+public class DecryptStatusConstant {
+
+    private DecryptStatusConstant() {
+    }
+
+    /**
+     * 开始解密
+     */
+    public static final String START = "start";
+
+    /**
+     * 解密完成
+     */
+    public static final String FINISH = "finish";
+
+    /**
+     * 文件未变化，跳过解密
+     */
+    public static final String UNCHANGED = "unchanged";
+
+    /**
+     * 解密中，定时推送的进度
+     */
+    public static final String PROGRESS = "progress";
+}
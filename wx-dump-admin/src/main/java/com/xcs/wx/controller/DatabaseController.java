@@ -2,9 +2,13 @@ package com.xcs.wx.controller;
 
 import cn.hutool.system.SystemUtil;
 import com.xcs.wx.domain.dto.DecryptDTO;
+import com.xcs.wx.domain.vo.DataSourceBudgetVO;
 import com.xcs.wx.domain.vo.DatabaseVO;
+import com.xcs.wx.domain.vo.DecryptJobVO;
 import com.xcs.wx.domain.vo.ResponseVO;
+import com.xcs.wx.service.DataSourceBudgetService;
 import com.xcs.wx.service.DatabaseService;
+import com.xcs.wx.service.DecryptJobService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +31,8 @@ import java.util.List;
 public class DatabaseController {
 
     private final DatabaseService databaseService;
+    private final DecryptJobService decryptJobService;
+    private final DataSourceBudgetService dataSourceBudgetService;
 
     /**
      * 数据库解密
@@ -35,24 +41,59 @@ public class DatabaseController {
      */
     @GetMapping("/decrypt")
     public SseEmitter decrypt(DecryptDTO decryptDTO) {
-        SseEmitter emitter = new SseEmitter(0L);
-        // 启动一个子线程，异步回调给前端
-        new Thread(() -> {
-            // 读取JDK版本号
-            if (SystemUtil.getJavaInfo().getVersionInt() < 1100) {
-                try {
-                    emitter.send(ResponseVO.error(-1, "微信解密必须要求JDK11以上版本,请更换JDK版本。"), MediaType.APPLICATION_JSON);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    emitter.complete();
-                }
-                return;
-            }
-            databaseService.decrypt(emitter, decryptDTO);
-        }).start();
-        // 返回数据
-        return emitter;
+        // 读取JDK版本号
+        if (SystemUtil.getJavaInfo().getVersionInt() < 1100) {
+            return unsupportedJdk();
+        }
+        // 提交解密任务，异步回调给前端
+        return decryptJobService.submit(decryptDTO);
+    }
+
+    /**
+     * 解密当前登录的所有账号
+     *
+     * @return SseEmitter
+     */
+    @GetMapping("/decryptAll")
+    public SseEmitter decryptAll() {
+        // 读取JDK版本号
+        if (SystemUtil.getJavaInfo().getVersionInt() < 1100) {
+            return unsupportedJdk();
+        }
+        return decryptJobService.submitAll();
+    }
+
+    /**
+     * 重新接入解密任务，页面刷新后继续接收进度
+     *
+     * @param wxId wxId
+     * @return SseEmitter
+     */
+    @GetMapping("/decrypt/attach")
+    public SseEmitter attach(String wxId) {
+        return decryptJobService.attach(wxId);
+    }
+
+    /**
+     * 取消解密任务
+     *
+     * @param wxId wxId
+     * @return ResponseVO
+     */
+    @GetMapping("/decrypt/cancel")
+    public ResponseVO<Boolean> cancel(String wxId) {
+        return ResponseVO.ok(decryptJobService.cancel(wxId));
+    }
+
+    /**
+     * 查询解密任务
+     *
+     * @param wxId wxId
+     * @return ResponseVO
+     */
+    @GetMapping("/decrypt/job")
+    public ResponseVO<DecryptJobVO> getJob(String wxId) {
+        return ResponseVO.ok(decryptJobService.getJob(wxId));
     }
 
     /**
@@ -64,4 +105,31 @@ public class DatabaseController {
     public ResponseVO<List<DatabaseVO>> decrypt(String wxId) {
         return ResponseVO.ok(databaseService.getDatabase(wxId));
     }
+
+    /**
+     * 查询数据源连接预算的分配情况
+     *
+     * @return ResponseVO
+     */
+    @GetMapping("/budget")
+    public ResponseVO<DataSourceBudgetVO> getBudget() {
+        return ResponseVO.ok(dataSourceBudgetService.getAllocation());
+    }
+
+    /**
+     * JDK版本过低，推送错误后关闭连接
+     *
+     * @return SseEmitter
+     */
+    private SseEmitter unsupportedJdk() {
+        SseEmitter emitter = new SseEmitter(0L);
+        try {
+            emitter.send(ResponseVO.error(-1, "微信解密必须要求JDK11以上版本,请更换JDK版本。"), MediaType.APPLICATION_JSON);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            emitter.complete();
+        }
+        return emitter;
+    }
 }
@@ -1,5 +1,7 @@
 package com.xcs.wx.controller;
 
+import com.xcs.wx.domain.dto.DumpAnalysisDTO;
+import com.xcs.wx.domain.vo.DumpAnalysisVO;
 import com.xcs.wx.domain.vo.UserInfoVO;
 import com.xcs.wx.domain.vo.UserVO;
 import com.xcs.wx.domain.vo.ResponseVO;
@@ -39,6 +41,17 @@ public class UserController {
         return ResponseVO.ok(weChatService.readWeChatConfig());
     }
 
+    /**
+     * 离线分析内存转储
+     *
+     * @param dumpAnalysisDTO 参数
+     * @return ResponseVO
+     */
+    @GetMapping("/analyzeDump")
+    public ResponseVO<DumpAnalysisVO> analyzeDump(DumpAnalysisDTO dumpAnalysisDTO) {
+        return ResponseVO.ok(weChatService.analyzeDump(dumpAnalysisDTO));
+    }
+
     /**
      * 用户头像
      *
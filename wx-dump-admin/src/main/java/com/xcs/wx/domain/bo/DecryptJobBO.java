@@ -0,0 +1,143 @@
+package com.xcs.wx.domain.bo;
+
+import com.xcs.wx.constant.DecryptJobStatusConstant;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 解密任务，每个账号同一时间只有一个任务，进度推送给所有连接的sse
+ *
+ * @author xcs
+ * @date 2024年7月6日10:12:47
+ */
+@Getter
+public class DecryptJobBO {
+
+    /**
+     * 任务id
+     */
+    private final String jobId;
+
+    /**
+     * wxId
+     */
+    private final String wxId;
+
+    /**
+     * 开始时间
+     */
+    private final long startTime;
+
+    /**
+     * 任务状态，参考 DecryptJobStatusConstant
+     */
+    private volatile String status = DecryptJobStatusConstant.RUNNING;
+
+    /**
+     * 是否已取消
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * 任务的解密统计，任务结束后仍可查询
+     */
+    private final DecryptStatsBO stats = new DecryptStatsBO();
+
+    /**
+     * 最近一次推送的事件，新连接接入时先补发
+     */
+    private volatile Object lastEvent;
+
+    /**
+     * 已连接的sse
+     */
+    @Getter(AccessLevel.NONE)
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    /**
+     * 任务结束时完成
+     */
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    public DecryptJobBO(String jobId, String wxId) {
+        this.jobId = jobId;
+        this.wxId = wxId;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 接入一个sse连接，连接断开时只移除该连接，不影响任务
+     *
+     * @param emitter sse发送事件对象
+     */
+    public void attach(SseEmitter emitter) {
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        join(emitter);
+        // 任务结束时关闭连接，任务已经结束时立即关闭
+        done.thenRun(emitter::complete);
+    }
+
+    /**
+     * 接收任务的事件，但不随任务结束而关闭，用于一个连接同时接收多个任务的事件
+     *
+     * @param emitter sse发送事件对象
+     */
+    public void join(SseEmitter emitter) {
+        emitters.add(emitter);
+        // 补发最近一次的进度
+        Object event = lastEvent;
+        if (event != null) {
+            send(emitter, event);
+        }
+    }
+
+    /**
+     * 推送事件给所有连接
+     *
+     * @param event 事件
+     */
+    public void send(Object event) {
+        lastEvent = event;
+        emitters.forEach(emitter -> send(emitter, event));
+    }
+
+    /**
+     * 取消任务
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 结束任务，通过 attach 接入的连接随之关闭
+     */
+    public void complete() {
+        stats.finish();
+        status = cancelled ? DecryptJobStatusConstant.CANCELLED : DecryptJobStatusConstant.COMPLETED;
+        emitters.clear();
+        done.complete(null);
+    }
+
+    /**
+     * 推送事件给单个连接，连接已断开时移除
+     *
+     * @param emitter sse发送事件对象
+     * @param event   事件
+     */
+    private void send(SseEmitter emitter, Object event) {
+        try {
+            emitter.send(event, MediaType.APPLICATION_JSON);
+        } catch (IOException | IllegalStateException e) {
+            emitters.remove(emitter);
+        }
+    }
+}
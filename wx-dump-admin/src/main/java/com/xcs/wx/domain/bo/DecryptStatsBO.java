@@ -0,0 +1,262 @@
+package com.xcs.wx.domain.bo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 解密统计，记录派生秘钥、读取、解密、写入各阶段的耗时与处理的字节数。
+ * <p>
+ * 单个文件的统计会同时累加到所属任务的统计中，并行解密时多个线程同时累加。
+ *
+ * @author xcs
+ * @date 2024年7月7日09:18:42
+ */
+public class DecryptStatsBO {
+
+    /**
+     * 纳秒转毫秒
+     */
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /**
+     * 上级统计，没有时为null
+     */
+    private final DecryptStatsBO parent;
+
+    /**
+     * 开始时间
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 结束时间，未结束时为0
+     */
+    private volatile long endNanos;
+
+    /**
+     * 需要处理的字节数
+     */
+    private final LongAdder totalBytes = new LongAdder();
+
+    /**
+     * 已处理的字节数，包括未变化而跳过的页
+     */
+    private final LongAdder processedBytes = new LongAdder();
+
+    /**
+     * 实际解密的字节数
+     */
+    private final LongAdder decryptedBytes = new LongAdder();
+
+    /**
+     * 派生秘钥耗时
+     */
+    private final LongAdder kdfNanos = new LongAdder();
+
+    /**
+     * 读取耗时
+     */
+    private final LongAdder readNanos = new LongAdder();
+
+    /**
+     * 解密耗时
+     */
+    private final LongAdder cipherNanos = new LongAdder();
+
+    /**
+     * 写入耗时
+     */
+    private final LongAdder writeNanos = new LongAdder();
+
+    /**
+     * 创建索引耗时
+     */
+    private final LongAdder indexNanos = new LongAdder();
+
+    /**
+     * ANALYZE耗时
+     */
+    private final LongAdder analyzeNanos = new LongAdder();
+
+    /**
+     * VACUUM耗时
+     */
+    private final LongAdder vacuumNanos = new LongAdder();
+
+    public DecryptStatsBO() {
+        this(null);
+    }
+
+    public DecryptStatsBO(DecryptStatsBO parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * 增加需要处理的字节数，只记录在当前统计中，文件未变化而跳过时传入负数
+     *
+     * @param bytes 字节数
+     */
+    public void addTotalBytes(long bytes) {
+        totalBytes.add(bytes);
+    }
+
+    /**
+     * 增加已处理与实际解密的字节数
+     *
+     * @param processed 已处理的字节数
+     * @param decrypted 实际解密的字节数
+     */
+    public void addBytes(long processed, long decrypted) {
+        processedBytes.add(processed);
+        decryptedBytes.add(decrypted);
+        if (parent != null) {
+            parent.addBytes(processed, decrypted);
+        }
+    }
+
+    /**
+     * 增加派生秘钥耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void addKdfNanos(long nanos) {
+        kdfNanos.add(nanos);
+        if (parent != null) {
+            parent.addKdfNanos(nanos);
+        }
+    }
+
+    /**
+     * 增加读取、解密、写入耗时
+     *
+     * @param read   读取纳秒
+     * @param cipher 解密纳秒
+     * @param write  写入纳秒
+     */
+    public void addStageNanos(long read, long cipher, long write) {
+        readNanos.add(read);
+        cipherNanos.add(cipher);
+        writeNanos.add(write);
+        if (parent != null) {
+            parent.addStageNanos(read, cipher, write);
+        }
+    }
+
+    /**
+     * 增加解密后优化各步骤的耗时
+     *
+     * @param index   创建索引纳秒
+     * @param analyze ANALYZE纳秒
+     * @param vacuum  VACUUM纳秒
+     */
+    public void addOptimizeNanos(long index, long analyze, long vacuum) {
+        indexNanos.add(index);
+        analyzeNanos.add(analyze);
+        vacuumNanos.add(vacuum);
+        if (parent != null) {
+            parent.addOptimizeNanos(index, analyze, vacuum);
+        }
+    }
+
+    /**
+     * 结束统计，之后的耗时与速度不再变化
+     */
+    public void finish() {
+        if (endNanos == 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    public long getTotalBytes() {
+        return totalBytes.sum();
+    }
+
+    public long getProcessedBytes() {
+        return processedBytes.sum();
+    }
+
+    public long getDecryptedBytes() {
+        return decryptedBytes.sum();
+    }
+
+    /**
+     * @return 派生秘钥耗时（毫秒）
+     */
+    public long getKdfTime() {
+        return kdfNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return 读取耗时（毫秒），并行解密时为各线程耗时之和
+     */
+    public long getReadTime() {
+        return readNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return 解密耗时（毫秒），并行解密时为各线程耗时之和
+     */
+    public long getCipherTime() {
+        return cipherNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return 写入耗时（毫秒），并行解密时为各线程耗时之和
+     */
+    public long getWriteTime() {
+        return writeNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return 创建索引耗时（毫秒）
+     */
+    public long getIndexTime() {
+        return indexNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return ANALYZE耗时（毫秒）
+     */
+    public long getAnalyzeTime() {
+        return analyzeNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return VACUUM耗时（毫秒）
+     */
+    public long getVacuumTime() {
+        return vacuumNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return 已用时间（毫秒）
+     */
+    public long getElapsedTime() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return (end - startNanos) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return 处理速度（MB/s）
+     */
+    public double getSpeed() {
+        long elapsed = getElapsedTime();
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return getProcessedBytes() * 1000.0 / elapsed / (1024 * 1024);
+    }
+
+    /**
+     * 按字节数估算剩余时间
+     *
+     * @return 剩余时间（秒），还没有处理任何字节时为-1
+     */
+    public long getEta() {
+        long processed = getProcessedBytes();
+        if (processed <= 0) {
+            return -1;
+        }
+        long remaining = Math.max(0, getTotalBytes() - processed);
+        return remaining * getElapsedTime() / processed / 1000;
+    }
+}
@@ -0,0 +1,42 @@
+package com.xcs.wx.domain.bo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 加密数据库文件指纹
+ *
+ * @author xcs
+ * @date 2024年7月4日10:16:52
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileFingerprintBO {
+
+    /**
+     * 文件名称
+     */
+    private String fileName;
+
+    /**
+     * 文件大小
+     */
+    private long fileSize;
+
+    /**
+     * 最后修改时间
+     */
+    private long lastModified;
+
+    /**
+     * 盐值
+     */
+    private String salt;
+
+    /**
+     * 第一页的SHA-256摘要
+     */
+    private String firstPageHash;
+}
@@ -0,0 +1,37 @@
+package com.xcs.wx.domain.bo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 解密后文件的逐页密文摘要，用于增量解密
+ *
+ * @author xcs
+ * @date 2024年7月4日15:02:18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDigestBO {
+
+    /**
+     * 加密数据库的盐值
+     */
+    private byte[] salt;
+
+    /**
+     * 写入完成后解密文件的大小
+     */
+    private long outputSize;
+
+    /**
+     * 写入完成后解密文件的最后修改时间
+     */
+    private long outputLastModified;
+
+    /**
+     * 每一页密文的摘要，下标为页号
+     */
+    private long[] digests;
+}
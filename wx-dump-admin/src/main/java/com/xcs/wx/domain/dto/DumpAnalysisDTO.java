@@ -0,0 +1,28 @@
+package com.xcs.wx.domain.dto;
+
+import lombok.Data;
+
+/**
+ * DumpAnalysisDTO
+ *
+ * @author xcs
+ * @date 2024年7月13日11:20:05
+ */
+@Data
+public class DumpAnalysisDTO {
+
+    /**
+     * 内存转储文件路径，minidump 或原始内存转储
+     */
+    private String dumpPath;
+
+    /**
+     * 微信文件目录，用于读取 MicroMsg.db 校验密钥，为空时只提取微信ID
+     */
+    private String basePath;
+
+    /**
+     * 原始内存转储第一个字节对应的地址，minidump 忽略，默认为0
+     */
+    private Long baseAddress;
+}
@@ -0,0 +1,40 @@
+package com.xcs.wx.domain.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 单个数据源占用的连接与页缓存
+ *
+ * @author xcs
+ * @date 2024年7月17日09:35:40
+ **/
+@Data
+@Builder
+public class DataSourceAllocationVO {
+
+    /**
+     * 数据源名称
+     */
+    private String name;
+
+    /**
+     * 连接数量
+     */
+    private int connections;
+
+    /**
+     * 借出的连接数量
+     */
+    private int activeConnections;
+
+    /**
+     * 按cache_size估算的页缓存大小，单位：字节
+     */
+    private long cacheSize;
+
+    /**
+     * 最后访问时间
+     */
+    private String lastAccessTime;
+}
@@ -0,0 +1,52 @@
+package com.xcs.wx.domain.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 数据源连接预算的当前分配情况
+ *
+ * @author xcs
+ * @date 2024年7月17日09:32:16
+ **/
+@Data
+@Builder
+public class DataSourceBudgetVO {
+
+    /**
+     * 连接总数上限
+     */
+    private int maxConnections;
+
+    /**
+     * 当前的连接总数，包括保持内存数据库存活的连接
+     */
+    private int connections;
+
+    /**
+     * 借出的连接数量
+     */
+    private int activeConnections;
+
+    /**
+     * 页缓存总大小上限，单位：字节
+     */
+    private long maxCacheSize;
+
+    /**
+     * 当前连接按cache_size估算的页缓存大小，单位：字节
+     */
+    private long cacheSize;
+
+    /**
+     * 已注册的数据源数量
+     */
+    private int registered;
+
+    /**
+     * 已创建连接池的数据源，按最后访问时间倒序
+     */
+    private List<DataSourceAllocationVO> dataSources;
+}
@@ -0,0 +1,45 @@
+package com.xcs.wx.domain.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DecryptJobVO
+ *
+ * @author xcs
+ * @date 2024年7月6日10:31:08
+ **/
+@Data
+@Builder
+public class DecryptJobVO {
+
+    /**
+     * 任务id
+     */
+    private String jobId;
+
+    /**
+     * wxId
+     */
+    private String wxId;
+
+    /**
+     * 任务状态，参考 DecryptJobStatusConstant
+     */
+    private String status;
+
+    /**
+     * 开始时间
+     */
+    private Long startTime;
+
+    /**
+     * 最近一次推送的事件
+     */
+    private Object lastEvent;
+
+    /**
+     * 任务的解密统计
+     */
+    private DecryptStatsVO stats;
+}
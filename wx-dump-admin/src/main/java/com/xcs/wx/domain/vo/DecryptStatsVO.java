@@ -0,0 +1,78 @@
+package com.xcs.wx.domain.vo;
+
+import lombok.Data;
+
+/**
+ * DecryptStatsVO
+ *
+ * @author xcs
+ * @date 2024年7月7日09:40:15
+ **/
+@Data
+public class DecryptStatsVO {
+
+    /**
+     * 需要处理的字节数
+     */
+    private long totalBytes;
+
+    /**
+     * 已处理的字节数
+     */
+    private long processedBytes;
+
+    /**
+     * 实际解密的字节数
+     */
+    private long decryptedBytes;
+
+    /**
+     * 派生秘钥耗时（毫秒）
+     */
+    private long kdfTime;
+
+    /**
+     * 读取耗时（毫秒）
+     */
+    private long readTime;
+
+    /**
+     * 解密耗时（毫秒）
+     */
+    private long cipherTime;
+
+    /**
+     * 写入耗时（毫秒）
+     */
+    private long writeTime;
+
+    /**
+     * 创建索引耗时（毫秒）
+     */
+    private long indexTime;
+
+    /**
+     * ANALYZE耗时（毫秒）
+     */
+    private long analyzeTime;
+
+    /**
+     * VACUUM耗时（毫秒）
+     */
+    private long vacuumTime;
+
+    /**
+     * 已用时间（毫秒）
+     */
+    private long elapsedTime;
+
+    /**
+     * 处理速度（MB/s）
+     */
+    private double speed;
+
+    /**
+     * 按字节数估算的剩余时间（秒），-1表示未知
+     */
+    private long eta;
+}
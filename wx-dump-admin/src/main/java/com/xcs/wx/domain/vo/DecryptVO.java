@@ -13,6 +13,11 @@ import lombok.Data;
 @Builder
 public class DecryptVO {
 
+    /**
+     * 解密状态，参考 DecryptStatusConstant
+     */
+    private String status;
+
     /**
      * 文件名称
      */
@@ -32,4 +37,24 @@ public class DecryptVO {
      * 总数量
      */
     private int total;
+
+    /**
+     * 解密任务id
+     */
+    private String jobId;
+
+    /**
+     * wxId，同时解密多个账号时区分事件所属的账号
+     */
+    private String wxId;
+
+    /**
+     * 当前文件的解密统计，开始与进度事件中为null
+     */
+    private DecryptStatsVO fileStats;
+
+    /**
+     * 整个任务的解密统计，包含按字节数估算的剩余时间
+     */
+    private DecryptStatsVO jobStats;
 }
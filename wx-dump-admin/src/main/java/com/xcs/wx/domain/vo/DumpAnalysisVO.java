@@ -0,0 +1,60 @@
+package com.xcs.wx.domain.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DumpAnalysisVO
+ *
+ * @author xcs
+ * @date 2024年7月13日11:24:37
+ */
+@Data
+@Builder
+public class DumpAnalysisVO {
+
+    /**
+     * wxId
+     */
+    private String wxId;
+
+    /**
+     * 秘钥，未提供微信文件目录或者校验失败时为null
+     */
+    private String key;
+
+    /**
+     * 微信版本号，仅 minidump 可以读取
+     */
+    private String version;
+
+    /**
+     * WeChatWin.dll 基址，仅 minidump 可以读取
+     */
+    private Long baseAddress;
+
+    /**
+     * 昵称
+     */
+    private String nickname;
+
+    /**
+     * 账号
+     */
+    private String account;
+
+    /**
+     * 手机号
+     */
+    private String mobile;
+
+    /**
+     * 提取wxId耗时（毫秒）
+     */
+    private long wxIdTime;
+
+    /**
+     * 查找并校验密钥耗时（毫秒）
+     */
+    private long keyTime;
+}
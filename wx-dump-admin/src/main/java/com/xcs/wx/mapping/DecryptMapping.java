@@ -0,0 +1,25 @@
+package com.xcs.wx.mapping;
+
+import com.xcs.wx.domain.dto.DecryptDTO;
+import com.xcs.wx.domain.vo.WeChatConfigVO;
+import org.mapstruct.Mapper;
+
+import java.util.List;
+
+/**
+ * 解密 Mapping
+ *
+ * @author xcs
+ * @date 2024年7月8日10:52:14
+ **/
+@Mapper(componentModel = "spring")
+public interface DecryptMapping {
+
+    /**
+     * 参数转换
+     *
+     * @param weChatConfigVOList 微信配置
+     * @return DecryptDTO
+     */
+    List<DecryptDTO> convert(List<WeChatConfigVO> weChatConfigVOList);
+}
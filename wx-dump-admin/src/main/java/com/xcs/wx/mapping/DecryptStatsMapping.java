@@ -0,0 +1,23 @@
+package com.xcs.wx.mapping;
+
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+import com.xcs.wx.domain.vo.DecryptStatsVO;
+import org.mapstruct.Mapper;
+
+/**
+ * 解密统计 Mapping
+ *
+ * @author xcs
+ * @date 2024年7月7日09:44:36
+ **/
+@Mapper(componentModel = "spring")
+public interface DecryptStatsMapping {
+
+    /**
+     * 参数转换
+     *
+     * @param decryptStatsBO 解密统计
+     * @return DecryptStatsVO
+     */
+    DecryptStatsVO convert(DecryptStatsBO decryptStatsBO);
+}
@@ -0,0 +1,63 @@
+package com.xcs.wx.memory;
+
+/**
+ * 以字节数组模拟的进程内存，地址从 baseAddress 开始
+ * <p>
+ * 可按固定大小切分为多个区域，用于在非 Windows 平台上验证扫描逻辑，例如跨区域、跨分块的匹配。
+ *
+ * @author xcs
+ * @date 2024年7月11日16:20:47
+ */
+public class ByteArrayProcessMemoryReader implements ProcessMemoryReader {
+
+    /**
+     * 内存数据的起始地址
+     */
+    private final long baseAddress;
+
+    /**
+     * 内存数据
+     */
+    private final byte[] data;
+
+    /**
+     * 模拟的区域大小
+     */
+    private final int regionSize;
+
+    public ByteArrayProcessMemoryReader(long baseAddress, byte[] data) {
+        this(baseAddress, data, Math.max(data.length, 1));
+    }
+
+    public ByteArrayProcessMemoryReader(long baseAddress, byte[] data, int regionSize) {
+        this.baseAddress = baseAddress;
+        this.data = data;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    public MemoryRegion queryRegion(long address) {
+        long endAddress = baseAddress + data.length;
+        // 超出地址空间
+        if (address >= endAddress) {
+            return null;
+        }
+        // 数据之前的空洞不可读
+        if (address < baseAddress) {
+            return new MemoryRegion(address, baseAddress - address, false);
+        }
+        long regionBase = baseAddress + (address - baseAddress) / regionSize * regionSize;
+        return new MemoryRegion(regionBase, Math.min(regionSize, endAddress - regionBase), true);
+    }
+
+    @Override
+    public int read(long address, byte[] buffer, int offset, int length) {
+        if (address < baseAddress || address >= baseAddress + data.length) {
+            return 0;
+        }
+        int start = (int) (address - baseAddress);
+        int read = Math.min(length, data.length - start);
+        System.arraycopy(data, start, buffer, offset, read);
+        return read;
+    }
+}
@@ -0,0 +1,44 @@
+package com.xcs.wx.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 内存转储中记录的已加载模块
+ *
+ * @author xcs
+ * @date 2024年7月13日10:02:51
+ */
+@Data
+@AllArgsConstructor
+public class DumpModule {
+
+    /**
+     * 模块文件路径
+     */
+    private String name;
+
+    /**
+     * 模块基址
+     */
+    private long baseAddress;
+
+    /**
+     * 模块映像大小
+     */
+    private long size;
+
+    /**
+     * 文件版本号，如 3.9.10.19，未记录时为null
+     */
+    private String version;
+
+    /**
+     * 模块结束地址（不包含）
+     *
+     * @return 结束地址
+     */
+    public long getEndAddress() {
+        return baseAddress + size;
+    }
+}
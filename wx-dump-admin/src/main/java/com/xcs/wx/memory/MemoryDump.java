@@ -0,0 +1,353 @@
+package com.xcs.wx.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 进程内存转储文件，支持 Windows minidump（MDMP）与原始内存转储
+ * <p>
+ * 整个文件以只读方式按 1GB 分窗映射，多 GB 的转储也无需读入堆内存。minidump 解析
+ * MemoryListStream、Memory64ListStream 与 ModuleListStream，得到每段内存在文件中的位置
+ * 以及模块的基址、大小与版本号；原始转储视为从指定基址开始的一段连续内存。
+ * 解析完成后只读，可以为每个扫描线程分别创建读取器。
+ *
+ * @author xcs
+ * @date 2024年7月13日10:11:36
+ */
+public class MemoryDump {
+
+    /**
+     * minidump 文件头签名 "MDMP"
+     */
+    private static final int MINIDUMP_SIGNATURE = 0x504D444D;
+
+    /**
+     * 流类型
+     */
+    private static final int MODULE_LIST_STREAM = 4;
+    private static final int MEMORY_LIST_STREAM = 5;
+    private static final int MEMORY64_LIST_STREAM = 9;
+
+    /**
+     * MINIDUMP_MODULE 结构体大小
+     */
+    private static final int MINIDUMP_MODULE_SIZE = 108;
+
+    /**
+     * VS_FIXEDFILEINFO 签名
+     */
+    private static final int VS_FIXEDFILEINFO_SIGNATURE = 0xFEEF04BD;
+
+    /**
+     * 映射窗口大小
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /**
+     * 按地址升序排列的内存段
+     */
+    private final List<Range> ranges = new ArrayList<>();
+
+    /**
+     * 模块列表
+     */
+    private final List<DumpModule> modules = new ArrayList<>();
+
+    /**
+     * 映射窗口，第 i 个窗口从文件偏移 i * MAP_WINDOW 开始
+     */
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * 文件大小
+     */
+    private final long fileSize;
+
+    /**
+     * 一段内存在文件中的位置
+     */
+    private static class Range {
+
+        private final long address;
+        private final long size;
+        private final long fileOffset;
+
+        Range(long address, long size, long fileOffset) {
+            this.address = address;
+            this.size = size;
+            this.fileOffset = fileOffset;
+        }
+
+        long end() {
+            return address + size;
+        }
+    }
+
+    private MemoryDump(FileChannel channel) throws IOException {
+        this.fileSize = channel.size();
+        int count = (int) ((fileSize + MAP_WINDOW - 1) / MAP_WINDOW);
+        this.windows = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long position = i * MAP_WINDOW;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, fileSize - position));
+        }
+    }
+
+    /**
+     * 打开内存转储文件，以 MDMP 开头的按 minidump 解析，否则视为原始内存转储
+     *
+     * @param file           转储文件
+     * @param rawBaseAddress 原始转储第一个字节对应的地址，minidump 忽略
+     * @return 内存转储
+     * @throws IOException 读取或解析失败
+     */
+    public static MemoryDump open(Path file, long rawBaseAddress) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MemoryDump dump = new MemoryDump(channel);
+            if (channel.size() >= 32 && dump.readInt(0) == MINIDUMP_SIGNATURE) {
+                dump.parseMinidump();
+            } else {
+                dump.ranges.add(new Range(rawBaseAddress, channel.size(), 0));
+            }
+            return dump;
+        }
+    }
+
+    /**
+     * 解析 minidump 的流目录
+     */
+    private void parseMinidump() throws IOException {
+        int streamCount = readInt(8);
+        long directory = readUnsignedInt(12);
+        for (int i = 0; i < streamCount; i++) {
+            long entry = directory + i * 12L;
+            int streamType = readInt(entry);
+            long rva = readUnsignedInt(entry + 8);
+            if (streamType == MEMORY64_LIST_STREAM) {
+                // 所有内存段的数据从 BaseRva 开始依次排列
+                long rangeCount = readLong(rva);
+                long dataOffset = readLong(rva + 8);
+                for (long r = 0; r < rangeCount; r++) {
+                    long descriptor = rva + 16 + r * 16;
+                    long size = readLong(descriptor + 8);
+                    addRange(readLong(descriptor), size, dataOffset);
+                    dataOffset += size;
+                }
+            } else if (streamType == MEMORY_LIST_STREAM) {
+                long rangeCount = readUnsignedInt(rva);
+                for (long r = 0; r < rangeCount; r++) {
+                    long descriptor = rva + 4 + r * 16;
+                    addRange(readLong(descriptor), readUnsignedInt(descriptor + 8), readUnsignedInt(descriptor + 12));
+                }
+            } else if (streamType == MODULE_LIST_STREAM) {
+                long moduleCount = readUnsignedInt(rva);
+                for (long m = 0; m < moduleCount; m++) {
+                    modules.add(parseModule(rva + 4 + m * MINIDUMP_MODULE_SIZE));
+                }
+            }
+        }
+        ranges.sort(Comparator.comparingLong(range -> range.address));
+    }
+
+    /**
+     * 添加内存段，数据超出文件范围的内存段（转储被截断）忽略
+     */
+    private void addRange(long address, long size, long fileOffset) {
+        if (size > 0 && fileOffset >= 0 && fileOffset + size <= fileSize) {
+            ranges.add(new Range(address, size, fileOffset));
+        }
+    }
+
+    /**
+     * 解析 MINIDUMP_MODULE
+     */
+    private DumpModule parseModule(long offset) throws IOException {
+        long baseAddress = readLong(offset);
+        long size = readUnsignedInt(offset + 8);
+        // 模块名为 MINIDUMP_STRING：字节长度 + UTF-16LE 字符
+        long nameRva = readUnsignedInt(offset + 20);
+        long nameLength = readUnsignedInt(nameRva);
+        // 长度超出文件范围说明转储已损坏，不能按它分配数组
+        if (nameLength > fileSize - nameRva - 4 || nameLength > Integer.MAX_VALUE) {
+            throw new IOException("Corrupted minidump module name at offset " + nameRva);
+        }
+        byte[] name = new byte[(int) nameLength];
+        readFile(nameRva + 4, name);
+        // VS_FIXEDFILEINFO 从偏移 24 开始
+        String version = null;
+        if (readInt(offset + 24) == VS_FIXEDFILEINFO_SIGNATURE) {
+            long ms = readUnsignedInt(offset + 32);
+            long ls = readUnsignedInt(offset + 36);
+            version = ((ms >> 16) & 0xffff) + "." + (ms & 0xffff) + "." + ((ls >> 16) & 0xffff) + "." + (ls & 0xffff);
+        }
+        return new DumpModule(new String(name, StandardCharsets.UTF_16LE), baseAddress, size, version);
+    }
+
+    /**
+     * 模块列表，原始转储没有模块信息
+     *
+     * @return 模块列表
+     */
+    public List<DumpModule> getModules() {
+        return Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * 按文件名查找模块
+     *
+     * @param fileName 模块文件名，如 WeChatWin.dll
+     * @return 模块，未找到时返回null
+     */
+    public DumpModule findModule(String fileName) {
+        String suffix = "\\" + fileName.toLowerCase();
+        for (DumpModule module : modules) {
+            String name = module.getName().toLowerCase();
+            if (name.equals(fileName.toLowerCase()) || name.endsWith(suffix)) {
+                return module;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 转储中最小的地址
+     *
+     * @return 起始地址
+     */
+    public long getStartAddress() {
+        return ranges.isEmpty() ? 0 : ranges.get(0).address;
+    }
+
+    /**
+     * 转储中最大的地址（不包含）
+     *
+     * @return 结束地址
+     */
+    public long getEndAddress() {
+        long end = 0;
+        for (Range range : ranges) {
+            end = Math.max(end, range.end());
+        }
+        return end;
+    }
+
+    /**
+     * 创建读取器，读取器持有各自的映射视图，每个线程一个
+     *
+     * @return 读取器
+     */
+    public ProcessMemoryReader newReader() {
+        ByteBuffer[] views = new ByteBuffer[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            views[i] = windows[i].duplicate();
+        }
+        return new ProcessMemoryReader() {
+
+            @Override
+            public MemoryRegion queryRegion(long address) {
+                int index = floorRange(address);
+                if (index >= 0 && address < ranges.get(index).end()) {
+                    Range range = ranges.get(index);
+                    return new MemoryRegion(range.address, range.size, true);
+                }
+                // 位于两段内存之间的空洞
+                if (index + 1 < ranges.size()) {
+                    return new MemoryRegion(address, ranges.get(index + 1).address - address, false);
+                }
+                return null;
+            }
+
+            @Override
+            public int read(long address, byte[] buffer, int offset, int length) {
+                int total = 0;
+                while (total < length) {
+                    long current = address + total;
+                    int index = floorRange(current);
+                    if (index < 0 || current >= ranges.get(index).end()) {
+                        break;
+                    }
+                    Range range = ranges.get(index);
+                    int size = (int) Math.min(length - total, range.end() - current);
+                    copy(views, range.fileOffset + (current - range.address), buffer, offset + total, size);
+                    total += size;
+                }
+                return total;
+            }
+        };
+    }
+
+    /**
+     * 查找起始地址不大于 address 的最后一段内存
+     *
+     * @param address 地址
+     * @return 下标，没有时返回-1
+     */
+    private int floorRange(long address) {
+        int low = 0;
+        int high = ranges.size() - 1;
+        int result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (ranges.get(middle).address <= address) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从映射视图中复制，可以跨越映射窗口
+     */
+    private static void copy(ByteBuffer[] views, long fileOffset, byte[] buffer, int offset, int length) {
+        int copied = 0;
+        while (copied < length) {
+            long position = fileOffset + copied;
+            ByteBuffer view = views[(int) (position / MAP_WINDOW)];
+            int windowOffset = (int) (position % MAP_WINDOW);
+            int size = Math.min(length - copied, view.limit() - windowOffset);
+            view.position(windowOffset);
+            view.get(buffer, offset + copied, size);
+            copied += size;
+        }
+    }
+
+    private void readFile(long fileOffset, byte[] buffer) throws IOException {
+        if (fileOffset < 0 || fileOffset + buffer.length > fileSize) {
+            throw new IOException("Corrupted minidump at offset " + fileOffset);
+        }
+        try {
+            copy(windows, fileOffset, buffer, 0, buffer.length);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted minidump at offset " + fileOffset, e);
+        }
+    }
+
+    private int readInt(long fileOffset) throws IOException {
+        byte[] bytes = new byte[Integer.BYTES];
+        readFile(fileOffset, bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    private long readUnsignedInt(long fileOffset) throws IOException {
+        return Integer.toUnsignedLong(readInt(fileOffset));
+    }
+
+    private long readLong(long fileOffset) throws IOException {
+        byte[] bytes = new byte[Long.BYTES];
+        readFile(fileOffset, bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+}
@@ -0,0 +1,39 @@
+package com.xcs.wx.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 一段连续的虚拟内存区域
+ *
+ * @author xcs
+ * @date 2024年7月11日16:05:12
+ */
+@Data
+@AllArgsConstructor
+public class MemoryRegion {
+
+    /**
+     * 区域起始地址
+     */
+    private long baseAddress;
+
+    /**
+     * 区域大小
+     */
+    private long size;
+
+    /**
+     * 是否已提交且可读
+     */
+    private boolean readable;
+
+    /**
+     * 区域结束地址（不包含）
+     *
+     * @return 结束地址
+     */
+    public long getEndAddress() {
+        return baseAddress + size;
+    }
+}
@@ -0,0 +1,197 @@
+package com.xcs.wx.memory;
+
+import com.xcs.wx.util.BytePatternSearcher;
+import com.xcs.wx.util.IntList;
+import com.xcs.wx.util.MultiPatternMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongPredicate;
+
+/**
+ * 分块扫描进程内存
+ * <p>
+ * 按区域遍历地址范围，每个可读区域以固定大小分块读入同一个缓冲区。上一块末尾的
+ * 「最长模式长度 - 1」字节会保留到下一块开头，地址连续的相邻区域也会延续保留，
+ * 因此跨分块、跨区域的匹配不会丢失，同时也不会被重复报告。
+ * 峰值内存为分块大小加上读取器自身的中转缓冲区，与区域大小无关。
+ *
+ * @author xcs
+ * @date 2024年7月11日16:31:25
+ */
+public class MemoryScanner {
+
+    /**
+     * 默认分块大小
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * 内存读取器
+     */
+    private final ProcessMemoryReader reader;
+
+    /**
+     * 分块大小
+     */
+    private final int chunkSize;
+
+    /**
+     * 复用的读取缓冲区，容量为分块大小加保留字节数
+     */
+    private byte[] buffer = new byte[0];
+
+    /**
+     * 分块访问回调
+     */
+    private interface ChunkVisitor {
+
+        /**
+         * 访问一个分块
+         *
+         * @param buffer  缓冲区
+         * @param length  有效长度
+         * @param address 缓冲区第一个字节的地址
+         * @param carried 开头从上一块保留的字节数
+         * @return 是否继续扫描
+         */
+        boolean visit(byte[] buffer, int length, long address, int carried);
+    }
+
+    public MemoryScanner(ProcessMemoryReader reader) {
+        this(reader, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MemoryScanner(ProcessMemoryReader reader, int chunkSize) {
+        this.reader = reader;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 在地址范围内查找单个模式
+     *
+     * @param startAddress 起始地址（包含）
+     * @param endAddress   结束地址（不包含）
+     * @param searcher     模式
+     * @param limit        最大匹配数量
+     * @return 匹配的起始地址
+     */
+    public List<Long> scan(long startAddress, long endAddress, BytePatternSearcher searcher, int limit) {
+        List<Long> found = new ArrayList<>();
+        if (limit > 0) {
+            scan(startAddress, endAddress, searcher, address -> {
+                found.add(address);
+                return found.size() < limit;
+            }, () -> false);
+        }
+        return found;
+    }
+
+    /**
+     * 在地址范围内查找单个模式，每个匹配交给回调处理
+     *
+     * @param startAddress 起始地址（包含）
+     * @param endAddress   结束地址（不包含）
+     * @param searcher     模式
+     * @param handler      匹配回调，返回false时停止扫描
+     * @param cancelled    是否已取消，每读取一块检查一次
+     */
+    public void scan(long startAddress, long endAddress, BytePatternSearcher searcher, LongPredicate handler, BooleanSupplier cancelled) {
+        IntList matches = new IntList();
+        int length = searcher.length();
+        scanChunks(startAddress, endAddress, length - 1, (chunk, size, address, carried) -> {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            matches.clear();
+            searcher.search(chunk, 0, size, Integer.MAX_VALUE, matches);
+            for (int i = 0; i < matches.size(); i++) {
+                int position = matches.get(i);
+                // 完全落在保留字节内的匹配已经在上一块报告过
+                if (position + length > carried && !handler.test(address + position)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * 在地址范围内一次遍历查找多个模式
+     *
+     * @param startAddress 起始地址（包含）
+     * @param endAddress   结束地址（不包含）
+     * @param matcher      多模式匹配器
+     * @return 按模式下标排列的匹配起始地址
+     */
+    public List<List<Long>> scan(long startAddress, long endAddress, MultiPatternMatcher matcher) {
+        List<List<Long>> found = new ArrayList<>();
+        for (int i = 0; i < matcher.size(); i++) {
+            found.add(new ArrayList<>());
+        }
+        scanChunks(startAddress, endAddress, matcher.maxLength() - 1, (chunk, size, address, carried) -> {
+            matcher.search(chunk, 0, size, (patternIndex, position) -> {
+                // 完全落在保留字节内的匹配已经在上一块报告过
+                if (position + matcher.length(patternIndex) > carried) {
+                    found.get(patternIndex).add(address + position);
+                }
+            });
+            return true;
+        });
+        return found;
+    }
+
+    /**
+     * 按区域、按分块遍历地址范围
+     *
+     * @param startAddress 起始地址（包含）
+     * @param endAddress   结束地址（不包含）
+     * @param overlap      相邻分块之间保留的字节数
+     * @param visitor      分块访问回调
+     */
+    private void scanChunks(long startAddress, long endAddress, int overlap, ChunkVisitor visitor) {
+        if (buffer.length < chunkSize + overlap) {
+            buffer = new byte[chunkSize + overlap];
+        }
+        long address = startAddress;
+        // 下一块与上一块地址连续时才保留字节
+        long expected = -1;
+        int carried = 0;
+        while (address < endAddress) {
+            MemoryRegion region = reader.queryRegion(address);
+            // 超出地址空间
+            if (region == null || region.getEndAddress() <= address) {
+                return;
+            }
+            long regionEnd = Math.min(region.getEndAddress(), endAddress);
+            // 不可读的区域直接跳过
+            if (!region.isReadable()) {
+                address = regionEnd;
+                continue;
+            }
+            while (address < regionEnd) {
+                if (address != expected) {
+                    carried = 0;
+                }
+                int size = (int) Math.min(chunkSize, regionEnd - address);
+                int read = reader.read(address, buffer, carried, size);
+                // 读取失败时跳过这一块
+                if (read <= 0) {
+                    address += size;
+                    continue;
+                }
+                int length = carried + read;
+                if (!visitor.visit(buffer, length, address - carried, carried)) {
+                    return;
+                }
+                // 保留末尾字节到下一块开头
+                int keep = Math.min(overlap, length);
+                System.arraycopy(buffer, length - keep, buffer, 0, keep);
+                carried = keep;
+                address += read;
+                expected = address;
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.xcs.wx.memory;
+
+import com.xcs.wx.util.BytePatternSearcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * 并行扫描整个地址空间
+ * <p>
+ * 先查询出所有已提交且可读的区域，地址连续的区域合并后按固定大小切分成段，
+ * 交给 ForkJoin 线程池按任务窃取的方式并行扫描。每一段向后多读「模式长度 - 1」字节，
+ * 只报告起始地址落在本段内的匹配，段边界上的匹配既不会丢失也不会重复。
+ * 读取器不保证线程安全，每个工作线程从空闲队列中取用各自的扫描器，总数不超过并行度。
+ * 结果与顺序扫描一致，始终是地址最小的 limit 个匹配：找满 limit 个之后，
+ * 只有起始地址不小于当前第 limit 小匹配地址的段才会停止，更低地址的段继续扫描。
+ *
+ * @author xcs
+ * @date 2024年7月12日15:20:44
+ */
+public class ParallelMemoryScanner {
+
+    /**
+     * 默认的分段大小
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 32L << 20;
+
+    /**
+     * 扫描线程池
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * 内存读取器工厂，每个扫描线程一个读取器
+     */
+    private final Supplier<ProcessMemoryReader> readerFactory;
+
+    /**
+     * 分段大小
+     */
+    private final long segmentSize;
+
+    public ParallelMemoryScanner(ForkJoinPool pool, Supplier<ProcessMemoryReader> readerFactory) {
+        this(pool, readerFactory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public ParallelMemoryScanner(ForkJoinPool pool, Supplier<ProcessMemoryReader> readerFactory, long segmentSize) {
+        this.pool = pool;
+        this.readerFactory = readerFactory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 在地址范围内并行查找单个模式
+     *
+     * @param startAddress 起始地址（包含）
+     * @param endAddress   结束地址（不包含）
+     * @param searcher     模式
+     * @param limit        最大匹配数量
+     * @return 按地址升序排列的匹配起始地址
+     */
+    public List<Long> scan(long startAddress, long endAddress, BytePatternSearcher searcher, int limit) {
+        List<Long> found = new ArrayList<>();
+        if (limit <= 0) {
+            return found;
+        }
+        ScanContext context = new ScanContext(searcher, limit);
+        try {
+            List<Segment> segments = split(readableRuns(startAddress, endAddress));
+            pool.invoke(new SegmentTask(context, segments, 0, segments.size()));
+        } finally {
+            context.idle.forEach(scanner -> scanner.reader.close());
+        }
+        found.addAll(context.found);
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * 查询地址范围内已提交且可读的区域，地址连续的区域合并为一段
+     *
+     * @param startAddress 起始地址（包含）
+     * @param endAddress   结束地址（不包含）
+     * @return 连续可读的地址区间
+     */
+    private List<MemoryRegion> readableRuns(long startAddress, long endAddress) {
+        List<MemoryRegion> runs = new ArrayList<>();
+        try (ProcessMemoryReader reader = readerFactory.get()) {
+            long address = startAddress;
+            MemoryRegion run = null;
+            while (address < endAddress) {
+                MemoryRegion region = reader.queryRegion(address);
+                // 超出地址空间
+                if (region == null || region.getEndAddress() <= address) {
+                    break;
+                }
+                long regionEnd = Math.min(region.getEndAddress(), endAddress);
+                if (!region.isReadable()) {
+                    run = null;
+                } else if (run != null && run.getEndAddress() == address) {
+                    // 与上一个可读区域地址连续，合并
+                    run.setSize(regionEnd - run.getBaseAddress());
+                } else {
+                    run = new MemoryRegion(address, regionEnd - address, true);
+                    runs.add(run);
+                }
+                address = regionEnd;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * 将连续可读的地址区间按分段大小切分
+     *
+     * @param runs 连续可读的地址区间
+     * @return 分段
+     */
+    private List<Segment> split(List<MemoryRegion> runs) {
+        List<Segment> segments = new ArrayList<>();
+        for (MemoryRegion run : runs) {
+            for (long start = run.getBaseAddress(); start < run.getEndAddress(); start += segmentSize) {
+                segments.add(new Segment(start, Math.min(start + segmentSize, run.getEndAddress()), run.getEndAddress()));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * 扫描分段，起始地址落在 [start, end) 内的匹配属于本段，
+     * 实际读取到 min(end + 模式长度 - 1, runEnd) 以覆盖跨段的匹配
+     */
+    private static class Segment {
+
+        private final long start;
+        private final long end;
+        private final long runEnd;
+
+        Segment(long start, long end, long runEnd) {
+            this.start = start;
+            this.end = end;
+            this.runEnd = runEnd;
+        }
+    }
+
+    /**
+     * 一次并行扫描的共享状态
+     */
+    private static class ScanContext {
+
+        private final BytePatternSearcher searcher;
+        private final int limit;
+        /**
+         * 目前地址最小的 limit 个匹配，堆顶为其中最大的地址
+         */
+        private final PriorityQueue<Long> found = new PriorityQueue<>(Comparator.reverseOrder());
+        private final Queue<PooledScanner> idle = new ConcurrentLinkedQueue<>();
+        /**
+         * 找满 limit 个之后为第 limit 小的匹配地址，不小于它的地址不会再进入结果
+         */
+        private volatile long cutoff = Long.MAX_VALUE;
+
+        ScanContext(BytePatternSearcher searcher, int limit) {
+            this.searcher = searcher;
+            this.limit = limit;
+        }
+
+        /**
+         * 记录一个匹配
+         *
+         * @param address 匹配的起始地址
+         * @return 同一段内更高的地址是否还可能进入结果
+         */
+        synchronized boolean add(long address) {
+            if (found.size() < limit) {
+                found.add(address);
+            } else if (address < found.peek()) {
+                found.poll();
+                found.add(address);
+            }
+            if (found.size() == limit) {
+                cutoff = found.peek();
+            }
+            return address < cutoff;
+        }
+
+        /**
+         * 从该地址开始的匹配是否都不可能进入结果
+         *
+         * @param address 地址
+         * @return 是否可以跳过
+         */
+        boolean isBeyondCutoff(long address) {
+            return address >= cutoff;
+        }
+    }
+
+    /**
+     * 扫描器与其持有的读取器
+     */
+    private static class PooledScanner {
+
+        private final ProcessMemoryReader reader;
+        private final MemoryScanner scanner;
+
+        PooledScanner(ProcessMemoryReader reader) {
+            this.reader = reader;
+            this.scanner = new MemoryScanner(reader);
+        }
+    }
+
+    /**
+     * 按分段区间拆分的并行扫描任务
+     */
+    private class SegmentTask extends RecursiveAction {
+
+        private final ScanContext context;
+        private final List<Segment> segments;
+        private final int from;
+        private final int to;
+
+        SegmentTask(ScanContext context, List<Segment> segments, int from, int to) {
+            this.context = context;
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            // 已找到足够的更低地址的匹配
+            if (from >= to || context.isBeyondCutoff(segments.get(from).start)) {
+                return;
+            }
+            // 只剩一段时直接扫描，否则一分为二
+            if (to - from == 1) {
+                scanSegment(segments.get(from));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SegmentTask(context, segments, from, middle),
+                    new SegmentTask(context, segments, middle, to));
+        }
+
+        /**
+         * 扫描一个分段
+         */
+        private void scanSegment(Segment segment) {
+            PooledScanner pooled = context.idle.poll();
+            if (pooled == null) {
+                pooled = new PooledScanner(readerFactory.get());
+            }
+            try {
+                long readEnd = Math.min(segment.end + context.searcher.length() - 1, segment.runEnd);
+                pooled.scanner.scan(segment.start, readEnd, context.searcher, address -> {
+                    // 起始地址落在下一段的匹配由下一段报告
+                    if (address >= segment.end) {
+                        return true;
+                    }
+                    return context.add(address);
+                }, () -> context.isBeyondCutoff(segment.start));
+            } finally {
+                context.idle.add(pooled);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.xcs.wx.memory;
+
+import java.io.Closeable;
+
+/**
+ * 进程内存读取器
+ * <p>
+ * 屏蔽内存来源，扫描逻辑只依赖区域查询与按地址读取：Windows 下读取目标进程，
+ * 也可以由字节数组或内存转储文件提供，便于在其他平台上运行扫描逻辑。
+ * 实现类通常持有可复用的读取缓冲区，不保证线程安全。
+ *
+ * @author xcs
+ * @date 2024年7月11日16:08:40
+ */
+public interface ProcessMemoryReader extends Closeable {
+
+    /**
+     * 查询地址所在的内存区域
+     *
+     * @param address 虚拟地址
+     * @return 包含该地址的区域，超出地址空间或查询失败时返回null
+     */
+    MemoryRegion queryRegion(long address);
+
+    /**
+     * 从指定地址读取内存
+     *
+     * @param address 虚拟地址
+     * @param buffer  目标缓冲区
+     * @param offset  缓冲区偏移
+     * @param length  读取长度
+     * @return 实际读取的字节数，读取失败时返回0
+     */
+    int read(long address, byte[] buffer, int offset, int length);
+
+    /**
+     * 释放读取器持有的资源，默认无需释放
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,88 @@
+package com.xcs.wx.memory;
+
+import cn.hutool.core.util.ArrayUtil;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.BaseTSD;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.IntByReference;
+
+/**
+ * 通过 VirtualQueryEx 与 ReadProcessMemory 读取 Windows 进程内存
+ * <p>
+ * 读取经由一块固定大小、可复用的本地内存中转，不会按区域大小分配内存。
+ * 进程句柄由调用方管理，读取器不负责关闭。
+ *
+ * @author xcs
+ * @date 2024年7月11日16:12:03
+ */
+public class Win32ProcessMemoryReader implements ProcessMemoryReader {
+
+    /**
+     * 默认的本地中转内存大小
+     */
+    private static final int DEFAULT_TRANSFER_SIZE = 1 << 20;
+
+    /**
+     * 允许读取的内存保护标志
+     */
+    private static final int[] ALLOWED_PROTECTIONS = {WinNT.PAGE_EXECUTE, WinNT.PAGE_EXECUTE_READ,
+            WinNT.PAGE_EXECUTE_READWRITE, WinNT.PAGE_READWRITE, WinNT.PAGE_READONLY};
+
+    /**
+     * 目标进程句柄
+     */
+    private final WinNT.HANDLE process;
+
+    /**
+     * 本地中转内存
+     */
+    private final Memory transfer;
+
+    /**
+     * 已读取字节数
+     */
+    private final IntByReference bytesRead = new IntByReference();
+
+    public Win32ProcessMemoryReader(WinNT.HANDLE process) {
+        this(process, DEFAULT_TRANSFER_SIZE);
+    }
+
+    public Win32ProcessMemoryReader(WinNT.HANDLE process, int transferSize) {
+        this.process = process;
+        this.transfer = new Memory(transferSize);
+    }
+
+    @Override
+    public MemoryRegion queryRegion(long address) {
+        // 获取内存基本信息
+        WinNT.MEMORY_BASIC_INFORMATION mbi = new WinNT.MEMORY_BASIC_INFORMATION();
+        // 查询失败说明已超出地址空间
+        if (Kernel32.INSTANCE.VirtualQueryEx(process, new Pointer(address), mbi, new BaseTSD.SIZE_T(mbi.size())).longValue() == 0) {
+            return null;
+        }
+        // 检查内存状态和保护标志是否符合要求
+        boolean readable = mbi.state.intValue() == WinNT.MEM_COMMIT && ArrayUtil.contains(ALLOWED_PROTECTIONS, mbi.protect.intValue());
+        return new MemoryRegion(Pointer.nativeValue(mbi.baseAddress), mbi.regionSize.longValue(), readable);
+    }
+
+    @Override
+    public int read(long address, byte[] buffer, int offset, int length) {
+        int total = 0;
+        while (total < length) {
+            int size = (int) Math.min(length - total, transfer.size());
+            // 部分读取时返回 false，但已读取的字节仍然有效
+            boolean success = Kernel32.INSTANCE.ReadProcessMemory(process, new Pointer(address + total), transfer, size, bytesRead);
+            int read = bytesRead.getValue();
+            if (read > 0) {
+                transfer.read(0, buffer, offset + total, read);
+                total += read;
+            }
+            if (!success || read < size) {
+                break;
+            }
+        }
+        return total;
+    }
+}
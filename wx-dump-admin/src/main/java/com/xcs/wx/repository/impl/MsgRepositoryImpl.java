@@ -10,6 +10,13 @@ import com.xcs.wx.domain.vo.MsgTypeDistributionVO;
 import com.xcs.wx.domain.vo.TopContactsVO;
 import com.xcs.wx.mapper.MsgMapper;
 import com.xcs.wx.repository.MsgRepository;
+import com.xcs.wx.service.EncryptedDbService;
+import com.xcs.wx.service.UserService;
+import com.xcs.wx.sqlite.SqliteEntityMapper;
+import com.xcs.wx.sqlite.SqliteIndex;
+import com.xcs.wx.sqlite.SqliteReader;
+import com.xcs.wx.util.DSNameUtil;
+import com.xcs.wx.util.DecryptStateHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
@@ -28,8 +35,16 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MsgRepositoryImpl extends ServiceImpl<MsgMapper, Msg> implements MsgRepository {
 
+    private final UserService userService;
+    private final EncryptedDbService encryptedDbService;
+
     @Override
     public List<Msg> queryMsgByTalker(String talker, Long nextSequence) {
+        // 优先直接读取加密数据库
+        List<Msg> directMsgList = queryMsgByTalkerDirect(talker, nextSequence);
+        if (directMsgList != null) {
+            return directMsgList;
+        }
         List<Msg> msgList = new ArrayList<>();
         List<String> msgDbList = DataSourceType.getMsgDb().stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList());
         int offset = 20;
@@ -47,6 +62,57 @@ public class MsgRepositoryImpl extends ServiceImpl<MsgMapper, Msg> implements Ms
         return msgList;
     }
 
+    /**
+     * 直接读取加密的MSG*.db，与JDBC查询的结果和顺序一致，
+     * 按(StrTalker, Sequence)索引倒序查找，读够一页即停止，只在每个分库都有该索引时使用，否则回退到解密后的副本
+     *
+     * @param talker       会话
+     * @param nextSequence 上一页最后一条消息的Sequence
+     * @return 消息列表，加密数据库未登记、缺少索引或者读取失败时返回null
+     */
+    private List<Msg> queryMsgByTalkerDirect(String talker, Long nextSequence) {
+        String wxId = userService.currentUser();
+        if (wxId == null) {
+            return null;
+        }
+        List<String> msgDbList = encryptedDbService.getMsgDb(wxId).stream()
+                // 与JDBC查询一致，排除还在解密中的数据库
+                .filter(dbName -> !DecryptStateHolder.isPending(DSNameUtil.getDSName(wxId, dbName)))
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        if (msgDbList.isEmpty()) {
+            return null;
+        }
+        List<Msg> msgList = new ArrayList<>();
+        int limit = 20;
+        // 从上一页最后一条消息之前开始查找
+        Object[] upper = (nextSequence != null && nextSequence > 0) ? new Object[]{talker, nextSequence} : null;
+        try {
+            for (String dbName : msgDbList) {
+                if (msgList.size() >= limit) {
+                    break;
+                }
+                SqliteReader reader = encryptedDbService.getReader(wxId, dbName);
+                if (reader == null || reader.getTable("MSG") == null) {
+                    return null;
+                }
+                // 没有(StrTalker, Sequence)索引时代价太高，交给解密后已建索引的副本查询
+                SqliteIndex index = reader.findIndex("MSG", "StrTalker", "Sequence");
+                if (index == null || Boolean.TRUE.equals(index.getDescending().get(1))) {
+                    return null;
+                }
+                reader.scanIndexDescending(index, new Object[]{talker}, upper, row -> {
+                    msgList.add(SqliteEntityMapper.map(row, Msg.class));
+                    return msgList.size() < limit;
+                });
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read messages from encrypted database, fall back to decrypted copy", e);
+            return null;
+        }
+        return msgList;
+    }
+
     @Override
     public List<Msg> exportMsg(String talker) {
         List<Msg> msgList = new ArrayList<>();
@@ -0,0 +1,31 @@
+package com.xcs.wx.service;
+
+import com.xcs.wx.domain.vo.DataSourceBudgetVO;
+
+/**
+ * 数据源连接预算服务，限制所有SQLite连接池的连接总数与页缓存总大小
+ *
+ * @author xcs
+ * @date 2024年7月17日09:40:52
+ */
+public interface DataSourceBudgetService {
+
+    /**
+     * 创建连接池之前为新连接腾出预算，超出时关闭其他数据源最久未使用的空闲连接
+     *
+     * @param dsName 即将创建连接池的数据源名称
+     */
+    void ensureCapacity(String dsName);
+
+    /**
+     * 检查所有数据源，超出预算时关闭最久未使用的空闲连接
+     */
+    void enforce();
+
+    /**
+     * 获取当前的分配情况
+     *
+     * @return DataSourceBudgetVO
+     */
+    DataSourceBudgetVO getAllocation();
+}
@@ -0,0 +1,20 @@
+package com.xcs.wx.service;
+
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+
+/**
+ * 解密后数据库优化服务
+ *
+ * @author xcs
+ * @date 2024年7月9日09:32:18
+ */
+public interface DatabaseOptimizeService {
+
+    /**
+     * 为解密后的数据库创建查询用的索引并执行ANALYZE，按配置执行VACUUM
+     *
+     * @param dbPath 解密后的数据库路径
+     * @param stats  解密统计，记录各步骤的耗时
+     */
+    void optimize(String dbPath, DecryptStatsBO stats);
+}
@@ -1,8 +1,8 @@
 package com.xcs.wx.service;
 
+import com.xcs.wx.domain.bo.DecryptJobBO;
 import com.xcs.wx.domain.dto.DecryptDTO;
 import com.xcs.wx.domain.vo.DatabaseVO;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -17,10 +17,10 @@ public interface DatabaseService {
     /**
      * 数据库解密
      *
-     * @param emitter    sse发送事件对象
+     * @param job        解密任务，进度推送给任务的所有连接，任务取消时停止解密
      * @param decryptDTO 解密信息
      */
-    void decrypt(SseEmitter emitter, DecryptDTO decryptDTO);
+    void decrypt(DecryptJobBO job, DecryptDTO decryptDTO);
 
     /**
      * 获取数据库列表
@@ -0,0 +1,53 @@
+package com.xcs.wx.service;
+
+import com.xcs.wx.domain.dto.DecryptDTO;
+import com.xcs.wx.domain.vo.DecryptJobVO;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 解密任务服务
+ *
+ * @author xcs
+ * @date 2024年7月6日10:35:52
+ */
+public interface DecryptJobService {
+
+    /**
+     * 提交解密任务，账号已有运行中的任务时直接接入该任务
+     *
+     * @param decryptDTO 解密信息
+     * @return sse发送事件对象
+     */
+    SseEmitter submit(DecryptDTO decryptDTO);
+
+    /**
+     * 解密当前登录的所有账号，每个账号一个任务，共享解密线程池并按账号轮流执行
+     *
+     * @return sse发送事件对象，接收所有账号的事件，全部结束后关闭
+     */
+    SseEmitter submitAll();
+
+    /**
+     * 重新接入账号的解密任务
+     *
+     * @param wxId wxId
+     * @return sse发送事件对象
+     */
+    SseEmitter attach(String wxId);
+
+    /**
+     * 取消账号的解密任务，已解密的部分保留断点，下次解密时继续
+     *
+     * @param wxId wxId
+     * @return 是否有运行中的任务被取消
+     */
+    boolean cancel(String wxId);
+
+    /**
+     * 查询账号的解密任务
+     *
+     * @param wxId wxId
+     * @return 解密任务，不存在时返回null
+     */
+    DecryptJobVO getJob(String wxId);
+}
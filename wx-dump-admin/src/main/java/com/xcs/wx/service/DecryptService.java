@@ -1,6 +1,9 @@
 package com.xcs.wx.service;
 
 import com.xcs.wx.domain.bo.DecryptBO;
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+
+import java.util.function.BooleanSupplier;
 
 /**
  * 解密服务
@@ -15,6 +18,18 @@ public interface DecryptService {
      *
      * @param password 秘钥
      * @param decryptBO    输入文件
+     * @return 是否解密成功
+     */
+    boolean wechatDecrypt(String password, DecryptBO decryptBO);
+
+    /**
+     * 解密，支持取消，取消或者中断后下次从断点继续
+     *
+     * @param password  秘钥
+     * @param decryptBO 输入文件
+     * @param cancelled 是否已取消
+     * @param stats     解密统计，记录各阶段耗时与处理的字节数
+     * @return 是否解密成功
      */
-    void wechatDecrypt(String password, DecryptBO decryptBO);
+    boolean wechatDecrypt(String password, DecryptBO decryptBO, BooleanSupplier cancelled, DecryptStatsBO stats);
 }
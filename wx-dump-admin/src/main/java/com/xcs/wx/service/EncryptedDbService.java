@@ -0,0 +1,50 @@
+package com.xcs.wx.service;
+
+import com.xcs.wx.sqlite.SqliteReader;
+
+import java.util.List;
+
+/**
+ * 加密数据库直接读取服务
+ *
+ * @author xcs
+ * @date 2024年7月5日17:02:44
+ */
+public interface EncryptedDbService {
+
+    /**
+     * 登记加密数据库与秘钥，读取器在第一次使用时打开
+     *
+     * @param wxId     wxId
+     * @param dbName   数据库名
+     * @param input    加密数据库路径
+     * @param password 秘钥
+     */
+    void register(String wxId, String dbName, String input, String password);
+
+    /**
+     * 登记账号微信目录下的全部加密数据库，不依赖解密后的副本
+     *
+     * @param wxId     wxId
+     * @param basePath 微信存储路径
+     * @param password 秘钥
+     */
+    void registerAccount(String wxId, String basePath, String password);
+
+    /**
+     * 获取加密数据库的读取器
+     *
+     * @param wxId   wxId
+     * @param dbName 数据库名
+     * @return 读取器，未登记或者打开失败时返回null
+     */
+    SqliteReader getReader(String wxId, String dbName);
+
+    /**
+     * 获取已登记的MSG*.db
+     *
+     * @param wxId wxId
+     * @return 数据库名称
+     */
+    List<String> getMsgDb(String wxId);
+}
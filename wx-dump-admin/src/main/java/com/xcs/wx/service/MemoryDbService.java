@@ -0,0 +1,35 @@
+package com.xcs.wx.service;
+
+/**
+ * 内存数据库服务，将体积小、访问频繁的数据库整库加载到内存中
+ *
+ * @author xcs
+ * @date 2024年7月10日10:12:35
+ */
+public interface MemoryDbService {
+
+    /**
+     * 数据库是否配置为加载到内存中
+     *
+     * @param dbName 数据库名称
+     * @return 是否加载到内存中
+     */
+    boolean isInMemory(String dbName);
+
+    /**
+     * 将解密后的数据库加载到内存中，同一个数据源重复加载时，文件未变化则复用已加载的内存数据库，否则替换旧的内存数据库
+     *
+     * @param dsName 数据源名称
+     * @param dbPath 解密后的数据库路径
+     * @return 内存数据库的连接地址
+     * @throws Exception 加载失败
+     */
+    String load(String dsName, String dbPath) throws Exception;
+
+    /**
+     * 保持内存数据库存活的连接数量，这些连接不属于任何连接池，但同样计入连接预算
+     *
+     * @return 连接数量
+     */
+    int getHolderCount();
+}
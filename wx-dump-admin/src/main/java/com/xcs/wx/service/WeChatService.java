@@ -1,5 +1,7 @@
 package com.xcs.wx.service;
 
+import com.xcs.wx.domain.dto.DumpAnalysisDTO;
+import com.xcs.wx.domain.vo.DumpAnalysisVO;
 import com.xcs.wx.domain.vo.WeChatConfigVO;
 
 import java.util.List;
@@ -61,10 +63,21 @@ public interface WeChatService {
 
     /**
      * 获取指定进程和数据库路径下的密钥
+     * <p>
+     * 优先使用上次保存的密钥，校验不通过时再扫描进程内存，扫描得到的密钥会保存下来
      *
      * @param pid    目标进程的进程ID
+     * @param wxId   wxId
      * @param dbPath 数据库路径
      * @return 返回找到的密钥，如果未找到则返回null
      */
-    String getKey(int pid, String dbPath);
+    String getKey(int pid, String wxId, String dbPath);
+
+    /**
+     * 离线分析进程内存转储，提取微信ID与密钥，无需运行中的微信进程
+     *
+     * @param dumpAnalysisDTO 转储文件与微信文件目录
+     * @return 分析结果
+     */
+    DumpAnalysisVO analyzeDump(DumpAnalysisDTO dumpAnalysisDTO);
 }
@@ -0,0 +1,190 @@
+package com.xcs.wx.service.impl;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.extra.spring.SpringUtil;
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.baomidou.dynamic.datasource.ds.ItemDataSource;
+import com.xcs.wx.config.SqliteProperties;
+import com.xcs.wx.domain.vo.DataSourceAllocationVO;
+import com.xcs.wx.domain.vo.DataSourceBudgetVO;
+import com.xcs.wx.service.DataSourceBudgetService;
+import com.xcs.wx.service.MemoryDbService;
+import com.xcs.wx.util.LazyDataSource;
+import com.xcs.wx.util.SqlCipherUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 数据源连接预算服务实现类
+ * <p>
+ * 每个数据库一个连接池，每个连接持有自己的页缓存，账号和数据库多了以后连接数与内存都会失控。
+ * 创建连接池之前与定时检查时统计所有连接池，超出预算时按最后访问时间从旧到新回收：
+ * 先关闭各连接池中超出minIdle的空闲连接，仍然超出时再整个关闭没有借出连接的连接池，下次访问时重新创建。
+ * 保持内存数据库存活的连接同样计入连接总数，但不会被回收。
+ *
+ * @author xcs
+ * @date 2024年7月17日09:46:15
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DataSourceBudgetServiceImpl implements DataSourceBudgetService {
+
+    /**
+     * 检查预算的间隔（毫秒）
+     */
+    private static final long CHECK_INTERVAL = 10000;
+
+    /**
+     * 新连接池初始化时创建的连接数，与注册数据源时的initialSize一致
+     */
+    private static final int INITIAL_CONNECTIONS = 1;
+
+    /**
+     * 未配置cache_size时SQLite的默认值，单位：KB
+     */
+    private static final int DEFAULT_CACHE_SIZE = -2000;
+
+    /**
+     * 连接配置
+     */
+    private final SqliteProperties sqliteProperties;
+
+    /**
+     * 内存数据库服务
+     */
+    private final MemoryDbService memoryDbService;
+
+    @Override
+    public void ensureCapacity(String dsName) {
+        evict(dsName, INITIAL_CONNECTIONS, INITIAL_CONNECTIONS * getCacheSize(dsName));
+    }
+
+    @Override
+    @Scheduled(fixedDelay = CHECK_INTERVAL, initialDelay = CHECK_INTERVAL)
+    public void enforce() {
+        evict(null, 0, 0);
+    }
+
+    @Override
+    public DataSourceBudgetVO getAllocation() {
+        List<LazyDataSource> dataSources = getLazyDataSources();
+        List<DataSourceAllocationVO> allocations = dataSources.stream()
+                .filter(LazyDataSource::isInitialized)
+                .sorted(Comparator.comparingLong(LazyDataSource::getLastAccessTime).reversed())
+                .map(dataSource -> DataSourceAllocationVO.builder()
+                        .name(dataSource.getName())
+                        .connections(dataSource.getConnectionCount())
+                        .activeConnections(dataSource.getActiveCount())
+                        .cacheSize(dataSource.getConnectionCount() * getCacheSize(dataSource.getName()))
+                        .lastAccessTime(DateUtil.formatDateTime(new Date(dataSource.getLastAccessTime())))
+                        .build())
+                .collect(Collectors.toList());
+        return DataSourceBudgetVO.builder()
+                .maxConnections(sqliteProperties.getMaxConnections())
+                .connections(allocations.stream().mapToInt(DataSourceAllocationVO::getConnections).sum() + memoryDbService.getHolderCount())
+                .activeConnections(allocations.stream().mapToInt(DataSourceAllocationVO::getActiveConnections).sum())
+                .maxCacheSize(sqliteProperties.getMaxCacheSize())
+                .cacheSize(allocations.stream().mapToLong(DataSourceAllocationVO::getCacheSize).sum())
+                .registered(dataSources.size())
+                .dataSources(allocations)
+                .build();
+    }
+
+    /**
+     * 回收连接直到满足预算，最久未使用的数据源先回收
+     *
+     * @param exclude          不回收的数据源名称
+     * @param extraConnections 即将新增的连接数
+     * @param extraCacheSize   即将新增的页缓存大小
+     */
+    private synchronized void evict(String exclude, int extraConnections, long extraCacheSize) {
+        List<LazyDataSource> dataSources = getLazyDataSources().stream()
+                .filter(LazyDataSource::isInitialized)
+                .collect(Collectors.toList());
+        // 内存数据库的连接不属于任何连接池，只计数
+        int connections = extraConnections + memoryDbService.getHolderCount();
+        long cacheSize = extraCacheSize;
+        for (LazyDataSource dataSource : dataSources) {
+            int count = dataSource.getConnectionCount();
+            connections += count;
+            cacheSize += count * getCacheSize(dataSource.getName());
+        }
+        if (isWithinBudget(connections, cacheSize)) {
+            return;
+        }
+        dataSources.sort(Comparator.comparingLong(LazyDataSource::getLastAccessTime));
+        // 先关闭多余的空闲连接，仍然超出时再关闭没有借出连接的连接池
+        for (boolean closePool : new boolean[]{false, true}) {
+            for (LazyDataSource dataSource : dataSources) {
+                if (isWithinBudget(connections, cacheSize)) {
+                    break;
+                }
+                if (Objects.equals(dataSource.getName(), exclude)) {
+                    continue;
+                }
+                int before = dataSource.getConnectionCount();
+                if (closePool) {
+                    dataSource.closeIfIdle(0);
+                } else {
+                    dataSource.shrink();
+                }
+                int closed = before - dataSource.getConnectionCount();
+                connections -= closed;
+                cacheSize -= closed * getCacheSize(dataSource.getName());
+            }
+        }
+        // 剩下的连接都在使用中
+        if (!isWithinBudget(connections, cacheSize)) {
+            log.warn("Data source budget exceeded: {} connections, {} bytes page cache", connections, cacheSize);
+        }
+    }
+
+    /**
+     * 是否满足预算
+     *
+     * @param connections 连接数
+     * @param cacheSize   页缓存大小
+     * @return 是否满足
+     */
+    private boolean isWithinBudget(int connections, long cacheSize) {
+        return connections <= sqliteProperties.getMaxConnections() && cacheSize <= sqliteProperties.getMaxCacheSize();
+    }
+
+    /**
+     * 按数据库的cache_size估算每个连接的页缓存大小
+     *
+     * @param dsName 数据源名称，格式为 wxId#dbName
+     * @return 页缓存大小，单位：字节
+     */
+    private long getCacheSize(String dsName) {
+        String dbName = dsName.substring(dsName.indexOf('#') + 1);
+        Integer cacheSize = sqliteProperties.resolve(dbName).getCacheSize();
+        long size = cacheSize != null ? cacheSize : DEFAULT_CACHE_SIZE;
+        // 负数为KB，正数为页数
+        return size < 0 ? -size * 1024 : size * SqlCipherUtil.DEFAULT_PAGESIZE;
+    }
+
+    /**
+     * 获取所有延迟创建的数据源
+     *
+     * @return LazyDataSource
+     */
+    private List<LazyDataSource> getLazyDataSources() {
+        DynamicRoutingDataSource dynamicRoutingDataSource = SpringUtil.getBean(DynamicRoutingDataSource.class);
+        return dynamicRoutingDataSource.getDataSources().values().stream()
+                .filter(ItemDataSource.class::isInstance)
+                .map(dataSource -> ((ItemDataSource) dataSource).getRealDataSource())
+                .filter(LazyDataSource.class::isInstance)
+                .map(LazyDataSource.class::cast)
+                .collect(Collectors.toList());
+    }
+}
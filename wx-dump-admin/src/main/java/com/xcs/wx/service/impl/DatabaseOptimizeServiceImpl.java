@@ -0,0 +1,220 @@
+package com.xcs.wx.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HashUtil;
+import com.xcs.wx.config.DecryptProperties;
+import com.xcs.wx.constant.SqliteConstant;
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+import com.xcs.wx.domain.bo.PageDigestBO;
+import com.xcs.wx.service.DatabaseOptimizeService;
+import com.xcs.wx.util.PageDigestUtil;
+import com.xcs.wx.util.SqlCipherUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 解密后数据库优化服务实现类
+ * <p>
+ * 解密后的文件只供本系统查询，按查询方式补充索引。优化会修改解密后的文件，
+ * 因此优化前后逐页比较明文，将发生变化的页在摘要文件中作废，增量解密时这些页会重新解密，
+ * 恢复成原始内容后再次优化。
+ *
+ * @author xcs
+ * @date 2024年7月9日09:38:52
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DatabaseOptimizeServiceImpl implements DatabaseOptimizeService {
+
+    /**
+     * 读取明文页时的缓冲区大小
+     */
+    private static final int BUFFER_PAGES = 256;
+
+    /**
+     * 作废的页摘要，不能使用0，填充页面的摘要是0
+     */
+    private static final long INVALID_DIGEST = -1L;
+
+    /**
+     * 每类数据库需要创建的索引
+     */
+    private static final Map<Pattern, List<String>> INDEXES = new LinkedHashMap<>();
+
+    static {
+        INDEXES.put(Pattern.compile("MSG\\d*\\.db"), Arrays.asList(
+                "CREATE INDEX IF NOT EXISTS WxDump_MSG_StrTalker_Sequence ON MSG(StrTalker, Sequence)",
+                "CREATE INDEX IF NOT EXISTS WxDump_MSG_CreateTime_IsSender_Type_SubType ON MSG(CreateTime, IsSender, Type, SubType)"));
+        INDEXES.put(Pattern.compile("MicroMsg\\.db"), Collections.singletonList(
+                "CREATE INDEX IF NOT EXISTS WxDump_Contact_UserName ON Contact(UserName)"));
+        INDEXES.put(Pattern.compile("HardLinkImage\\.db"), Collections.singletonList(
+                "CREATE INDEX IF NOT EXISTS WxDump_HardLinkImageAttribute_Md5 ON HardLinkImageAttribute(Md5)"));
+        INDEXES.put(Pattern.compile("HardLinkVideo\\.db"), Collections.singletonList(
+                "CREATE INDEX IF NOT EXISTS WxDump_HardLinkVideoAttribute_Md5 ON HardLinkVideoAttribute(Md5)"));
+    }
+
+    /**
+     * 解密配置
+     */
+    private final DecryptProperties decryptProperties;
+
+    @Override
+    public void optimize(String dbPath, DecryptStatsBO stats) {
+        List<String> indexes = getIndexes(FileUtil.getName(dbPath));
+        // 没有需要创建的索引，也不需要VACUUM
+        if (indexes.isEmpty() && !decryptProperties.isVacuum()) {
+            return;
+        }
+        File dbFile = new File(dbPath);
+        File digestFile = PageDigestUtil.getDigestFile(dbPath);
+        try {
+            // 与当前文件一致的摘要，优化前记录明文页的指纹
+            PageDigestBO pageDigest = getPageDigest(digestFile, dbFile);
+            long[] before = pageDigest != null ? hashPages(dbFile) : null;
+
+            long indexNanos;
+            long analyzeNanos;
+            long vacuumNanos = 0;
+            try (Connection connection = DriverManager.getConnection(SqliteConstant.URL_PREFIX + dbPath);
+                 Statement statement = connection.createStatement()) {
+                long start = System.nanoTime();
+                for (String index : indexes) {
+                    try {
+                        statement.execute(index);
+                    } catch (SQLException e) {
+                        // 旧版本的数据库可能没有对应的表或字段
+                        log.warn("Create index failed: {}, {}", dbPath, e.getMessage());
+                    }
+                }
+                indexNanos = System.nanoTime() - start;
+                // 更新统计信息，查询时才会选用新索引
+                start = System.nanoTime();
+                statement.execute("ANALYZE");
+                analyzeNanos = System.nanoTime() - start;
+                if (decryptProperties.isVacuum()) {
+                    start = System.nanoTime();
+                    statement.execute("VACUUM");
+                    vacuumNanos = System.nanoTime() - start;
+                }
+            }
+            stats.addOptimizeNanos(indexNanos, analyzeNanos, vacuumNanos);
+            log.info("Optimized {}: index {} ms, analyze {} ms, vacuum {} ms", FileUtil.getName(dbPath),
+                    indexNanos / 1_000_000, analyzeNanos / 1_000_000, vacuumNanos / 1_000_000);
+
+            // 作废发生变化的页，增量解密时重新解密
+            if (pageDigest != null) {
+                invalidateChangedPages(pageDigest, before, hashPages(dbFile));
+                pageDigest.setOutputSize(dbFile.length());
+                pageDigest.setOutputLastModified(dbFile.lastModified());
+                PageDigestUtil.write(digestFile, pageDigest);
+            }
+        } catch (Exception e) {
+            log.error("Optimize database failed: {}", dbPath, e);
+            // 无法确认文件内容与摘要是否一致，下次完整解密
+            PageDigestUtil.delete(digestFile);
+        }
+    }
+
+    /**
+     * 获取数据库需要创建的索引
+     *
+     * @param dbName 数据库名称
+     * @return 索引语句
+     */
+    private List<String> getIndexes(String dbName) {
+        return INDEXES.entrySet().stream()
+                .filter(entry -> entry.getKey().matcher(dbName).matches())
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * 读取与当前文件一致的摘要，不一致时删除
+     *
+     * @param digestFile 摘要文件
+     * @param dbFile     解密后的文件
+     * @return 摘要，不存在或者不一致时返回null
+     */
+    private PageDigestBO getPageDigest(File digestFile, File dbFile) {
+        PageDigestBO pageDigest = PageDigestUtil.read(digestFile);
+        if (pageDigest == null) {
+            return null;
+        }
+        if (pageDigest.getOutputSize() != dbFile.length() || pageDigest.getOutputLastModified() != dbFile.lastModified()) {
+            PageDigestUtil.delete(digestFile);
+            return null;
+        }
+        return pageDigest;
+    }
+
+    /**
+     * 作废优化前后内容不同的页，以及优化后已经不存在的页
+     *
+     * @param pageDigest 摘要
+     * @param before     优化前的明文页指纹
+     * @param after      优化后的明文页指纹
+     */
+    private void invalidateChangedPages(PageDigestBO pageDigest, long[] before, long[] after) {
+        long[] digests = pageDigest.getDigests();
+        int invalidated = 0;
+        for (int i = 0; i < digests.length; i++) {
+            if (i >= before.length || i >= after.length || before[i] != after[i]) {
+                digests[i] = INVALID_DIGEST;
+                invalidated++;
+            }
+        }
+        log.debug("Invalidated {} of {} pages after optimize", invalidated, digests.length);
+    }
+
+    /**
+     * 计算每一页明文的指纹
+     *
+     * @param dbFile 解密后的文件
+     * @return 逐页指纹
+     * @throws IOException 读取异常
+     */
+    private long[] hashPages(File dbFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)) {
+            long[] hashes = new long[(int) (channel.size() / SqlCipherUtil.DEFAULT_PAGESIZE)];
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_PAGES * SqlCipherUtil.DEFAULT_PAGESIZE);
+            byte[] page = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+            int pageIndex = 0;
+            long position = 0;
+            while (pageIndex < hashes.length) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+                buffer.flip();
+                while (buffer.remaining() >= SqlCipherUtil.DEFAULT_PAGESIZE && pageIndex < hashes.length) {
+                    buffer.get(page);
+                    hashes[pageIndex++] = HashUtil.cityHash64(page);
+                }
+                // 不足一页的部分下次重新读取
+                position -= buffer.remaining();
+            }
+            return hashes;
+        }
+    }
+}
@@ -7,36 +7,67 @@ import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
 import com.baomidou.dynamic.datasource.creator.DataSourceProperty;
 import com.baomidou.dynamic.datasource.creator.DefaultDataSourceCreator;
 import com.baomidou.dynamic.datasource.creator.druid.DruidConfig;
+import com.baomidou.dynamic.datasource.ds.ItemDataSource;
+import com.baomidou.dynamic.datasource.enums.SeataMode;
+import com.xcs.wx.config.DecryptProperties;
+import com.xcs.wx.config.SqliteProperties;
+import com.xcs.wx.constant.DataSourceType;
+import com.xcs.wx.constant.DecryptStatusConstant;
 import com.xcs.wx.constant.SqliteConstant;
 import com.xcs.wx.domain.bo.DecryptBO;
+import com.xcs.wx.domain.bo.DecryptJobBO;
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+import com.xcs.wx.domain.bo.FileFingerprintBO;
 import com.xcs.wx.domain.bo.UserBO;
 import com.xcs.wx.domain.dto.DecryptDTO;
 import com.xcs.wx.domain.vo.DatabaseVO;
 import com.xcs.wx.domain.vo.DecryptVO;
 import com.xcs.wx.domain.vo.ResponseVO;
+import com.xcs.wx.mapping.DecryptStatsMapping;
+import com.xcs.wx.service.DataSourceBudgetService;
+import com.xcs.wx.service.DatabaseOptimizeService;
 import com.xcs.wx.service.DatabaseService;
 import com.xcs.wx.service.DecryptService;
+import com.xcs.wx.service.EncryptedDbService;
+import com.xcs.wx.service.MemoryDbService;
 import com.xcs.wx.service.UserService;
 import com.xcs.wx.service.WeChatService;
 import com.xcs.wx.util.DSNameUtil;
+import com.xcs.wx.util.DecryptKeyUtil;
+import com.xcs.wx.util.DecryptManifestUtil;
+import com.xcs.wx.util.DecryptStateHolder;
 import com.xcs.wx.util.DirUtil;
+import com.xcs.wx.util.LazyDataSource;
+import com.xcs.wx.util.RoundRobinExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
-import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.sql.DataSource;
 import java.io.File;
-import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -51,29 +82,48 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 public class DatabaseServiceImpl implements DatabaseService, ApplicationRunner {
 
+    /**
+     * MSG分片的文件名称
+     */
+    private static final Pattern MSG_DB_PATTERN = Pattern.compile("MSG(\\d*)\\.db");
+
+    /**
+     * 解密过程中推送进度的间隔（毫秒）
+     */
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    /**
+     * 检查空闲连接池的间隔（毫秒）
+     */
+    private static final long IDLE_CHECK_INTERVAL = 60000;
+
     private final DecryptService decryptService;
+    private final DatabaseOptimizeService databaseOptimizeService;
     private final WeChatService weChatService;
     private final UserService userService;
+    private final EncryptedDbService encryptedDbService;
+    private final MemoryDbService memoryDbService;
+    private final RoundRobinExecutor decryptScheduler;
+    private final DecryptStatsMapping decryptStatsMapping;
+    private final DecryptProperties decryptProperties;
+    private final SqliteProperties sqliteProperties;
+    private final DataSourceBudgetService dataSourceBudgetService;
 
     @Override
-    public void decrypt(SseEmitter emitter, DecryptDTO decryptDTO) {
+    public void decrypt(DecryptJobBO job, DecryptDTO decryptDTO) {
         // 文件分隔符
         String separator = FileSystems.getDefault().getSeparator();
         // 微信目录
         String dbPath = decryptDTO.getBasePath() + separator + decryptDTO.getWxId();
         // 秘钥
-        String key = weChatService.getKey(decryptDTO.getPid(), dbPath);
+        String key = weChatService.getKey(decryptDTO.getPid(), decryptDTO.getWxId(), dbPath);
         // 获取微信秘钥失败
         if (StrUtil.isBlank(key)) {
-            try {
-                emitter.send(ResponseVO.error(-1, "获取微信秘钥失败，请稍后再试。"), MediaType.APPLICATION_JSON);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } finally {
-                emitter.complete();
-            }
+            job.send(ResponseVO.error(-1, "获取微信秘钥失败，请稍后再试。"));
             return;
         }
+        // 登记加密数据库，直接读取不需要等待解密
+        encryptedDbService.registerAccount(decryptDTO.getWxId(), decryptDTO.getBasePath(), key);
         // 扫描目录
         String scanPath = dbPath + separator + "MSG";
         // 输出目录
@@ -82,43 +132,233 @@ public class DatabaseServiceImpl implements DatabaseService, ApplicationRunner {
         try (Stream<Path> stream = Files.walk(Paths.get(scanPath))) {
             // 过滤出非目录的文件
             List<DecryptBO> decryptBOList = getWeChatDb(stream, outputPath);
-            // 遍历解密
-            for (int i = 0; i < decryptBOList.size(); i++) {
-                DecryptBO decryptBO = decryptBOList.get(i);
-                // 计算进度百分比
-                int currentProgress = ((i + 1) * 100) / decryptBOList.size();
-                // 当前要处理的文件
-                File currentFile = new File(decryptBO.getInput());
-                // 响应给前端的对象
-                DecryptVO decryptVO = DecryptVO.builder()
-                        .fileName(FileUtil.getName(currentFile))
-                        .fileSize(FileUtil.readableFileSize(currentFile))
-                        .total(decryptBOList.size())
-                        .currentProgress(currentProgress)
-                        .build();
-                try {
-                    emitter.send(ResponseVO.ok(decryptVO), MediaType.APPLICATION_JSON);
-                } catch (IOException ignore) {
+            // 优先解密大文件，避免最后只剩一个大文件在单线程上运行
+            decryptBOList.sort(Comparator.comparingLong((DecryptBO decryptBO) -> new File(decryptBO.getInput()).length()).reversed());
+            // 首屏依赖的数据库：MicroMsg.db与最新的MSG分片，其余数据库在后台继续解密
+            Map<Boolean, List<DecryptBO>> phases = decryptBOList.stream()
+                    .collect(Collectors.partitioningBy(getPriorityDb(decryptBOList)::contains));
+            // 按字节数估算剩余时间
+            job.getStats().addTotalBytes(decryptBOList.stream().mapToLong(decryptBO -> new File(decryptBO.getInput()).length()).sum());
+            // 上次解密的文件指纹
+            Map<String, FileFingerprintBO> manifest = DecryptManifestUtil.read(decryptDTO.getWxId());
+            // 需要解密的数据库在解密完成前不可用，未变化的数据库继续可用
+            decryptBOList.stream()
+                    .filter(decryptBO -> !isUnchanged(decryptBO, DecryptManifestUtil.fingerprint(new File(decryptBO.getInput())), manifest))
+                    .forEach(decryptBO -> DecryptStateHolder.markPending(decryptDTO.getWxId(), FileUtil.getName(decryptBO.getOutput())));
+            // 已完成的数量
+            AtomicInteger finished = new AtomicInteger();
+            // 先解密首屏依赖的数据库
+            decryptFiles(job, key, phases.get(true), manifest, finished, decryptBOList.size());
+            // 保存用户，此时账号已经可用；任务已取消时首屏依赖的数据库可能不完整，不保存
+            if (!job.isCancelled()) {
+                userService.saveUser(UserBO.builder()
+                        .basePath(decryptDTO.getBasePath())
+                        .account(decryptDTO.getAccount())
+                        .mobile(decryptDTO.getMobile())
+                        .version(decryptDTO.getVersion())
+                        .nickname(decryptDTO.getNickname())
+                        .wxId(decryptDTO.getWxId())
+                        .build());
+            }
+            // 后台解密其余数据库
+            decryptFiles(job, key, phases.get(false), manifest, finished, decryptBOList.size());
+        } catch (Exception e) {
+            log.error("Sqlite database decryption failed", e);
+        }
+    }
+
+    /**
+     * 获取首屏依赖的数据库，包括MicroMsg.db与编号最大的MSG分片
+     *
+     * @param decryptBOList 解密文件
+     * @return 首屏依赖的数据库
+     */
+    private Set<DecryptBO> getPriorityDb(List<DecryptBO> decryptBOList) {
+        Set<DecryptBO> priorityDb = new HashSet<>();
+        // 最新的MSG分片
+        DecryptBO newestMsgDb = null;
+        int newestMsgNo = -1;
+        for (DecryptBO decryptBO : decryptBOList) {
+            String fileName = FileUtil.getName(decryptBO.getInput());
+            if (DataSourceType.MICRO_MSG_DB.equals(fileName)) {
+                priorityDb.add(decryptBO);
+                continue;
+            }
+            Matcher matcher = MSG_DB_PATTERN.matcher(fileName);
+            if (matcher.matches()) {
+                int msgNo = StrUtil.isEmpty(matcher.group(1)) ? 0 : Integer.parseInt(matcher.group(1));
+                if (msgNo > newestMsgNo) {
+                    newestMsgNo = msgNo;
+                    newestMsgDb = decryptBO;
                 }
-                // 解密
-                decryptService.wechatDecrypt(key, decryptBO);
-                // 注册数据源
+            }
+        }
+        if (newestMsgDb != null) {
+            priorityDb.add(newestMsgDb);
+        }
+        return priorityDb;
+    }
+
+    /**
+     * 将一批文件提交到解密线程池并行解密，并等待全部完成，多个账号同时解密时按账号轮流执行
+     *
+     * @param job           解密任务
+     * @param key           秘钥
+     * @param decryptBOList 解密文件
+     * @param manifest      上次解密的文件指纹
+     * @param finished      已完成的数量
+     * @param total         总数量
+     * @throws InterruptedException 等待时被中断
+     * @throws ExecutionException   解密异常
+     */
+    private void decryptFiles(DecryptJobBO job, String key, List<DecryptBO> decryptBOList, Map<String, FileFingerprintBO> manifest, AtomicInteger finished, int total) throws InterruptedException, ExecutionException {
+        CompletableFuture<?>[] futures = decryptBOList.stream()
+                .map(decryptBO -> CompletableFuture.runAsync(() -> decryptFile(job, key, decryptBO, manifest, finished, total),
+                        task -> decryptScheduler.execute(job.getWxId(), task)))
+                .toArray(CompletableFuture[]::new);
+        // 等待全部文件解密完成，等待期间定时推送进度
+        CompletableFuture<Void> allOf = CompletableFuture.allOf(futures);
+        while (true) {
+            try {
+                allOf.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                sendDecryptEvent(job, DecryptStatusConstant.PROGRESS, null, null, (finished.get() * 100) / total, total);
+            }
+        }
+    }
+
+    /**
+     * 解密单个文件，解密完成后立即注册数据源，文件指纹未变化时跳过解密
+     *
+     * @param job       解密任务
+     * @param key       秘钥
+     * @param decryptBO 解密文件
+     * @param manifest  上次解密的文件指纹
+     * @param finished  已完成的数量
+     * @param total     总数量
+     */
+    private void decryptFile(DecryptJobBO job, String key, DecryptBO decryptBO, Map<String, FileFingerprintBO> manifest, AtomicInteger finished, int total) {
+        // 当前要处理的文件
+        File currentFile = new File(decryptBO.getInput());
+        // 文件名称
+        String fileName = FileUtil.getName(currentFile);
+        // 账号
+        String wxId = FileUtil.getName(FileUtil.getParent(decryptBO.getOutput(), 1));
+        // 任务已取消，排队中的文件不再解密
+        if (job.isCancelled()) {
+            DecryptStateHolder.markDone(wxId, fileName);
+            return;
+        }
+        // 解密前计算指纹，解密过程中文件被修改时下次会重新解密
+        FileFingerprintBO fingerprint = DecryptManifestUtil.fingerprint(currentFile);
+        // 指纹一致且解密后的文件还在，跳过解密
+        if (isUnchanged(decryptBO, fingerprint, manifest)) {
+            // 数据源不存在时补充注册
+            if (!hasDataSource(decryptBO.getOutput())) {
                 registerDataSource(decryptBO.getOutput());
             }
-            // 保存用户
-            userService.saveUser(UserBO.builder()
-                    .basePath(decryptDTO.getBasePath())
-                    .account(decryptDTO.getAccount())
-                    .mobile(decryptDTO.getMobile())
-                    .version(decryptDTO.getVersion())
-                    .nickname(decryptDTO.getNickname())
-                    .wxId(decryptDTO.getWxId())
-                    .build());
+            // 数据库可用
+            DecryptStateHolder.markDone(wxId, fileName);
+            // 不需要解密的字节不计入剩余时间
+            job.getStats().addTotalBytes(-currentFile.length());
+            // 计算进度百分比
+            int currentProgress = (finished.incrementAndGet() * 100) / total;
+            // 文件未变化
+            sendDecryptEvent(job, DecryptStatusConstant.UNCHANGED, currentFile, null, currentProgress, total);
+            return;
+        }
+        // 开始解密
+        sendDecryptEvent(job, DecryptStatusConstant.START, currentFile, null, (finished.get() * 100) / total, total);
+        // 当前文件的解密统计，同时累加到任务的统计中
+        DecryptStatsBO fileStats = new DecryptStatsBO(job.getStats());
+        fileStats.addTotalBytes(currentFile.length());
+        // 先移除旧指纹并保存，解密失败或者进程退出时下次会重新解密
+        if (manifest.remove(fileName) != null) {
+            DecryptManifestUtil.write(wxId, manifest);
+        }
+        // 解密前的输出文件，解密失败时用于判断旧文件是否完好
+        File outputFile = new File(decryptBO.getOutput());
+        long previousLength = outputFile.isFile() ? outputFile.length() : -1;
+        long previousModified = outputFile.lastModified();
+        // 输出文件是否已经完整写入
+        boolean completed = false;
+        // 任务开始后才发生变化的文件同样在解密完成前不可用
+        DecryptStateHolder.markPending(wxId, fileName);
+        // 连接按不可变文件打开，改写文件前先关闭旧的数据源
+        removeDataSource(decryptBO.getOutput());
+        try {
+            // 解密
+            if (decryptService.wechatDecrypt(key, decryptBO, job::isCancelled, fileStats)) {
+                completed = true;
+                // 输出完成后立即保存本次解密的文件指纹，其他文件失败或者任务取消时下次只解密剩余的文件
+                if (fingerprint != null) {
+                    manifest.put(fileName, fingerprint);
+                    DecryptManifestUtil.write(wxId, manifest);
+                }
+                // 为查询创建索引，取消时跳过
+                if (decryptProperties.isOptimize() && !job.isCancelled()) {
+                    databaseOptimizeService.optimize(decryptBO.getOutput(), fileStats);
+                }
+            }
         } catch (Exception e) {
-            log.error("Sqlite database decryption failed", e);
+            log.error("Sqlite database decryption failed: {}", decryptBO.getInput(), e);
         } finally {
-            emitter.complete();
+            // 输出完整或者旧文件未被改写时重新注册数据源，写了一半的文件不注册
+            if (completed || (previousLength >= 0 && outputFile.length() == previousLength && outputFile.lastModified() == previousModified)) {
+                registerDataSource(decryptBO.getOutput());
+            }
+            // 无论成功与否都不再等待
+            DecryptStateHolder.markDone(wxId, fileName);
+            fileStats.finish();
         }
+        // 填充页面之后或者解密失败未处理的字节不计入剩余时间
+        job.getStats().addTotalBytes(fileStats.getProcessedBytes() - fileStats.getTotalBytes());
+        log.info("Decrypted {}: {} bytes in {} ms ({} MB/s), kdf {} ms, read {} ms, cipher {} ms, write {} ms", fileName,
+                fileStats.getDecryptedBytes(), fileStats.getElapsedTime(), String.format("%.1f", fileStats.getSpeed()),
+                fileStats.getKdfTime(), fileStats.getReadTime(), fileStats.getCipherTime(), fileStats.getWriteTime());
+        // 计算进度百分比
+        int currentProgress = (finished.incrementAndGet() * 100) / total;
+        // 解密完成
+        sendDecryptEvent(job, DecryptStatusConstant.FINISH, currentFile, fileStats, currentProgress, total);
+    }
+
+    /**
+     * 文件指纹与上次解密时一致且解密后的文件还在，不需要重新解密
+     *
+     * @param decryptBO   解密文件
+     * @param fingerprint 当前的文件指纹
+     * @param manifest    上次解密的文件指纹
+     * @return 是否未变化
+     */
+    private boolean isUnchanged(DecryptBO decryptBO, FileFingerprintBO fingerprint, Map<String, FileFingerprintBO> manifest) {
+        return fingerprint != null && Objects.equals(fingerprint, manifest.get(fingerprint.getFileName())) && FileUtil.exist(decryptBO.getOutput());
+    }
+
+    /**
+     * 推送单个文件的解密事件
+     *
+     * @param job             解密任务
+     * @param status          解密状态
+     * @param currentFile     当前文件，进度事件中为null
+     * @param fileStats       当前文件的解密统计，只有解密完成时才有
+     * @param currentProgress 当前进度
+     * @param total           总数量
+     */
+    private void sendDecryptEvent(DecryptJobBO job, String status, File currentFile, DecryptStatsBO fileStats, int currentProgress, int total) {
+        // 响应给前端的对象
+        DecryptVO decryptVO = DecryptVO.builder()
+                .status(status)
+                .fileName(currentFile == null ? null : FileUtil.getName(currentFile))
+                .fileSize(currentFile == null ? null : FileUtil.readableFileSize(currentFile))
+                .total(total)
+                .currentProgress(currentProgress)
+                .jobId(job.getJobId())
+                .wxId(job.getWxId())
+                .fileStats(fileStats == null ? null : decryptStatsMapping.convert(fileStats))
+                .jobStats(decryptStatsMapping.convert(job.getStats()))
+                .build();
+        job.send(ResponseVO.ok(decryptVO));
     }
 
     @Override
@@ -182,33 +422,186 @@ public class DatabaseServiceImpl implements DatabaseService, ApplicationRunner {
         } catch (Exception e) {
             log.error("Failed to register the data source", e);
         }
+        // 登记已保存秘钥的账号的加密数据库
+        registerEncryptedDb(dbDirectory);
+    }
+
+    /**
+     * 启动时登记已保存秘钥的账号的加密数据库，直接读取不依赖解密后的副本
+     *
+     * @param dbDirectory db 目录
+     */
+    private void registerEncryptedDb(Path dbDirectory) {
+        if (!decryptProperties.isDirectRead()) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dbDirectory, Files::isDirectory)) {
+            for (Path entry : stream) {
+                String wxId = FileUtil.getName(entry.toString());
+                String basePath = userService.getBasePath(wxId);
+                String key = DecryptKeyUtil.read(wxId);
+                if (basePath != null && key != null) {
+                    encryptedDbService.registerAccount(wxId, basePath, key);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to register the encrypted databases", e);
+        }
+    }
+
+    /**
+     * 定时关闭空闲的连接池，再次访问时重新创建
+     */
+    @Scheduled(fixedDelay = IDLE_CHECK_INTERVAL, initialDelay = IDLE_CHECK_INTERVAL)
+    public void closeIdleDataSources() {
+        long idleTimeout = decryptProperties.getDataSourceIdleTimeout();
+        // 不关闭空闲的连接池
+        if (idleTimeout <= 0) {
+            return;
+        }
+        DynamicRoutingDataSource dynamicRoutingDataSource = SpringUtil.getBean(DynamicRoutingDataSource.class);
+        long closed = dynamicRoutingDataSource.getDataSources().values().stream()
+                .filter(ItemDataSource.class::isInstance)
+                .map(dataSource -> ((ItemDataSource) dataSource).getRealDataSource())
+                .filter(LazyDataSource.class::isInstance)
+                .filter(dataSource -> ((LazyDataSource) dataSource).closeIfIdle(idleTimeout))
+                .count();
+        if (closed > 0) {
+            log.info("Closed {} idle data sources", closed);
+        }
     }
 
     /**
-     * 动态注册数据源
+     * 数据源是否已注册
+     *
+     * @param dbPath 数据库路径
+     * @return 是否已注册
+     */
+    private boolean hasDataSource(String dbPath) {
+        String wxId = FileUtil.getName(FileUtil.getParent(dbPath, 1));
+        String dbName = FileUtil.getName(dbPath);
+        DynamicRoutingDataSource dynamicRoutingDataSource = SpringUtil.getBean(DynamicRoutingDataSource.class);
+        return dynamicRoutingDataSource.getDataSources().containsKey(DSNameUtil.getDSName(wxId, dbName));
+    }
+
+    /**
+     * 移除数据源并关闭连接池
+     *
+     * @param dbPath 数据库路径
+     */
+    private void removeDataSource(String dbPath) {
+        if (hasDataSource(dbPath)) {
+            String wxId = FileUtil.getName(FileUtil.getParent(dbPath, 1));
+            String dbName = FileUtil.getName(dbPath);
+            DynamicRoutingDataSource dynamicRoutingDataSource = SpringUtil.getBean(DynamicRoutingDataSource.class);
+            dynamicRoutingDataSource.removeDataSource(DSNameUtil.getDSName(wxId, dbName));
+        }
+    }
+
+    /**
+     * 获取数据源的连接地址，配置为内存数据库时先加载到内存中，加载失败时仍然使用磁盘上的文件
+     *
+     * @param wxId    wxId
+     * @param dbName  数据库名称
+     * @param dbPath  数据库路径
+     * @param profile 连接配置
+     * @return 连接地址
+     */
+    private String getUrl(String wxId, String dbName, String dbPath, SqliteProperties.Profile profile) {
+        if (memoryDbService.isInMemory(dbName)) {
+            try {
+                return memoryDbService.load(DSNameUtil.getDSName(wxId, dbName), dbPath);
+            } catch (Exception e) {
+                log.error("Load database into memory failed: {}", dbPath, e);
+            }
+        }
+        List<String> params = new ArrayList<>();
+        // 只读打开
+        if (Boolean.TRUE.equals(profile.getReadOnly())) {
+            params.add("mode=ro");
+        }
+        // 解密后的文件只在数据源移除后才会被改写，不需要加锁和检查文件变化
+        if (Boolean.TRUE.equals(profile.getImmutable())) {
+            params.add("immutable=1");
+        }
+        if (params.isEmpty()) {
+            return SqliteConstant.URL_PREFIX + dbPath;
+        }
+        // URI文件名才支持参数，Windows路径转换为 file:///C:/... 的形式
+        String path = new File(dbPath).getAbsolutePath().replace('\\', '/');
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        path = path.replace("%", "%25").replace("?", "%3f").replace("#", "%23").replace(" ", "%20");
+        return SqliteConstant.URL_PREFIX + "file://" + path + "?" + String.join("&", params);
+    }
+
+    /**
+     * 每个连接创建后执行的PRAGMA
+     *
+     * @param profile 连接配置
+     * @return 以分号分隔的PRAGMA语句
+     */
+    private String getInitSqls(SqliteProperties.Profile profile) {
+        List<String> sqls = new ArrayList<>();
+        if (Boolean.TRUE.equals(profile.getQueryOnly())) {
+            sqls.add("PRAGMA query_only = 1");
+        }
+        if (profile.getMmapSize() != null) {
+            sqls.add("PRAGMA mmap_size = " + profile.getMmapSize());
+        }
+        if (profile.getCacheSize() != null) {
+            sqls.add("PRAGMA cache_size = " + profile.getCacheSize());
+        }
+        if (StrUtil.isNotBlank(profile.getTempStore())) {
+            sqls.add("PRAGMA temp_store = " + profile.getTempStore());
+        }
+        return String.join(";", sqls);
+    }
+
+    /**
+     * 动态注册数据源，只注册名称，第一次访问时才创建连接池
      *
      * @param dbPath 数据库路径
      */
     private void registerDataSource(String dbPath) {
         String wxId = FileUtil.getName(FileUtil.getParent(dbPath, 1));
         String dbName = FileUtil.getName(dbPath);
+        String poolName = DSNameUtil.getDSName(wxId, dbName);
+        // 创建连接池之前先在全局预算中腾出连接
+        LazyDataSource lazyDataSource = new LazyDataSource(poolName, () -> dataSourceBudgetService.ensureCapacity(poolName),
+                () -> createDataSource(wxId, dbName, dbPath));
+        // 包装成ItemDataSource，数据源被替换或移除时由DynamicRoutingDataSource负责关闭
+        DataSource dataSource = new ItemDataSource(poolName, lazyDataSource, lazyDataSource, false, false, SeataMode.AT);
+        DynamicRoutingDataSource dynamicRoutingDataSource = SpringUtil.getBean(DynamicRoutingDataSource.class);
+        dynamicRoutingDataSource.addDataSource(poolName, dataSource);
+    }
+
+    /**
+     * 创建连接池
+     *
+     * @param wxId   wxId
+     * @param dbName 数据库名称
+     * @param dbPath 数据库路径
+     * @return 连接池
+     */
+    private DataSource createDataSource(String wxId, String dbName, String dbPath) {
+        SqliteProperties.Profile profile = sqliteProperties.resolve(dbName);
         DruidConfig druidConfig = new DruidConfig();
-        druidConfig.setInitialSize(5);
-        druidConfig.setMinIdle(5);
-        druidConfig.setMaxActive(20);
-        druidConfig.setMaxWait(60000);
-        druidConfig.setValidationQuery("SELECT 1");
-        druidConfig.setTestWhileIdle(true);
+        // 连接受全局预算限制，按需创建
+        druidConfig.setInitialSize(1);
+        druidConfig.setMinIdle(1);
+        // 只读的本地文件，不需要校验连接
+        druidConfig.setTestWhileIdle(false);
         druidConfig.setTestOnBorrow(false);
         druidConfig.setTestOnReturn(false);
-        druidConfig.setPoolPreparedStatements(true);
+        druidConfig.setInitConnectionSqls(getInitSqls(profile));
         DataSourceProperty sourceProperty = new DataSourceProperty();
-        sourceProperty.setUrl(SqliteConstant.URL_PREFIX + dbPath);
+        sourceProperty.setUrl(getUrl(wxId, dbName, dbPath, profile));
         sourceProperty.setDriverClassName(SqliteConstant.DRIVER_CLASS_NAME);
         sourceProperty.setPoolName(DSNameUtil.getDSName(wxId, dbName));
-        DynamicRoutingDataSource dynamicRoutingDataSource = SpringUtil.getBean(DynamicRoutingDataSource.class);
+        sourceProperty.setDruid(druidConfig);
         DefaultDataSourceCreator dataSourceCreator = SpringUtil.getBean(DefaultDataSourceCreator.class);
-        DataSource dataSource = dataSourceCreator.createDataSource(sourceProperty);
-        dynamicRoutingDataSource.addDataSource(sourceProperty.getPoolName(), dataSource);
+        return dataSourceCreator.createDataSource(sourceProperty);
     }
 }
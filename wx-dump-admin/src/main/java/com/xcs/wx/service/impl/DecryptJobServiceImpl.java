@@ -0,0 +1,185 @@
+package com.xcs.wx.service.impl;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.xcs.wx.constant.DecryptJobStatusConstant;
+import com.xcs.wx.domain.bo.DecryptJobBO;
+import com.xcs.wx.domain.dto.DecryptDTO;
+import com.xcs.wx.domain.vo.DecryptJobVO;
+import com.xcs.wx.domain.vo.ResponseVO;
+import com.xcs.wx.mapping.DecryptMapping;
+import com.xcs.wx.mapping.DecryptStatsMapping;
+import com.xcs.wx.service.DatabaseService;
+import com.xcs.wx.service.DecryptJobService;
+import com.xcs.wx.service.WeChatService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * 解密任务服务实现类
+ *
+ * @author xcs
+ * @date 2024年7月6日10:41:26
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DecryptJobServiceImpl implements DecryptJobService {
+
+    private final DatabaseService databaseService;
+    private final DecryptStatsMapping decryptStatsMapping;
+    private final DecryptMapping decryptMapping;
+    private final WeChatService weChatService;
+
+    /**
+     * 解密任务线程，每个账号的任务占用一个线程，任务内的文件再提交到解密线程池
+     */
+    private final ExecutorService jobExecutor = Executors.newCachedThreadPool(
+            ThreadFactoryBuilder.create().setNamePrefix("wx-decrypt-job-").setDaemon(true).build());
+
+    /**
+     * 每个账号最近一次的解密任务
+     */
+    private final Map<String, DecryptJobBO> jobs = new ConcurrentHashMap<>();
+
+    @Override
+    public SseEmitter submit(DecryptDTO decryptDTO) {
+        SseEmitter emitter = new SseEmitter(0L);
+        submitJob(decryptDTO).attach(emitter);
+        return emitter;
+    }
+
+    @Override
+    public SseEmitter submitAll() {
+        SseEmitter emitter = new SseEmitter(0L);
+        // 当前登录的所有账号
+        List<DecryptDTO> decryptDTOList = decryptMapping.convert(weChatService.readWeChatConfig()).stream()
+                .filter(decryptDTO -> StrUtil.isNotBlank(decryptDTO.getWxId()) && StrUtil.isNotBlank(decryptDTO.getBasePath()))
+                .collect(Collectors.toList());
+        if (decryptDTOList.isEmpty()) {
+            try {
+                emitter.send(ResponseVO.error(-1, "没有找到已登录的微信账号。"), MediaType.APPLICATION_JSON);
+            } catch (IOException ignore) {
+            } finally {
+                emitter.complete();
+            }
+            return emitter;
+        }
+        // 每个账号一个任务，文件在解密线程池中按账号轮流执行，同一个连接接收所有账号的事件
+        CompletableFuture<?>[] futures = decryptDTOList.stream()
+                .map(this::submitJob)
+                .peek(job -> job.join(emitter))
+                .map(DecryptJobBO::getDone)
+                .toArray(CompletableFuture[]::new);
+        // 所有账号都结束后关闭连接
+        CompletableFuture.allOf(futures).thenRun(emitter::complete);
+        return emitter;
+    }
+
+    @Override
+    public SseEmitter attach(String wxId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        DecryptJobBO job = jobs.get(wxId);
+        if (job == null) {
+            try {
+                emitter.send(ResponseVO.error(-1, "没有找到该账号的解密任务。"), MediaType.APPLICATION_JSON);
+            } catch (IOException ignore) {
+            } finally {
+                emitter.complete();
+            }
+            return emitter;
+        }
+        job.attach(emitter);
+        return emitter;
+    }
+
+    @Override
+    public boolean cancel(String wxId) {
+        DecryptJobBO job = jobs.get(wxId);
+        if (job == null || !DecryptJobStatusConstant.RUNNING.equals(job.getStatus())) {
+            return false;
+        }
+        job.cancel();
+        return true;
+    }
+
+    @Override
+    public DecryptJobVO getJob(String wxId) {
+        DecryptJobBO job = jobs.get(wxId);
+        if (job == null) {
+            return null;
+        }
+        return DecryptJobVO.builder()
+                .jobId(job.getJobId())
+                .wxId(job.getWxId())
+                .status(job.getStatus())
+                .startTime(job.getStartTime())
+                .lastEvent(job.getLastEvent())
+                .stats(decryptStatsMapping.convert(job.getStats()))
+                .build();
+    }
+
+    /**
+     * 停止运行中的任务
+     */
+    @PreDestroy
+    public void destroy() {
+        jobs.values().forEach(DecryptJobBO::cancel);
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交解密任务，同一个账号只允许一个运行中的任务，已有任务时直接返回该任务
+     *
+     * @param decryptDTO 解密信息
+     * @return 解密任务
+     */
+    private DecryptJobBO submitJob(DecryptDTO decryptDTO) {
+        DecryptJobBO newJob = new DecryptJobBO(IdUtil.fastSimpleUUID(), decryptDTO.getWxId());
+        // compute中只决定任务是否已存在，不在ConcurrentHashMap的锁内提交任务
+        DecryptJobBO job = jobs.compute(decryptDTO.getWxId(), (wxId, current) ->
+                current != null && DecryptJobStatusConstant.RUNNING.equals(current.getStatus()) ? current : newJob);
+        if (job != newJob) {
+            return job;
+        }
+        try {
+            jobExecutor.execute(() -> run(newJob, decryptDTO));
+        } catch (RejectedExecutionException e) {
+            // 提交失败时结束任务，避免账号一直处于运行中
+            newJob.complete();
+            throw e;
+        }
+        return newJob;
+    }
+
+    /**
+     * 执行解密任务
+     *
+     * @param job        解密任务
+     * @param decryptDTO 解密信息
+     */
+    private void run(DecryptJobBO job, DecryptDTO decryptDTO) {
+        try {
+            databaseService.decrypt(job, decryptDTO);
+        } catch (Exception e) {
+            log.error("Decrypt job {} failed", job.getJobId(), e);
+        } finally {
+            job.complete();
+        }
+    }
+}
@@ -1,23 +1,35 @@
 package com.xcs.wx.service.impl;
 
 import cn.hutool.core.util.HexUtil;
+import com.xcs.wx.config.DecryptProperties;
 import com.xcs.wx.domain.bo.DecryptBO;
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+import com.xcs.wx.domain.bo.PageDigestBO;
 import com.xcs.wx.service.DecryptService;
-import com.xcs.wx.util.Pbkdf2HmacUtil;
+import com.xcs.wx.util.PageCipher;
+import com.xcs.wx.util.PageDigestUtil;
+import com.xcs.wx.util.SqlCipherUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 /**
  * 解密服务实现类
@@ -31,62 +43,73 @@ import java.util.Arrays;
 public class DecryptServiceImpl implements DecryptService {
 
     /**
-     * SQLite数据库的文件头
+     * 流式解密时每个窗口包含的页数
      */
-    private static final String SQLITE_FILE_HEADER = "SQLite format 3\u0000";
+    private static final int WINDOW_PAGES = 256;
 
     /**
-     * 一页的大小
+     * 每解密多少页保存一次断点（64MB）
      */
-    private static final int DEFAULT_PAGESIZE = 4096;
+    private static final int CHECKPOINT_PAGES = 16384;
 
     /**
-     * 迭代次数
+     * hashMac在页内的位置，取其前8个字节作为页摘要
      */
-    private static final int ITERATIONS = 64000;
+    private static final int MAC_OFFSET = SqlCipherUtil.DEFAULT_PAGESIZE - SqlCipherUtil.RESERVE_SIZE + SqlCipherUtil.IV_SIZE;
 
     /**
-     * Key长度
+     * 并行解密时每个线程复用的输出缓冲区
      */
-    private static final int HASH_KEY_LENGTH = 32;
+    private static final ThreadLocal<ByteBuffer> OUT_WINDOW = ThreadLocal.withInitial(() -> ByteBuffer.allocate(WINDOW_PAGES * SqlCipherUtil.DEFAULT_PAGESIZE));
+
+    /**
+     * 每个线程复用的页缓冲区
+     */
+    private static final ThreadLocal<byte[]> PAGE_BUFFER = ThreadLocal.withInitial(() -> new byte[SqlCipherUtil.DEFAULT_PAGESIZE]);
+
+    /**
+     * 没有可复用的旧内容，所有页都需要解密
+     */
+    private static final long[] NO_BASELINE = new long[0];
+
+    /**
+     * 解密配置
+     */
+    private final DecryptProperties decryptProperties;
+
+    /**
+     * 页解密线程池
+     */
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    @Override
+    public boolean wechatDecrypt(String password, DecryptBO decryptBO) {
+        return wechatDecrypt(password, decryptBO, () -> false, new DecryptStatsBO());
+    }
 
     @Override
-    public void wechatDecrypt(String password, DecryptBO decryptBO) {
+    public boolean wechatDecrypt(String password, DecryptBO decryptBO, BooleanSupplier cancelled, DecryptStatsBO stats) {
         // 创建File文件
         File file = new File(decryptBO.getInput());
 
         try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
             // 文件大小
-            long fileSize = file.length();
-            MappedByteBuffer fileContent = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            long fileSize = fileChannel.size();
+
+            // 读取第一页，第一页包含盐值
+            ByteBuffer firstPageBuffer = ByteBuffer.allocate(SqlCipherUtil.DEFAULT_PAGESIZE);
+            readFully(fileChannel, firstPageBuffer, 0);
+            byte[] fileHeader = firstPageBuffer.array();
 
             // 提取盐值
-            byte[] salt = new byte[16];
-            fileContent.get(salt);
-            // 提取第一页
-            byte[] firstPage = new byte[DEFAULT_PAGESIZE - 16];
-            fileContent.get(firstPage);
-
-            // 提取第一页的内容与IV
-            byte[] firstPageBodyAndIv = Arrays.copyOfRange(firstPage, 0, firstPage.length - 32);
-            // 提取第一页的内容
-            byte[] firstPageBody = Arrays.copyOfRange(firstPage, 0, firstPage.length - 48);
-            // 提取第一页IV
-            byte[] firstPageIv = Arrays.copyOfRange(firstPage, firstPage.length - 48, firstPage.length - 32);
-            // 提取第一页的hashMac
-            byte[] firstPageHashMac = Arrays.copyOfRange(firstPage, firstPage.length - 32, firstPage.length - 12);
-            // 提取第一页的保留字段
-            byte[] firstPageReservedSegment = Arrays.copyOfRange(firstPage, firstPage.length - 48, firstPage.length);
-
-            // 生成key
-            byte[] key = Pbkdf2HmacUtil.pbkdf2Hmac(HexUtil.decodeHex(password), salt, ITERATIONS, HASH_KEY_LENGTH);
-
-            byte[] macSalt = new byte[salt.length];
-            for (int i = 0; i < salt.length; i++) {
-                macSalt[i] = (byte) (salt[i] ^ 58);
-            }
+            byte[] salt = Arrays.copyOfRange(fileHeader, 0, SqlCipherUtil.SALT_SIZE);
+
+            // 生成key并校验
+            long kdfStart = System.nanoTime();
+            byte[] key = SqlCipherUtil.deriveKey(HexUtil.decodeHex(password), fileHeader);
+            stats.addKdfNanos(System.nanoTime() - kdfStart);
             // 秘钥匹配成功
-            if (Pbkdf2HmacUtil.checkKey(key, macSalt, firstPageHashMac, firstPageBodyAndIv)) {
+            if (key != null) {
                 File outputFile = new File(decryptBO.getOutput());
                 File parentDir = outputFile.getParentFile();
 
@@ -95,82 +118,457 @@ public class DecryptServiceImpl implements DecryptService {
                     parentDir.mkdirs();
                 }
 
+                // 上次解密时记录的逐页摘要，读取后立即删除，写入中断时下次会从断点继续
+                File digestFile = PageDigestUtil.getDigestFile(decryptBO.getOutput());
+                File checkpointFile = PageDigestUtil.getCheckpointFile(decryptBO.getOutput());
+                PageDigestBO previous = decryptProperties.isIncremental() ? PageDigestUtil.read(digestFile) : null;
+                PageDigestBO checkpoint = PageDigestUtil.read(checkpointFile);
+                PageDigestUtil.delete(digestFile);
+
+                // 可以复用的旧内容的逐页摘要，摘要一致的页不再解密
+                long[] baseline = NO_BASELINE;
+                if (canPatch(previous, salt, outputFile)) {
+                    // 解密文件未被修改过，只解密发生变化的页
+                    baseline = previous.getDigests();
+                } else if (canResume(checkpoint, salt, outputFile)) {
+                    // 上次解密中断，从断点继续
+                    baseline = checkpoint.getDigests();
+                    log.info("Resume decryption of {} from page {}", decryptBO.getInput(), baseline.length);
+                }
+                // 本次解密的逐页摘要
+                long[] digests = new long[(int) (fileSize / SqlCipherUtil.DEFAULT_PAGESIZE)];
+                Checkpoint checkpointer = new Checkpoint(checkpointFile, salt, digests);
+
+                // 稀疏输出且没有可复用的旧内容时重新创建文件，未写入的全0页在文件系统中是空洞
+                boolean sparse = decryptProperties.isSparse();
+                boolean recreate = sparse && baseline.length == 0;
+                if (recreate) {
+                    Files.deleteIfExists(outputFile.toPath());
+                }
+
                 // 解密并写入新文件
-                try (FileChannel outChannel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
-                    ByteBuffer headerBuffer = ByteBuffer.wrap(SQLITE_FILE_HEADER.getBytes());
-                    outChannel.write(headerBuffer);
+                long outputSize;
+                try (FileChannel outChannel = recreate
+                        ? FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)
+                        : FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    DecryptContext context = new DecryptContext(fileChannel, outChannel, key, baseline, digests, checkpointer, cancelled, stats, sparse);
+                    if (decryptProperties.isParallel() && fileSize >= decryptProperties.getParallelThreshold()) {
+                        // 大文件按页分段并行解密
+                        outputSize = decryptPagesParallel(context, fileSize);
+                    } else {
+                        // 小文件逐页流式解密
+                        outputSize = decryptPages(context, fileSize);
+                    }
+                    // 末尾是空洞时补齐文件长度
+                    if (outChannel.size() < outputSize) {
+                        outChannel.write(ByteBuffer.allocate(1), outputSize - 1);
+                    }
+                    // 截断旧文件遗留的多余内容
+                    outChannel.truncate(outputSize);
+                }
+                // 记录本次的逐页摘要以及解密文件的大小与修改时间
+                if (decryptProperties.isIncremental()) {
+                    long[] outputDigests = Arrays.copyOf(digests, (int) (outputSize / SqlCipherUtil.DEFAULT_PAGESIZE));
+                    PageDigestUtil.write(digestFile, new PageDigestBO(salt, outputFile.length(), outputFile.lastModified(), outputDigests));
+                }
+                // 解密完成，不再需要断点
+                PageDigestUtil.delete(checkpointFile);
+                return true;
+            }
+        } catch (CancellationException e) {
+            log.info("WeChat decryption cancelled: {}", decryptBO.getInput());
+        } catch (Exception e) {
+            log.error("WeChat decryption failed", e);
+        }
+        return false;
+    }
 
-                    ByteBuffer decryptedFirstPage = ByteBuffer.wrap(doDecrypt(key, firstPageIv, firstPageBody));
-                    ByteBuffer reservedSegmentBuffer = ByteBuffer.wrap(firstPageReservedSegment);
+    /**
+     * 判断能否在上次的解密文件上增量更新，要求盐值一致，并且解密文件在上次写入后没有被修改过
+     *
+     * @param previous   上次解密时记录的逐页摘要
+     * @param salt       盐值
+     * @param outputFile 解密后的文件
+     * @return 能否增量更新
+     */
+    private boolean canPatch(PageDigestBO previous, byte[] salt, File outputFile) {
+        return previous != null
+                && Arrays.equals(previous.getSalt(), salt)
+                && outputFile.isFile()
+                && outputFile.length() == previous.getOutputSize()
+                && outputFile.lastModified() == previous.getOutputLastModified();
+    }
 
-                    // 创建暂存缓冲区
-                    ByteBuffer tempBuffer = ByteBuffer.allocate((int) fileSize);
+    /**
+     * 判断能否从断点继续，要求盐值一致，并且断点之前的内容都已经写入解密文件
+     *
+     * @param checkpoint 断点
+     * @param salt       盐值
+     * @param outputFile 解密后的文件
+     * @return 能否从断点继续
+     */
+    private boolean canResume(PageDigestBO checkpoint, byte[] salt, File outputFile) {
+        return checkpoint != null
+                && Arrays.equals(checkpoint.getSalt(), salt)
+                && outputFile.isFile()
+                && outputFile.length() >= checkpoint.getOutputSize();
+    }
 
-                    // 写入第一页的解密内容和保留字段到暂存缓冲区
-                    tempBuffer.put(decryptedFirstPage);
-                    tempBuffer.put(reservedSegmentBuffer);
+    /**
+     * 流式解密，按窗口读取密文页，解密到可复用的窗口缓冲区后立即写入输出文件
+     *
+     * @param context  解密上下文
+     * @param fileSize 输入文件大小
+     * @return 输出文件的实际大小
+     * @throws IOException              读写异常
+     * @throws GeneralSecurityException 解密异常
+     */
+    private long decryptPages(DecryptContext context, long fileSize) throws IOException, GeneralSecurityException {
+        // 可复用的读写窗口，内存占用与文件大小无关
+        ByteBuffer inWindow = ByteBuffer.allocate(WINDOW_PAGES * SqlCipherUtil.DEFAULT_PAGESIZE);
+        ByteBuffer outWindow = ByteBuffer.allocate(WINDOW_PAGES * SqlCipherUtil.DEFAULT_PAGESIZE);
+        // 只处理完整的页
+        long pageCount = fileSize / SqlCipherUtil.DEFAULT_PAGESIZE;
 
-                    // 解密后续数据块
-                    while (fileContent.hasRemaining()) {
-                        byte[] page = new byte[DEFAULT_PAGESIZE];
-                        fileContent.get(page);
+        for (long pageIndex = 0; pageIndex < pageCount; pageIndex += WINDOW_PAGES) {
+            // 已取消
+            if (context.cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            // 当前窗口的起始位置
+            long position = pageIndex * SqlCipherUtil.DEFAULT_PAGESIZE;
+            // 当前窗口的页数
+            int pages = (int) Math.min(WINDOW_PAGES, pageCount - pageIndex);
 
-                        // 判断是否是填充页面，如果是则跳过后续处理
-                        if (isPaddingPage(page)) {
-                            break;
-                        }
+            long readStart = System.nanoTime();
+            inWindow.clear().limit(pages * SqlCipherUtil.DEFAULT_PAGESIZE);
+            readFully(context.inChannel, inWindow, position);
+            context.stats.addStageNanos(System.nanoTime() - readStart, 0, 0);
 
-                        byte[] iv = Arrays.copyOfRange(page, page.length - 48, page.length - 32);
-                        byte[] body = Arrays.copyOfRange(page, 0, page.length - 48);
-                        byte[] reservedSegment = Arrays.copyOfRange(page, page.length - 48, page.length);
+            // 解密当前窗口并写入输出文件
+            int decrypted = decryptWindow(context, inWindow, outWindow, pageIndex, pages);
 
-                        ByteBuffer decryptedBody = ByteBuffer.wrap(doDecrypt(key, iv, body));
-                        ByteBuffer reservedSegmentBuf = ByteBuffer.wrap(reservedSegment);
+            // 遇到填充页面，后续内容不再处理
+            if (decrypted < pages) {
+                return (pageIndex + decrypted) * SqlCipherUtil.DEFAULT_PAGESIZE;
+            }
+            context.checkpoint.complete(context, pageIndex, pageIndex + pages);
+        }
+        return pageCount * SqlCipherUtil.DEFAULT_PAGESIZE;
+    }
 
-                        // 将解密内容和保留字段写入暂存缓冲区
-                        tempBuffer.put(decryptedBody);
-                        tempBuffer.put(reservedSegmentBuf);
-                    }
+    /**
+     * 并行解密，每一页都带有独立的IV，将文件按页拆分成多个区间交给ForkJoin线程池解密，
+     * 每个区间映射自己的输入范围，并按页的偏移量定位写入输出文件
+     *
+     * @param context  解密上下文
+     * @param fileSize 输入文件大小
+     * @return 输出文件的实际大小
+     */
+    private long decryptPagesParallel(DecryptContext context, long fileSize) {
+        // 只处理完整的页
+        long pageCount = fileSize / SqlCipherUtil.DEFAULT_PAGESIZE;
+        // 第一个填充页面的页号
+        AtomicLong paddingPage = new AtomicLong(pageCount);
+        // 提交任务并等待完成
+        forkJoinPool.invoke(new PageRangeTask(context, 0, pageCount, paddingPage));
+        // 填充页面之后的内容即使已经写入，也会被截断
+        return paddingPage.get() * SqlCipherUtil.DEFAULT_PAGESIZE;
+    }
 
-                    // 将暂存缓冲区内容写入到输出文件
-                    tempBuffer.flip();
-                    outChannel.write(tempBuffer);
+    /**
+     * 解密一个窗口内的页，摘要与上次一致的页保留输出文件中的原有内容，
+     * 其余的页解密到窗口中对应的位置，并按连续区间写入输出文件
+     *
+     * @param context   解密上下文
+     * @param source    密文窗口，从位置0开始
+     * @param target    明文窗口，与密文窗口等长
+     * @param pageIndex 窗口第一页的页号（从0开始）
+     * @param pages     页数
+     * @return 实际处理的页数，遇到填充页面时提前结束
+     * @throws IOException              写入异常
+     * @throws GeneralSecurityException 解密异常
+     */
+    private int decryptWindow(DecryptContext context, ByteBuffer source, ByteBuffer target, long pageIndex, int pages) throws IOException, GeneralSecurityException {
+        // 当前线程复用的解密器与页缓冲区
+        PageCipher pageCipher = PageCipher.current(context.key);
+        byte[] page = PAGE_BUFFER.get();
+        byte[] output = target.array();
+        int outputOffset = target.arrayOffset();
+        long position = pageIndex * SqlCipherUtil.DEFAULT_PAGESIZE;
+        // 当前窗口各阶段的耗时，窗口结束时一次性累加
+        WindowStats windowStats = new WindowStats();
+
+        // 当前连续变化区间的第一页，-1表示没有
+        int runStart = -1;
+        for (int i = 0; i < pages; i++) {
+            int offset = i * SqlCipherUtil.DEFAULT_PAGESIZE;
+            int current = (int) (pageIndex + i);
+            long digest = source.getLong(offset + MAC_OFFSET);
+            // 填充页面的hashMac也是0，只有这时才需要逐字比较整页
+            boolean paddingPage = digest == 0 && current != 0 && SqlCipherUtil.isPaddingPage(source, offset);
+            // 非稀疏输出时遇到填充页面，后续内容不再处理
+            if (paddingPage && !context.sparse) {
+                if (runStart >= 0) {
+                    writeRun(context.outChannel, target, position, runStart, i, windowStats);
                 }
+                windowStats.flush(context.stats, i);
+                return i;
             }
-        } catch (Exception e) {
-            log.error("WeChat decryption failed", e);
+            // 未变化的页保留原有内容，先写出之前连续变化的页
+            if (current < context.baseline.length && context.baseline[current] == digest) {
+                context.digests[current] = digest;
+                if (runStart >= 0) {
+                    writeRun(context.outChannel, target, position, runStart, i, windowStats);
+                    runStart = -1;
+                }
+                continue;
+            }
+            // 稀疏输出时填充页面写成全0页
+            if (paddingPage) {
+                context.digests[current] = digest;
+                // 超出原文件长度的部分不写入，留下空洞
+                if (position + offset >= context.outputLength) {
+                    if (runStart >= 0) {
+                        writeRun(context.outChannel, target, position, runStart, i, windowStats);
+                        runStart = -1;
+                    }
+                    continue;
+                }
+                // 覆盖原文件中的旧内容
+                Arrays.fill(output, outputOffset + offset, outputOffset + offset + SqlCipherUtil.DEFAULT_PAGESIZE, (byte) 0);
+                if (runStart < 0) {
+                    runStart = i;
+                }
+                continue;
+            }
+            long readStart = System.nanoTime();
+            source.position(offset);
+            source.get(page);
+            long cipherStart = System.nanoTime();
+            windowStats.readNanos += cipherStart - readStart;
+            if (runStart < 0) {
+                runStart = i;
+            }
+            // 直接解密到窗口中对应的位置
+            SqlCipherUtil.decryptPage(pageCipher, page, current, output, outputOffset + offset);
+            context.digests[current] = digest;
+            windowStats.cipherNanos += System.nanoTime() - cipherStart;
+            windowStats.decryptedPages++;
+        }
+        if (runStart >= 0) {
+            writeRun(context.outChannel, target, position, runStart, pages, windowStats);
         }
+        windowStats.flush(context.stats, pages);
+        return pages;
     }
 
     /**
-     * 检查页面是否为填充页面
+     * 将窗口中一段连续的页写入到输出文件
      *
-     * @param page 页面数据
-     * @return 如果是填充页面返回true，否则返回false
+     * @param outChannel 输出文件
+     * @param window     窗口缓冲区
+     * @param position   窗口在输出文件中的起始位置
+     * @param fromPage   窗口内的起始页（包含）
+     * @param toPage     窗口内的结束页（不包含）
+     * @param stats      当前窗口的耗时
+     * @throws IOException 写入异常
      */
-    private boolean isPaddingPage(byte[] page) {
-        for (byte b : page) {
-            if (b != 0) {
-                return false;
+    private void writeRun(FileChannel outChannel, ByteBuffer window, long position, int fromPage, int toPage, WindowStats stats) throws IOException {
+        long writeStart = System.nanoTime();
+        ByteBuffer run = window.duplicate();
+        run.limit(toPage * SqlCipherUtil.DEFAULT_PAGESIZE).position(fromPage * SqlCipherUtil.DEFAULT_PAGESIZE);
+        writeFully(outChannel, run, position + (long) fromPage * SqlCipherUtil.DEFAULT_PAGESIZE);
+        stats.writeNanos += System.nanoTime() - writeStart;
+    }
+
+    /**
+     * 从指定位置开始读满缓冲区
+     *
+     * @param channel  文件
+     * @param buffer   缓冲区
+     * @param position 起始位置
+     * @throws IOException 读取异常
+     */
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
             }
+            position += read;
         }
-        return true;
     }
 
     /**
-     * 使用AES/CBC/NoPadding模式进行解密
+     * 从指定位置开始写出缓冲区的全部内容
      *
-     * @param key   密钥
-     * @param iv    初始化向量
-     * @param input 待解密的数据
-     * @return 解密后的数据
-     * @throws GeneralSecurityException 抛出异常
-     */
-    private byte[] doDecrypt(byte[] key, byte[] iv, byte[] input) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivParameterSpec);
-        return cipher.doFinal(input);
+     * @param channel  文件
+     * @param buffer   缓冲区
+     * @param position 起始位置
+     * @throws IOException 写入异常
+     */
+    private void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 单个文件的解密上下文
+     */
+    private static class DecryptContext {
+
+        private final FileChannel inChannel;
+        private final FileChannel outChannel;
+        private final byte[] key;
+        private final long[] baseline;
+        private final long[] digests;
+        private final Checkpoint checkpoint;
+        private final BooleanSupplier cancelled;
+        private final DecryptStatsBO stats;
+        private final boolean sparse;
+        private final long outputLength;
+
+        DecryptContext(FileChannel inChannel, FileChannel outChannel, byte[] key, long[] baseline, long[] digests, Checkpoint checkpoint, BooleanSupplier cancelled, DecryptStatsBO stats, boolean sparse) throws IOException {
+            this.inChannel = inChannel;
+            this.outChannel = outChannel;
+            this.key = key;
+            this.baseline = baseline;
+            this.digests = digests;
+            this.checkpoint = checkpoint;
+            this.cancelled = cancelled;
+            this.stats = stats;
+            this.sparse = sparse;
+            // 解密前输出文件的长度，超出部分的填充页面可以留下空洞
+            this.outputLength = outChannel.size();
+        }
+    }
+
+    /**
+     * 单个窗口的耗时，避免每一页都累加到共享的统计中
+     */
+    private static class WindowStats {
+
+        private long readNanos;
+        private long cipherNanos;
+        private long writeNanos;
+        private int decryptedPages;
+
+        /**
+         * 累加到文件的统计中
+         *
+         * @param stats          文件的统计
+         * @param processedPages 已处理的页数
+         */
+        void flush(DecryptStatsBO stats, int processedPages) {
+            stats.addStageNanos(readNanos, cipherNanos, writeNanos);
+            stats.addBytes((long) processedPages * SqlCipherUtil.DEFAULT_PAGESIZE, (long) decryptedPages * SqlCipherUtil.DEFAULT_PAGESIZE);
+        }
+    }
+
+    /**
+     * 断点，记录从第一页开始连续写入完成的页以及这些页的摘要，并行解密时区间完成的顺序不固定
+     */
+    private static class Checkpoint {
+
+        private final File checkpointFile;
+        private final byte[] salt;
+        private final long[] digests;
+        private final BitSet completed = new BitSet();
+        private long saved;
+
+        Checkpoint(File checkpointFile, byte[] salt, long[] digests) {
+            this.checkpointFile = checkpointFile;
+            this.salt = salt;
+            this.digests = digests;
+        }
+
+        /**
+         * 标记一段页已经写入，连续完成的页足够多时保存断点
+         *
+         * @param context  解密上下文
+         * @param fromPage 起始页（包含）
+         * @param toPage   结束页（不包含）
+         * @throws IOException 写入异常
+         */
+        synchronized void complete(DecryptContext context, long fromPage, long toPage) throws IOException {
+            completed.set((int) fromPage, (int) toPage);
+            int prefix = completed.nextClearBit(0);
+            if (prefix - saved < CHECKPOINT_PAGES) {
+                return;
+            }
+            // 先落盘再记录断点，保证断点之前的内容都已经写入
+            long writeStart = System.nanoTime();
+            context.outChannel.force(false);
+            PageDigestUtil.write(checkpointFile, new PageDigestBO(salt, (long) prefix * SqlCipherUtil.DEFAULT_PAGESIZE, 0, Arrays.copyOf(digests, prefix)));
+            context.stats.addStageNanos(0, 0, System.nanoTime() - writeStart);
+            saved = prefix;
+        }
+    }
+
+    /**
+     * 按页区间拆分的并行解密任务
+     */
+    private class PageRangeTask extends RecursiveAction {
+
+        private final DecryptContext context;
+        private final long fromPage;
+        private final long toPage;
+        private final AtomicLong paddingPage;
+
+        PageRangeTask(DecryptContext context, long fromPage, long toPage, AtomicLong paddingPage) {
+            this.context = context;
+            this.fromPage = fromPage;
+            this.toPage = toPage;
+            this.paddingPage = paddingPage;
+        }
+
+        @Override
+        protected void compute() {
+            // 区间已经位于填充页面之后，无需处理
+            if (fromPage >= paddingPage.get()) {
+                return;
+            }
+            // 已取消
+            if (context.cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            // 区间足够小时直接解密，否则一分为二
+            if (toPage - fromPage <= WINDOW_PAGES) {
+                decryptLeaf();
+                return;
+            }
+            long middle = (fromPage + toPage) >>> 1;
+            invokeAll(new PageRangeTask(context, fromPage, middle, paddingPage),
+                    new PageRangeTask(context, middle, toPage, paddingPage));
+        }
+
+        /**
+         * 解密当前区间，并写入到该区间在输出文件中的偏移量
+         */
+        private void decryptLeaf() {
+            int pages = (int) (toPage - fromPage);
+            long position = fromPage * SqlCipherUtil.DEFAULT_PAGESIZE;
+            try {
+                // 映射当前区间的输入内容
+                MappedByteBuffer source = context.inChannel.map(FileChannel.MapMode.READ_ONLY, position, (long) pages * SqlCipherUtil.DEFAULT_PAGESIZE);
+                // 每个线程复用自己的输出缓冲区
+                ByteBuffer target = OUT_WINDOW.get();
+
+                int decrypted = decryptWindow(context, source, target, fromPage, pages);
+
+                // 记录最靠前的填充页面
+                if (decrypted < pages) {
+                    paddingPage.accumulateAndGet(fromPage + decrypted, Math::min);
+                    return;
+                }
+                context.checkpoint.complete(context, fromPage, toPage);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
     }
 }
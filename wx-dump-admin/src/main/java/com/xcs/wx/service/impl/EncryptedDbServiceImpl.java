@@ -0,0 +1,165 @@
+package com.xcs.wx.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
+import com.xcs.wx.config.DecryptProperties;
+import com.xcs.wx.service.EncryptedDbService;
+import com.xcs.wx.sqlite.SqliteReader;
+import com.xcs.wx.util.DSNameUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 加密数据库直接读取服务实现类
+ *
+ * @author xcs
+ * @date 2024年7月5日17:08:19
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EncryptedDbServiceImpl implements EncryptedDbService {
+
+    /**
+     * 解密配置
+     */
+    private final DecryptProperties decryptProperties;
+
+    /**
+     * 已登记的加密数据库，key为数据源名称
+     */
+    private final Map<String, EncryptedDb> encryptedDbs = new ConcurrentHashMap<>();
+
+    /**
+     * 已打开的读取器，key为数据源名称
+     */
+    private final Map<String, SqliteReader> readers = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String wxId, String dbName, String input, String password) {
+        if (!decryptProperties.isDirectRead()) {
+            return;
+        }
+        String dsName = DSNameUtil.getDSName(wxId, dbName);
+        EncryptedDb encryptedDb = new EncryptedDb(input, password);
+        // 路径或者秘钥变化时关闭旧的读取器
+        if (!encryptedDb.equals(encryptedDbs.put(dsName, encryptedDb))) {
+            IoUtil.close(readers.remove(dsName));
+        }
+    }
+
+    @Override
+    public void registerAccount(String wxId, String basePath, String password) {
+        if (!decryptProperties.isDirectRead()) {
+            return;
+        }
+        Path scanPath = Paths.get(basePath, wxId, "MSG");
+        // 微信目录不存在时跳过
+        if (!Files.isDirectory(scanPath)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(scanPath)) {
+            stream.filter(file -> !Files.isDirectory(file))
+                    .filter(file -> file.toString().endsWith(".db"))
+                    .forEach(file -> register(wxId, FileUtil.getName(file.toString()), file.toString(), password));
+        } catch (Exception e) {
+            log.warn("Failed to register encrypted databases of {}", wxId, e);
+        }
+    }
+
+    @Override
+    public SqliteReader getReader(String wxId, String dbName) {
+        String dsName = DSNameUtil.getDSName(wxId, dbName);
+        EncryptedDb encryptedDb = encryptedDbs.get(dsName);
+        if (encryptedDb == null) {
+            return null;
+        }
+        SqliteReader reader = readers.computeIfAbsent(dsName, key -> open(encryptedDb));
+        if (reader == null) {
+            return null;
+        }
+        try {
+            // 加密文件被微信修改后重新加载
+            reader.refresh();
+            return reader;
+        } catch (Exception e) {
+            log.warn("Failed to refresh encrypted database {}", encryptedDb.input, e);
+            IoUtil.close(readers.remove(dsName));
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> getMsgDb(String wxId) {
+        String prefix = DSNameUtil.getDSName(wxId, "");
+        return encryptedDbs.keySet().stream()
+                .filter(dsName -> dsName.startsWith(prefix))
+                .map(dsName -> dsName.substring(prefix.length()))
+                .filter(dbName -> dbName.matches("MSG.*\\.db"))
+                .sorted(Comparator.naturalOrder())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 打开读取器
+     *
+     * @param encryptedDb 加密数据库
+     * @return 读取器，失败时返回null
+     */
+    private SqliteReader open(EncryptedDb encryptedDb) {
+        try {
+            return SqliteReader.open(encryptedDb.input, HexUtil.decodeHex(encryptedDb.password), decryptProperties.getPageCacheSize());
+        } catch (Exception e) {
+            log.warn("Failed to open encrypted database {}", encryptedDb.input, e);
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        readers.values().forEach(IoUtil::close);
+        readers.clear();
+    }
+
+    /**
+     * 加密数据库路径与秘钥
+     */
+    private static class EncryptedDb {
+
+        private final String input;
+        private final String password;
+
+        EncryptedDb(String input, String password) {
+            this.input = input;
+            this.password = password;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EncryptedDb)) {
+                return false;
+            }
+            EncryptedDb that = (EncryptedDb) o;
+            return input.equals(that.input) && password.equals(that.password);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(input, password);
+        }
+    }
+}
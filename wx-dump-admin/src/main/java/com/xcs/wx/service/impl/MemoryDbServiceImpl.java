@@ -0,0 +1,135 @@
+package com.xcs.wx.service.impl;
+
+import cn.hutool.core.io.IoUtil;
+import com.xcs.wx.config.DecryptProperties;
+import com.xcs.wx.constant.SqliteConstant;
+import com.xcs.wx.service.MemoryDbService;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存数据库服务实现类
+ * <p>
+ * 使用共享缓存的内存数据库，同一个名称的连接访问同一份数据。内存数据库在最后一个连接关闭时释放，
+ * 因此每个数据源保持一个连接，连接池因空闲关闭后重新创建时继续使用该连接对应的内存数据库，
+ * 只有解密后的文件发生变化时才重新加载并关闭旧的连接。
+ *
+ * @author xcs
+ * @date 2024年7月10日10:20:47
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MemoryDbServiceImpl implements MemoryDbService {
+
+    /**
+     * 内存数据库地址模板
+     */
+    private static final String MEMORY_URL = SqliteConstant.URL_PREFIX + "file:wxdump_mem_%d?mode=memory&cache=shared";
+
+    /**
+     * 内存数据库编号，每次加载使用新的内存数据库
+     */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    /**
+     * 解密配置
+     */
+    private final DecryptProperties decryptProperties;
+
+    /**
+     * 每个数据源保持内存数据库存活的连接
+     */
+    private final Map<String, MemoryDb> holders = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isInMemory(String dbName) {
+        return decryptProperties.getInMemoryDbs().contains(dbName);
+    }
+
+    @Override
+    public String load(String dsName, String dbPath) throws Exception {
+        File dbFile = new File(dbPath);
+        // 文件未变化时复用已加载的内存数据库
+        MemoryDb current = holders.get(dsName);
+        if (current != null && current.isLoadedFrom(dbFile)) {
+            return current.url;
+        }
+        // 加载前记录文件状态，加载期间文件被改写时下次会重新加载
+        long length = dbFile.length();
+        long lastModified = dbFile.lastModified();
+        String url = String.format(MEMORY_URL, SEQUENCE.incrementAndGet());
+        long start = System.currentTimeMillis();
+        Connection holder = DriverManager.getConnection(url);
+        try (Statement statement = holder.createStatement()) {
+            // sqlite-jdbc的扩展命令，通过backup接口整库复制到内存中
+            statement.executeUpdate("restore from \"" + dbPath + "\"");
+        } catch (Exception e) {
+            IoUtil.close(holder);
+            throw e;
+        }
+        // 文件已变化，旧的连接池已随数据源移除，关闭旧的内存数据库
+        MemoryDb previous = holders.put(dsName, new MemoryDb(url, holder, dbFile.getAbsolutePath(), length, lastModified));
+        if (previous != null) {
+            IoUtil.close(previous.holder);
+        }
+        log.info("Loaded {} into memory in {} ms, {} bytes", dsName, System.currentTimeMillis() - start, length);
+        return url;
+    }
+
+    @Override
+    public int getHolderCount() {
+        return holders.size();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        holders.values().forEach(memoryDb -> IoUtil.close(memoryDb.holder));
+        holders.clear();
+    }
+
+    /**
+     * 已加载的内存数据库
+     */
+    @AllArgsConstructor
+    private static class MemoryDb {
+
+        /**
+         * 连接地址
+         */
+        private final String url;
+
+        /**
+         * 保持内存数据库存活的连接
+         */
+        private final Connection holder;
+
+        /**
+         * 加载时的文件路径、大小与修改时间
+         */
+        private final String dbPath;
+        private final long length;
+        private final long lastModified;
+
+        /**
+         * 是否从未变化的同一个文件加载
+         *
+         * @param dbFile 解密后的数据库文件
+         * @return 是否可以复用
+         */
+        boolean isLoadedFrom(File dbFile) {
+            return dbPath.equals(dbFile.getAbsolutePath()) && length == dbFile.length() && lastModified == dbFile.lastModified();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.xcs.wx.service.impl;
 
+import cn.hutool.core.thread.ThreadFactoryBuilder;
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
 import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
@@ -9,24 +11,38 @@ import com.sun.jna.platform.win32.*;
 import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import com.xcs.wx.config.WeChatOffsetProperties;
+import com.xcs.wx.domain.dto.DumpAnalysisDTO;
+import com.xcs.wx.domain.vo.DumpAnalysisVO;
 import com.xcs.wx.domain.vo.WeChatConfigVO;
 import com.xcs.wx.exception.BizException;
+import com.xcs.wx.memory.DumpModule;
+import com.xcs.wx.memory.MemoryDump;
+import com.xcs.wx.memory.MemoryRegion;
+import com.xcs.wx.memory.MemoryScanner;
+import com.xcs.wx.memory.ParallelMemoryScanner;
+import com.xcs.wx.memory.ProcessMemoryReader;
+import com.xcs.wx.memory.Win32ProcessMemoryReader;
 import com.xcs.wx.service.WeChatService;
-import com.xcs.wx.util.Pbkdf2HmacUtil;
+import com.xcs.wx.util.BytePatternSearcher;
+import com.xcs.wx.util.DecryptKeyUtil;
+import com.xcs.wx.util.MultiPatternMatcher;
+import com.xcs.wx.util.SqlCipherUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileInputStream;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 微信服务实现类
@@ -74,6 +90,54 @@ public class WeChatServiceImpl implements WeChatService {
      */
     private static final String CONFIG_FILE_PATH = "\\AppData\\Roaming\\Tencent\\WeChat\\All Users\\config\\3ebffe94.ini";
 
+    /**
+     * 密钥附近的平台标记，按优先级排列：iphone、android、ipad
+     */
+    private static final MultiPatternMatcher PLATFORM_MATCHER = new MultiPatternMatcher(
+            "iphone\0".getBytes(), "android\0".getBytes(), "ipad\0".getBytes());
+
+    /**
+     * 平台标记之前查找密钥指针的范围
+     */
+    private static final int KEY_SEARCH_RANGE = 2000;
+
+    /**
+     * 密钥长度
+     */
+    private static final int KEY_SIZE = 32;
+
+    /**
+     * 微信目录标记，微信ID位于标记之前的路径中
+     */
+    private static final String WXID_PATTERN = "\\Msg\\FTSContact";
+
+    /**
+     * 读取微信目录标记附近路径的窗口大小，以及窗口在标记之前的字节数
+     */
+    private static final int WXID_WINDOW = 80;
+    private static final int WXID_OFFSET = 30;
+
+    /**
+     * 读取昵称、账号等字符串的最大长度
+     */
+    private static final int INFO_SIZE = 64;
+
+    /**
+     * 按pid缓存的WeChatWin.dll模块信息，避免每次扫描都重新枚举进程的全部模块
+     */
+    private final Map<Integer, Psapi.MODULEINFO> moduleCache = new ConcurrentHashMap<>();
+
+    /**
+     * 密钥校验线程，每个候选密钥都要做一次64000轮的PBKDF2，按CPU核数并行
+     */
+    private final ExecutorService keyExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            ThreadFactoryBuilder.create().setNamePrefix("wx-key-verify-").setDaemon(true).build());
+
+    /**
+     * 地址空间扫描线程池，按任务窃取的方式并行扫描各个内存分段
+     */
+    private final ForkJoinPool scanPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     /**
      * 微信内存地址偏移量配置
      */
@@ -244,60 +308,117 @@ public class WeChatServiceImpl implements WeChatService {
         Kernel32 kernel32 = Kernel32.INSTANCE;
         // 打开目标进程
         WinNT.HANDLE process = kernel32.OpenProcess(WinNT.PROCESS_VM_READ, false, pid);
-
-        // 分配内存作为缓冲区读取数据
-        int bufferSize = 64;
-        Memory buffer = new Memory(bufferSize);
-        IntByReference read = new IntByReference();
-
-        // 从指定地址读取内存
-        boolean success = kernel32.ReadProcessMemory(process, new Pointer(address), buffer, bufferSize, read);
-
-        if (success) {
-            // 将读取的字节转换为字符串
-            byte[] dataBytes = buffer.getByteArray(0, read.getValue());
-            String data = new String(dataBytes, 0, read.getValue());
-
-            // 查找第一个空字符（字符串结束标志）
-            int nullPos = data.indexOf('\0');
-            if (nullPos != -1) {
-                // 截取到第一个空字符为止的字符串
-                data = data.substring(0, nullPos);
-            }
-
-            // 返回读取的字符串，如果为空则返回 null
+        try {
+            return readString(new Win32ProcessMemoryReader(process, INFO_SIZE), address);
+        } finally {
+            // 关闭进程句柄
             kernel32.CloseHandle(process);
-            return data.isEmpty() ? null : data;
         }
+    }
 
-        // 关闭进程句柄
-        kernel32.CloseHandle(process);
-
-        return null;
+    /**
+     * 读取以空字符结尾的字符串
+     *
+     * @param reader  内存读取器
+     * @param address 要读取的内存地址
+     * @return 读取到的字符串，如果为空或读取失败则返回 null
+     */
+    private String readString(ProcessMemoryReader reader, long address) {
+        // 从指定地址读取内存
+        byte[] buffer = new byte[INFO_SIZE];
+        int read = reader.read(address, buffer, 0, buffer.length);
+        if (read <= 0) {
+            return null;
+        }
+        // 将读取的字节转换为字符串
+        String data = new String(buffer, 0, read);
+
+        // 查找第一个空字符（字符串结束标志）
+        int nullPos = data.indexOf('\0');
+        if (nullPos != -1) {
+            // 截取到第一个空字符为止的字符串
+            data = data.substring(0, nullPos);
+        }
+        // 返回读取的字符串，如果为空则返回 null
+        return data.isEmpty() ? null : data;
     }
 
     /**
      * 获取指定进程和数据库路径下的密钥
      *
      * @param pid    目标进程的进程ID
+     * @param wxId   wxId
      * @param dbPath 数据库路径
      * @return 返回找到的密钥，如果未找到则返回null
      */
     @Override
-    public String getKey(int pid, String dbPath) {
+    public String getKey(int pid, String wxId, String dbPath) {
+        // 读取MicroMsg数据库的第一页，保存的密钥与扫描得到的候选密钥共用
+        byte[] firstPage = readFirstPage(microMsgPath(dbPath));
+        if (firstPage == null) {
+            return null;
+        }
+
+        // 优先校验上次保存的密钥，只需一次PBKDF2
+        String savedKey = DecryptKeyUtil.read(wxId);
+        if (savedKey != null && verifyKey(savedKey, firstPage)) {
+            log.info("Use the saved key of {}", wxId);
+            return savedKey;
+        }
+
+        // 保存的密钥不存在或已失效，扫描进程内存
+        String key = scanKey(pid, firstPage);
+        if (key != null) {
+            DecryptKeyUtil.write(wxId, key);
+        } else if (savedKey != null) {
+            DecryptKeyUtil.delete(wxId);
+        }
+        return key;
+    }
+
+    /**
+     * 扫描进程内存查找密钥
+     *
+     * @param pid       目标进程的进程ID
+     * @param firstPage MicroMsg数据库的第一页
+     * @return 返回找到的密钥，如果未找到则返回null
+     */
+    private String scanKey(int pid, byte[] firstPage) {
         // 打开目标进程
         WinNT.HANDLE process = Kernel32.INSTANCE.OpenProcess(0x1F0FFF, false, pid);
+        try {
+            // 通过模块名检索指定进程加载的模块信息
+            Psapi.MODULEINFO moduleInfo = moduleFromName(process, pid);
+            if (moduleInfo == null) {
+                return null;
+            }
+            long baseAddress = Pointer.nativeValue(moduleInfo.lpBaseOfDll);
+            ProcessMemoryReader reader = new Win32ProcessMemoryReader(process);
+            return findKey(reader, baseAddress, baseAddress + moduleInfo.SizeOfImage, firstPage);
+        } finally {
+            // 关闭进程句柄
+            Kernel32.INSTANCE.CloseHandle(process);
+        }
+    }
 
-        // 定义不同平台对应的字节数组
-        byte[] iphoneByteArray = "iphone\0".getBytes();
-        byte[] androidByteArray = "android\0".getBytes();
-        byte[] ipadByteArray = "ipad\0".getBytes();
+    /**
+     * 在模块内存中查找平台标记，读取标记附近的候选密钥并校验
+     *
+     * @param reader       内存读取器
+     * @param startAddress 模块起始地址
+     * @param endAddress   模块结束地址
+     * @param firstPage    MicroMsg数据库的第一页
+     * @return 返回找到的密钥，如果未找到则返回null
+     */
+    private String findKey(ProcessMemoryReader reader, long startAddress, long endAddress, byte[] firstPage) {
+        // 一次遍历模块内存，同时查找不同平台的标记
+        List<List<Long>> platformAddress = new MemoryScanner(reader).scan(startAddress, endAddress, PLATFORM_MATCHER);
 
         // 用于存储不同平台的模块扫描结果
-        List<Pointer> typeAddress = new ArrayList<>();
-        List<Pointer> typeAddress1 = patternScanModule(process, iphoneByteArray);
-        List<Pointer> typeAddress2 = patternScanModule(process, androidByteArray);
-        List<Pointer> typeAddress3 = patternScanModule(process, ipadByteArray);
+        List<Long> typeAddress = new ArrayList<>();
+        List<Long> typeAddress1 = platformAddress.get(0);
+        List<Long> typeAddress2 = platformAddress.get(1);
+        List<Long> typeAddress3 = platformAddress.get(2);
 
         // 优先选择长度至少为2的模块地址列表
         if (typeAddress1.size() >= 2) {
@@ -314,113 +435,139 @@ public class WeChatServiceImpl implements WeChatService {
             typeAddress = typeAddress3;
         }
 
-        // 拼接MicroMsg数据库路径
-        String microMsg = dbPath + "\\Msg\\MicroMsg.db";
+        // 读取候选密钥并去重后并行校验
+        return verifyKeys(readKeyCandidates(reader, typeAddress), firstPage);
+    }
 
-        // 获取倒序迭代器
-        ListIterator<Pointer> pointerListIterator = typeAddress.listIterator(typeAddress.size());
+    /**
+     * 读取候选密钥
+     * <p>
+     * 每个平台标记之前 2000 字节的窗口只读取一次，按步长8解析出密钥指针，
+     * 指针与密钥都去重，顺序与原先倒序遍历的顺序一致
+     *
+     * @param reader    内存读取器
+     * @param addresses 平台标记地址
+     * @return 候选密钥的十六进制表示
+     */
+    private Set<String> readKeyCandidates(ProcessMemoryReader reader, List<Long> addresses) {
+        Set<Long> pointers = new LinkedHashSet<>();
+        byte[] window = new byte[KEY_SEARCH_RANGE + Long.BYTES];
 
         // 倒序遍历模块地址列表
-        while (pointerListIterator.hasPrevious()) {
-            Pointer addressPointer = pointerListIterator.previous();
-            long address = Pointer.nativeValue(addressPointer);
-
-            // 在地址范围内以步长8递减遍历，读取密钥
-            for (long i = address; i >= (address - 2000); i -= 8) {
-                // 读取key
-                String key = readKey(process, i);
-
-                // 如果密钥不为空且验证通过，则返回密钥
-                if (key != null && verifyKey(key, microMsg)) {
-                    return key;
+        ListIterator<Long> addressIterator = addresses.listIterator(addresses.size());
+        while (addressIterator.hasPrevious()) {
+            long address = addressIterator.previous();
+
+            // 窗口只向前延伸到连续可读的内存区域，避免整块读取失败
+            MemoryRegion region = reader.queryRegion(address);
+            if (region == null || !region.isReadable()) {
+                continue;
+            }
+            long start = address - KEY_SEARCH_RANGE;
+            long lower = region.getBaseAddress();
+            while (lower > start) {
+                MemoryRegion previous = reader.queryRegion(lower - 1);
+                if (previous == null || !previous.isReadable()) {
+                    break;
+                }
+                lower = previous.getBaseAddress();
+            }
+            start = Math.max(start, lower);
+            int read = reader.read(start, window, 0, (int) (address + Long.BYTES - start));
+            ByteBuffer buffer = ByteBuffer.wrap(window).order(ByteOrder.LITTLE_ENDIAN);
+
+            // 在地址范围内以步长8递减遍历，解析密钥指针
+            for (long i = address; i >= start; i -= Long.BYTES) {
+                int offset = (int) (i - start);
+                if (offset + Long.BYTES > read) {
+                    continue;
+                }
+                long keyAddress = buffer.getLong(offset);
+                if (keyAddress != 0) {
+                    pointers.add(keyAddress);
                 }
             }
         }
-        // 未找到匹配的密钥，返回null
-        return null;
+
+        // 读取每个指针指向的密钥
+        Set<String> keys = new LinkedHashSet<>();
+        byte[] key = new byte[KEY_SIZE];
+        for (long keyAddress : pointers) {
+            if (reader.read(keyAddress, key, 0, KEY_SIZE) == KEY_SIZE) {
+                keys.add(HexUtil.encodeHexStr(key));
+            }
+        }
+        log.debug("Key candidates: {} pointers, {} distinct keys", pointers.size(), keys.size());
+        return keys;
     }
 
     /**
-     * 获取秘钥
+     * 并行校验候选密钥，任意一个校验成功后取消其余的校验
      *
-     * @param address 要读取的内存地址
-     * @return 读取到的秘钥，如果失败则返回 null。
+     * @param keys      候选密钥
+     * @param firstPage 数据库第一页
+     * @return 校验成功的密钥，都不匹配时返回null
      */
-    private String readKey(WinNT.HANDLE process, long address) {
-        Kernel32 kernel32 = Kernel32.INSTANCE;
-
-        // 准备缓冲区用于读取内存
-        Memory buffer = new Memory(8);
-        IntByReference bytesRead = new IntByReference();
-        // 读取目标进程的内存地址
-        if (!kernel32.ReadProcessMemory(process, new Pointer(address), buffer, (int) buffer.size(), bytesRead)) {
-            return null;
+    private String verifyKeys(Collection<String> keys, byte[] firstPage) {
+        AtomicBoolean matched = new AtomicBoolean();
+        CompletionService<String> completionService = new ExecutorCompletionService<>(keyExecutor);
+        List<Future<String>> futures = new ArrayList<>();
+        for (String key : keys) {
+            // 已经找到密钥时，尚未开始的校验直接跳过
+            futures.add(completionService.submit(() -> !matched.get() && verifyKey(key, firstPage) ? key : null));
         }
-
-        // 将缓冲区中的字节转换为长整型值
-        ByteBuffer bufferWrap = ByteBuffer.wrap(buffer.getByteArray(0, 8)).order(ByteOrder.LITTLE_ENDIAN);
-        long keyAddress = bufferWrap.getLong();
-
-        // 准备一个缓冲区用于存放密钥
-        Memory keyBuffer = new Memory(32);
-        // 从计算出的密钥地址读取密钥
-        if (!kernel32.ReadProcessMemory(process, new Pointer(keyAddress), keyBuffer, (int) keyBuffer.size(), bytesRead)) {
-            return null;
-        }
-
-        // 将密钥转换为十六进制字符串
-        StringBuilder sb = new StringBuilder();
-        byte[] key = keyBuffer.getByteArray(0, 32);
-        try (Formatter formatter = new Formatter(sb)) {
-            for (byte b : key) {
-                formatter.format("%02x", b & 0xff);
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                String key = completionService.take().get();
+                if (key != null) {
+                    return key;
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Verification key failed", e.getCause());
+        } finally {
+            matched.set(true);
+            futures.forEach(future -> future.cancel(false));
         }
-        // 返回密钥的十六进制表示
-        return sb.toString();
+        // 未找到匹配的密钥，返回null
+        return null;
     }
 
     /**
-     * 样子秘钥是否正确
+     * 验证秘钥是否正确
      *
-     * @param password 秘钥
-     * @param dbFile   被验证的文件
+     * @param password  秘钥
+     * @param firstPage 数据库第一页
      * @return 是否验证成功
      */
-    private boolean verifyKey(String password, String dbFile) {
-        // 创建File文件
-        File file = new File(dbFile);
-
-        try (FileInputStream fis = new FileInputStream(file)) {
-            // 文件大小
-            byte[] fileContent = new byte[5000];
-            // 读取内容
-            fis.read(fileContent);
-
-            // 提取盐值
-            byte[] salt = Arrays.copyOfRange(fileContent, 0, 16);
-            // 提取第一页
-            byte[] firstPage = Arrays.copyOfRange(fileContent, 16, 4096);
-            // 提取第一页的内容与IV
-            byte[] firstPageBodyAndIv = Arrays.copyOfRange(firstPage, 0, firstPage.length - 32);
-            // 提取第一页的hashMac
-            byte[] firstPageHashMac = Arrays.copyOfRange(firstPage, firstPage.length - 32, firstPage.length - 12);
-
-            // 生成key
-            byte[] key = Pbkdf2HmacUtil.pbkdf2Hmac(HexUtil.decodeHex(password), salt, 64000, 32);
-
-            byte[] macSalt = new byte[salt.length];
-            for (int i = 0; i < salt.length; i++) {
-                macSalt[i] = (byte) (salt[i] ^ 58);
-            }
-            // 秘钥匹配成功
-            return Pbkdf2HmacUtil.checkKey(key, macSalt, firstPageHashMac, firstPageBodyAndIv);
+    private boolean verifyKey(String password, byte[] firstPage) {
+        try {
+            return SqlCipherUtil.verifyKey(HexUtil.decodeHex(password), firstPage) != null;
         } catch (Exception e) {
             log.error("Verification key failed", e);
         }
         return false;
     }
 
+    /**
+     * 读取数据库的第一页
+     *
+     * @param dbFile 数据库文件
+     * @return 第一页，读取失败时返回null
+     */
+    private byte[] readFirstPage(String dbFile) {
+        try (RandomAccessFile file = new RandomAccessFile(dbFile, "r")) {
+            byte[] firstPage = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+            file.readFully(firstPage);
+            return firstPage;
+        } catch (IOException e) {
+            log.error("Read first page failed: {}", dbFile, e);
+        }
+        return null;
+    }
+
     /**
      * 列出并检索进程中指定已加载模块
      *
@@ -461,78 +608,56 @@ public class WeChatServiceImpl implements WeChatService {
     }
 
     /**
-     * 通过模块名检索指定进程加载的模块信息
+     * 通过模块名检索指定进程加载的模块信息，结果按pid缓存
+     * <p>
+     * 命中缓存时只校验一次缓存基址上的模块文件名，进程重启导致pid复用或模块被卸载时重新枚举
      *
      * @param process 指定的进程句柄
+     * @param pid     进程ID
      * @return 包含模块信息的 Psapi.MODULEINFO 对象，如果未找到，则返回 null
      */
-    private Psapi.MODULEINFO moduleFromName(WinNT.HANDLE process) {
+    private Psapi.MODULEINFO moduleFromName(WinNT.HANDLE process, int pid) {
+        // 校验缓存的模块信息是否仍然有效
+        Psapi.MODULEINFO cached = moduleCache.get(pid);
+        if (cached != null && moduleFileName(process, cached).endsWith(MODULE_NAME)) {
+            return cached;
+        }
+
         // 列出并检索进程中指定已加载模块
         List<Psapi.MODULEINFO> moduleInfos = enumProcessModule(process);
 
         // 遍历模块列表
         for (Psapi.MODULEINFO moduleInfo : moduleInfos) {
-            // 创建用于存储模块文件名的字节数组
-            byte[] buffer = new byte[WinNT.MAX_PATH];
-
-            // 根据模块的基址创建模块句柄
-            WinNT.HANDLE handle = new WinNT.HANDLE(moduleInfo.lpBaseOfDll);
-
-            // 获取模块文件名并存储在 buffer 中
-            Psapi.INSTANCE.GetModuleFileNameExA(process, handle, buffer, buffer.length);
-
-            // 截取字符串，去除多余的字节，得到模块文件名
-            byte[] trimmedBytes = ArrayUtil.sub(buffer, 0, ArrayUtil.indexOf(buffer, (byte) 0));
-
-            // 获得文件名
-            String fileName = new String(trimmedBytes, Charset.defaultCharset());
-
             // 判断模块文件名是否以指定的模块名结尾
-            if (fileName.endsWith(WeChatServiceImpl.MODULE_NAME)) {
+            if (moduleFileName(process, moduleInfo).endsWith(MODULE_NAME)) {
+                moduleCache.put(pid, moduleInfo);
                 return moduleInfo;
             }
         }
-        // 未找到匹配的模块，返回 null
+        // 未找到匹配的模块，清理缓存并返回 null
+        moduleCache.remove(pid);
         return null;
     }
 
     /**
-     * 在指定进程的指定模块中，通过模式扫描查找匹配的内存地址
+     * 获取模块文件名
      *
-     * @param process 指定的进程句柄
-     * @param pattern 要扫描的模式字节数组
-     * @return 包含匹配的内存地址的列表
+     * @param process    指定的进程句柄
+     * @param moduleInfo 模块信息
+     * @return 模块文件名，获取失败时返回空字符串
      */
-    private List<Pointer> patternScanModule(WinNT.HANDLE process, byte[] pattern) {
-        // 用于存储找到的内存地址的列表
-        List<Pointer> foundPointers = new ArrayList<>();
-
-        // 通过模块名检索指定进程加载的模块信息
-        Psapi.MODULEINFO moduleInfo = moduleFromName(process);
+    private String moduleFileName(WinNT.HANDLE process, Psapi.MODULEINFO moduleInfo) {
+        // 创建用于存储模块文件名的字节数组
+        byte[] buffer = new byte[WinNT.MAX_PATH];
 
-        // 空校验
-        if (moduleInfo == null) {
-            return foundPointers;
-        }
-
-        // 获取模块基址和模块最大地址
-        long baseAddress = Pointer.nativeValue(moduleInfo.lpBaseOfDll);
-        long maxAddress = Pointer.nativeValue(moduleInfo.lpBaseOfDll) + moduleInfo.SizeOfImage;
-        long pageAddress = baseAddress;
+        // 根据模块的基址创建模块句柄
+        WinNT.HANDLE handle = new WinNT.HANDLE(moduleInfo.lpBaseOfDll);
 
-        // 循环扫描模块内存页
-        while (pageAddress < maxAddress) {
-            // 扫描当前页的模式，并返回下一个扫描的起始地址和匹配的内存地址列表
-            Pair<Long, List<Pointer>> pair = scanPatternPage(process, pageAddress, pattern);
-            pageAddress = pair.getLeft();
+        // 获取模块文件名并存储在 buffer 中
+        int length = Psapi.INSTANCE.GetModuleFileNameExA(process, handle, buffer, buffer.length);
 
-            // 如果找到了匹配的内存地址，则添加到列表中
-            if (pair.getRight() != null) {
-                foundPointers.addAll(pair.getRight());
-            }
-        }
-        // 返回找到的内存地址列表
-        return foundPointers;
+        // 截取字符串，去除多余的字节，得到模块文件名
+        return new String(buffer, 0, Math.max(length, 0), Charset.defaultCharset());
     }
 
     /**
@@ -616,24 +741,36 @@ public class WeChatServiceImpl implements WeChatService {
         Kernel32 kernel32 = Kernel32.INSTANCE;
         // 打开目标进程句柄
         WinNT.HANDLE process = kernel32.OpenProcess(0x1F0FFF, false, pid);
-        // 设置要匹配的模式字符串
-        String pattern = "\\Msg\\FTSContact";
-        // 在目标进程中扫描符合模式的内存位置
-        List<Pointer> addresses = patternScanAll(process, pattern, 10);
+        try {
+            // 在目标进程中扫描符合模式的内存位置
+            List<Pointer> addresses = patternScanAll(process, WXID_PATTERN, 10);
+            List<Long> candidates = new ArrayList<>();
+            for (Pointer address : addresses) {
+                candidates.add(Pointer.nativeValue(address));
+            }
+            return extractWxId(new Win32ProcessMemoryReader(process, WXID_WINDOW), candidates);
+        } finally {
+            // 关闭目标进程句柄
+            kernel32.CloseHandle(process);
+        }
+    }
+
+    /**
+     * 从微信目录标记附近的路径字符串中提取微信ID
+     *
+     * @param reader    内存读取器
+     * @param addresses 标记地址
+     * @return 微信ID，未找到时返回null
+     */
+    private String extractWxId(ProcessMemoryReader reader, List<Long> addresses) {
+        byte[] buffer = new byte[WXID_WINDOW];
         // 遍历匹配到的内存位置
-        for (Pointer address : addresses) {
-            // 分配内存作为缓冲区读取数据
-            int bufferSize = 80;
-            Memory buffer = new Memory(bufferSize);
-            IntByReference read = new IntByReference();
+        for (long address : addresses) {
             // 从指定地址的前一部分开始读取内存，而不是从地址的确切位置开始。
-            Pointer offsetPointer = new Pointer(Pointer.nativeValue(address) - 30);
-            // 从指定地址读取内存数据
-            boolean success = kernel32.ReadProcessMemory(process, offsetPointer, buffer, bufferSize, read);
-            if (success) {
+            int read = reader.read(address - WXID_OFFSET, buffer, 0, buffer.length);
+            if (read > 0) {
                 // 将读取的字节转换为字符串
-                byte[] dataBytes = buffer.getByteArray(0, read.getValue());
-                String data = new String(dataBytes, 0, read.getValue());
+                String data = new String(buffer, 0, read);
                 // 对字符串进行处理，提取微信ID信息
                 data = data.split("\\\\Msg")[0];
                 // 通过文件分隔符分割
@@ -642,8 +779,6 @@ public class WeChatServiceImpl implements WeChatService {
                 return newData[newData.length - 1];
             }
         }
-        // 关闭目标进程句柄
-        kernel32.CloseHandle(process);
         // 返回空
         return null;
     }
@@ -661,105 +796,81 @@ public class WeChatServiceImpl implements WeChatService {
         List<Pointer> found = new ArrayList<>();
         // 根据系统架构设置用户空间限制
         long userSpaceLimit = "amd64".equals(System.getProperty("os.arch")) ? 0x7FFFFFFF0000L : 0x7FFF0000L;
-        // 初始下一个扫描位置
-        long nextRegion = 0;
-        // 循环扫描直到达到用户空间限制或找到足够的匹配位置
-        while (nextRegion < userSpaceLimit) {
-            // 执行单页扫描，获取扫描结果
-            Pair<Long, List<Pointer>> pair = scanPatternPage(process, nextRegion, pattern.getBytes());
-            // 更新下一个扫描位置
-            nextRegion = pair.getLeft();
-            // 获取单页扫描的匹配位置列表
-            List<Pointer> pageFound = pair.getRight();
-
-            // 如果单页扫描找到匹配位置，将其添加到总的匹配位置列表中
-            if (!pageFound.isEmpty()) {
-                found.addAll(pageFound);
-            }
-            // 如果找到足够的匹配位置，跳出循环
-            if (found.size() > findNum) {
-                break;
-            }
+        // 并行扫描整个用户空间的可读区域，找到足够的匹配位置后全部停止
+        ParallelMemoryScanner scanner = new ParallelMemoryScanner(scanPool, () -> new Win32ProcessMemoryReader(process));
+        for (long address : scanner.scan(0, userSpaceLimit, new BytePatternSearcher(pattern.getBytes()), findNum)) {
+            found.add(new Pointer(address));
         }
         // 返回符合模式的内存位置列表
         return found;
     }
 
-    /**
-     * 扫描内存页
-     *
-     * @param process      指定进程的句柄
-     * @param startAddress 开始的内存地址
-     * @param pattern      要匹配的模式字符串
-     * @return Pair
-     */
-    private Pair<Long, List<Pointer>> scanPatternPage(WinNT.HANDLE process, long startAddress, byte[] pattern) {
-        // 获取内存基本信息
-        WinNT.MEMORY_BASIC_INFORMATION mbi = new WinNT.MEMORY_BASIC_INFORMATION();
-        // 查询指定虚拟内存地址
-        Kernel32.INSTANCE.VirtualQueryEx(process, new Pointer(startAddress), mbi, new BaseTSD.SIZE_T(mbi.size()));
-        // 计算下一个内存区域的起始地址
-        long nextRegion = Pointer.nativeValue(mbi.baseAddress) + mbi.regionSize.longValue();
-        // 定义允许的内存保护标志
-        int[] allowedProtections = {WinNT.PAGE_EXECUTE, WinNT.PAGE_EXECUTE_READ, WinNT.PAGE_EXECUTE_READWRITE, WinNT.PAGE_READWRITE, WinNT.PAGE_READONLY};
-
-        List<Pointer> foundPointer = new ArrayList<>();
-
-        // 检查内存状态和保护标志是否符合要求
-        if (!(mbi.state.intValue() == WinNT.MEM_COMMIT && ArrayUtil.contains(allowedProtections, mbi.protect.intValue()))) {
-            return Pair.of(nextRegion, foundPointer);
-        }
-
-        // 创建一个 Native Memory 对象，用于存储从进程中读取的内存数据
-        Memory memory = new Memory(mbi.regionSize.intValue());
-        // 创建一个引用对象，用于存储 ReadProcessMemory 函数返回的已读取字节数
-        IntByReference bytesRead = new IntByReference();
-        // 从指定进程中读取内存数据，并将结果存储到 Native Memory 对象中
-        Kernel32.INSTANCE.ReadProcessMemory(process, new Pointer(startAddress), memory, mbi.regionSize.intValue(), bytesRead);
-        // 从 Native Memory 对象中获取已读取的字节数，并创建一个字节数组存储读取的内存数据
-        byte[] buffer = memory.getByteArray(0, bytesRead.getValue());
-
-        // 查找匹配的模式在内存中的起始位置
-        for (int start : findMatches(buffer, pattern)) {
-            foundPointer.add(new Pointer(startAddress + start));
-        }
-        return Pair.of(nextRegion, foundPointer);
+    @Override
+    public DumpAnalysisVO analyzeDump(DumpAnalysisDTO dumpAnalysisDTO) {
+        // 打开并映射内存转储文件
+        MemoryDump dump;
+        try {
+            long rawBaseAddress = dumpAnalysisDTO.getBaseAddress() == null ? 0 : dumpAnalysisDTO.getBaseAddress();
+            dump = MemoryDump.open(Paths.get(dumpAnalysisDTO.getDumpPath()), rawBaseAddress);
+        } catch (IOException | InvalidPathException e) {
+            log.error("Failed to open memory dump {}", dumpAnalysisDTO.getDumpPath(), e);
+            throw new BizException(-1, "读取内存转储文件失败：" + e.getMessage());
+        }
+        ProcessMemoryReader reader = dump.newReader();
+
+        // minidump 记录了模块信息，原始转储只能扫描整个文件
+        DumpModule module = dump.findModule(MODULE_NAME);
+        DumpModule executable = dump.findModule(EXE_NAME);
+        long moduleStart = module != null ? module.getBaseAddress() : dump.getStartAddress();
+        long moduleEnd = module != null ? module.getEndAddress() : dump.getEndAddress();
+        String version = executable != null ? executable.getVersion() : null;
+
+        // 并行扫描整个转储，提取微信ID
+        long start = System.nanoTime();
+        ParallelMemoryScanner scanner = new ParallelMemoryScanner(scanPool, dump::newReader);
+        List<Long> addresses = scanner.scan(dump.getStartAddress(), dump.getEndAddress(), new BytePatternSearcher(WXID_PATTERN.getBytes()), 10);
+        String wxId = extractWxId(reader, addresses);
+        long wxIdTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 按版本对应的偏移量读取昵称、账号与手机号
+        DumpAnalysisVO.DumpAnalysisVOBuilder builder = DumpAnalysisVO.builder()
+                .wxId(wxId)
+                .version(version)
+                .baseAddress(module != null ? module.getBaseAddress() : null)
+                .wxIdTime(wxIdTime);
+        WeChatOffsetProperties.VersionConfig versionConfig = version != null ? getVersionConfig(version) : null;
+        if (module != null && versionConfig != null) {
+            builder.nickname(readString(reader, module.getBaseAddress() + versionConfig.getNickname()))
+                    .account(readString(reader, module.getBaseAddress() + versionConfig.getAccount()))
+                    .mobile(readString(reader, module.getBaseAddress() + versionConfig.getMobile()));
+        }
+
+        // 提供了微信文件目录时，用对应账号的MicroMsg数据库校验候选密钥
+        if (StrUtil.isNotBlank(dumpAnalysisDTO.getBasePath()) && StrUtil.isNotBlank(wxId)) {
+            byte[] firstPage = readFirstPage(microMsgPath(Paths.get(dumpAnalysisDTO.getBasePath(), wxId).toString()));
+            if (firstPage != null) {
+                start = System.nanoTime();
+                builder.key(findKey(reader, moduleStart, moduleEnd, firstPage))
+                        .keyTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+        return builder.build();
     }
 
     /**
-     * 在字节数组中查找匹配指定模式的位置索引数组。
+     * MicroMsg数据库路径
      *
-     * @param inputBytes   待查找的字节数组
-     * @param patternBytes 要匹配的模式字节数组
-     * @return 匹配位置索引数组
-     */
-    private int[] findMatches(byte[] inputBytes, byte[] patternBytes) {
-        // 初始化匹配位置索引数组
-        int[] matches = new int[0];
-
-        // 遍历待查找的字节数组
-        for (int i = 0; i <= inputBytes.length - patternBytes.length; i++) {
-            // 假设当前位置开始存在匹配
-            boolean match = true;
-
-            // 遍历模式字节数组，检查是否与待查找的子数组匹配
-            for (int j = 0; j < patternBytes.length; j++) {
-                if (inputBytes[i + j] != patternBytes[j]) {
-                    // 如果有不匹配的字节，标记为不匹配，并中断内层循环
-                    match = false;
-                    break;
-                }
-            }
-            // 如果找到匹配的位置，将其添加到匹配位置索引数组中
-            if (match) {
-                int[] newMatches = new int[matches.length + 1];
-                System.arraycopy(matches, 0, newMatches, 0, matches.length);
-                newMatches[matches.length] = i;
-                matches = newMatches;
-            }
-        }
-        // 返回匹配位置索引数组
-        return matches;
+     * @param dbPath 数据库路径（微信文件目录下的账号目录）
+     * @return MicroMsg数据库路径
+     */
+    private String microMsgPath(String dbPath) {
+        return Paths.get(dbPath, "Msg", "MicroMsg.db").toString();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        keyExecutor.shutdownNow();
+        scanPool.shutdownNow();
     }
 
     /**
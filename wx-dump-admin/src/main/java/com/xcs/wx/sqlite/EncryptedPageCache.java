@@ -0,0 +1,176 @@
+package com.xcs.wx.sqlite;
+
+import com.xcs.wx.util.PageCipher;
+import com.xcs.wx.util.SqlCipherUtil;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 加密数据库的按需解密页缓存
+ * <p>
+ * 直接在加密文件上按页号读取密文并解密，解密后的页按LRU淘汰，内存占用不超过缓存页数 * 4096 字节。
+ * 加密文件被微信修改后（大小或修改时间变化），调用 {@link #refresh()} 会清空缓存。
+ *
+ * @author xcs
+ * @date 2024年7月5日15:20:44
+ */
+public class EncryptedPageCache implements Closeable {
+
+    /**
+     * 每个线程复用的密文页缓冲区
+     */
+    private static final ThreadLocal<ByteBuffer> CIPHER_PAGE = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SqlCipherUtil.DEFAULT_PAGESIZE));
+
+    /**
+     * 加密文件
+     */
+    private final File file;
+
+    /**
+     * 文件通道
+     */
+    private final FileChannel channel;
+
+    /**
+     * 页密钥
+     */
+    private final byte[] key;
+
+    /**
+     * 解密后的页，按访问顺序淘汰
+     */
+    private final LinkedHashMap<Integer, byte[]> pages;
+
+    /**
+     * 缓存对应的文件大小
+     */
+    private long fileSize;
+
+    /**
+     * 缓存对应的文件修改时间
+     */
+    private long lastModified;
+
+    private EncryptedPageCache(File file, FileChannel channel, byte[] key, int capacity) {
+        this.file = file;
+        this.channel = channel;
+        this.key = key;
+        this.pages = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.fileSize = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    /**
+     * 打开加密数据库
+     *
+     * @param path     加密数据库路径
+     * @param password 微信秘钥
+     * @param capacity 最多缓存的页数
+     * @return 页缓存
+     * @throws Exception 打开失败或者秘钥不匹配
+     */
+    public static EncryptedPageCache open(String path, byte[] password, int capacity) throws Exception {
+        File file = new File(path);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // 读取第一页，第一页包含盐值
+            ByteBuffer firstPage = ByteBuffer.allocate(SqlCipherUtil.DEFAULT_PAGESIZE);
+            readFully(channel, firstPage, 0);
+            // 生成key并校验
+            byte[] key = SqlCipherUtil.deriveKey(password, firstPage.array());
+            if (key == null) {
+                throw new IOException("Key mismatch: " + path);
+            }
+            return new EncryptedPageCache(file, channel, key, Math.max(capacity, 1));
+        } catch (Exception e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 加密文件发生变化时清空缓存
+     *
+     * @return 加密文件是否发生变化
+     */
+    public synchronized boolean refresh() {
+        long currentSize = file.length();
+        long currentModified = file.lastModified();
+        if (currentSize == fileSize && currentModified == lastModified) {
+            return false;
+        }
+        pages.clear();
+        fileSize = currentSize;
+        lastModified = currentModified;
+        return true;
+    }
+
+    /**
+     * 获取解密后的页，返回的数组为缓存共享，只能读取
+     *
+     * @param pageNo 页号（从1开始，与SQLite一致）
+     * @return 明文页
+     * @throws IOException 读取或者解密异常
+     */
+    public byte[] getPage(int pageNo) throws IOException {
+        synchronized (this) {
+            byte[] page = pages.get(pageNo);
+            if (page != null) {
+                return page;
+            }
+        }
+        // 缓存未命中时在锁外读取并解密
+        ByteBuffer cipherPage = CIPHER_PAGE.get();
+        cipherPage.clear();
+        readFully(channel, cipherPage, (long) (pageNo - 1) * SqlCipherUtil.DEFAULT_PAGESIZE);
+        byte[] page = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+        try {
+            SqlCipherUtil.decryptPage(PageCipher.current(key), cipherPage.array(), pageNo - 1, page, 0);
+        } catch (Exception e) {
+            throw new IOException("Failed to decrypt page " + pageNo + " of " + file, e);
+        }
+        synchronized (this) {
+            pages.put(pageNo, page);
+        }
+        return page;
+    }
+
+    /**
+     * 从指定位置开始读满缓冲区
+     *
+     * @param channel  文件
+     * @param buffer   缓冲区
+     * @param position 起始位置
+     * @throws IOException 读取异常
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            pages.clear();
+        }
+        channel.close();
+    }
+}
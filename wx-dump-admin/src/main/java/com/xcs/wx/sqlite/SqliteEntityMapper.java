@@ -0,0 +1,124 @@
+package com.xcs.wx.sqlite;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按实体上的 {@link TableField} 与 {@link TableId} 注解将行映射为实体
+ *
+ * @author xcs
+ * @date 2024年7月5日16:45:03
+ */
+public class SqliteEntityMapper {
+
+    /**
+     * 实体字段与列名的映射
+     */
+    private static final Map<Class<?>, List<ColumnField>> COLUMN_FIELDS = new ConcurrentHashMap<>();
+
+    private SqliteEntityMapper() {
+    }
+
+    /**
+     * 将行映射为实体
+     *
+     * @param row   行
+     * @param clazz 实体类型
+     * @param <T>   实体类型
+     * @return 实体
+     */
+    public static <T> T map(SqliteRow row, Class<T> clazz) {
+        try {
+            T entity = clazz.getDeclaredConstructor().newInstance();
+            for (ColumnField columnField : COLUMN_FIELDS.computeIfAbsent(clazz, SqliteEntityMapper::resolve)) {
+                columnField.field.set(entity, convert(row.get(columnField.column), columnField.field.getType()));
+            }
+            return entity;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to map row to " + clazz.getName(), e);
+        }
+    }
+
+    /**
+     * 解析实体字段对应的列名
+     *
+     * @param clazz 实体类型
+     * @return 字段与列名
+     */
+    private static List<ColumnField> resolve(Class<?> clazz) {
+        List<ColumnField> columnFields = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            TableId tableId = field.getAnnotation(TableId.class);
+            TableField tableField = field.getAnnotation(TableField.class);
+            String column = null;
+            if (tableId != null) {
+                column = tableId.value();
+            } else if (tableField != null && tableField.exist()) {
+                column = tableField.value();
+            }
+            if (column == null || column.isEmpty()) {
+                continue;
+            }
+            field.setAccessible(true);
+            columnFields.add(new ColumnField(field, column));
+        }
+        return columnFields;
+    }
+
+    /**
+     * 转换为字段类型，规则与 JDBC 读取 SQLite 时一致
+     *
+     * @param value 列值
+     * @param type  字段类型
+     * @return 转换后的值
+     */
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        if (type == String.class) {
+            return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString();
+        }
+        if (type == byte[].class) {
+            return value instanceof byte[] ? value : value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (type == Integer.class || type == int.class) {
+                return number.intValue();
+            }
+            if (type == Long.class || type == long.class) {
+                return number.longValue();
+            }
+            if (type == Double.class || type == double.class) {
+                return number.doubleValue();
+            }
+        }
+        return type.isInstance(value) ? value : null;
+    }
+
+    /**
+     * 实体字段与列名
+     */
+    private static class ColumnField {
+
+        private final Field field;
+        private final String column;
+
+        ColumnField(Field field, String column) {
+            this.field = field;
+            this.column = column;
+        }
+    }
+}
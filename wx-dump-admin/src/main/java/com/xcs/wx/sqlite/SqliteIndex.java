@@ -0,0 +1,46 @@
+package com.xcs.wx.sqlite;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 索引结构，由 sqlite_master 中的建索引语句解析得到
+ *
+ * @author xcs
+ * @date 2024年7月5日15:41:30
+ */
+@Data
+public class SqliteIndex {
+
+    /**
+     * 索引名称
+     */
+    private String name;
+
+    /**
+     * 所属表名
+     */
+    private String tableName;
+
+    /**
+     * B-tree根页号
+     */
+    private int rootPage;
+
+    /**
+     * 索引列，按定义顺序排列
+     */
+    private List<String> columns = new ArrayList<>();
+
+    /**
+     * 索引列是否降序
+     */
+    private List<Boolean> descending = new ArrayList<>();
+
+    /**
+     * 能否用于查找，表达式索引、部分索引与非 BINARY 排序规则的索引不能按值查找
+     */
+    private boolean seekable = true;
+}
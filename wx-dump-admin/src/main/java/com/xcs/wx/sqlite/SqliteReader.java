@@ -0,0 +1,825 @@
+package com.xcs.wx.sqlite;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 只读的 SQLite B-tree 读取器，直接读取加密数据库，不生成明文副本
+ * <p>
+ * 页通过 {@link EncryptedPageCache} 按需解密，支持全表扫描、按rowid查找以及按索引前缀查找。
+ * 只实现读取数据需要的部分：不支持 WITHOUT ROWID 表、WAL 以及非 BINARY 排序规则的索引查找。
+ *
+ * @author xcs
+ * @date 2024年7月5日16:08:35
+ */
+public class SqliteReader implements Closeable {
+
+    /**
+     * 内部索引页
+     */
+    private static final int INTERIOR_INDEX = 0x02;
+
+    /**
+     * 内部表页
+     */
+    private static final int INTERIOR_TABLE = 0x05;
+
+    /**
+     * 叶子索引页
+     */
+    private static final int LEAF_INDEX = 0x0a;
+
+    /**
+     * 叶子表页
+     */
+    private static final int LEAF_TABLE = 0x0d;
+
+    /**
+     * 第一页的数据库文件头长度
+     */
+    private static final int DATABASE_HEADER_SIZE = 100;
+
+    /**
+     * 索引遍历：继续
+     */
+    private static final int CONTINUE = 0;
+
+    /**
+     * 索引遍历：调用方要求停止
+     */
+    private static final int STOP = 1;
+
+    /**
+     * 索引遍历：已经越过查找范围
+     */
+    private static final int DONE = 2;
+
+    /**
+     * 页缓存
+     */
+    private final EncryptedPageCache pageCache;
+
+    /**
+     * 每页可用的大小（页大小 - 保留字段）
+     */
+    private final int usableSize;
+
+    /**
+     * 文本编码
+     */
+    private final Charset charset;
+
+    /**
+     * 表结构，key为小写表名
+     */
+    private volatile Map<String, SqliteTable> tables = Collections.emptyMap();
+
+    /**
+     * 索引结构，key为小写表名
+     */
+    private volatile Map<String, List<SqliteIndex>> indexes = Collections.emptyMap();
+
+    private SqliteReader(EncryptedPageCache pageCache) throws IOException {
+        this.pageCache = pageCache;
+        byte[] firstPage = pageCache.getPage(1);
+        int pageSize = u16(firstPage, 16);
+        if (pageSize != firstPage.length) {
+            throw new IOException("Unsupported page size " + pageSize);
+        }
+        this.usableSize = pageSize - (firstPage[20] & 0xFF);
+        switch (s32(firstPage, 56)) {
+            case 2:
+                this.charset = StandardCharsets.UTF_16LE;
+                break;
+            case 3:
+                this.charset = StandardCharsets.UTF_16BE;
+                break;
+            default:
+                this.charset = StandardCharsets.UTF_8;
+        }
+        loadSchema();
+    }
+
+    /**
+     * 打开加密数据库
+     *
+     * @param path          加密数据库路径
+     * @param password      微信秘钥
+     * @param cacheCapacity 最多缓存的页数
+     * @return 读取器
+     * @throws Exception 打开失败或者秘钥不匹配
+     */
+    public static SqliteReader open(String path, byte[] password, int cacheCapacity) throws Exception {
+        EncryptedPageCache pageCache = EncryptedPageCache.open(path, password, cacheCapacity);
+        try {
+            return new SqliteReader(pageCache);
+        } catch (Exception e) {
+            pageCache.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 加密文件发生变化时清空页缓存并重新加载表结构
+     *
+     * @throws IOException 读取异常
+     */
+    public void refresh() throws IOException {
+        if (pageCache.refresh()) {
+            loadSchema();
+        }
+    }
+
+    /**
+     * 获取表结构
+     *
+     * @param tableName 表名，不区分大小写
+     * @return 表结构，不存在时返回null
+     */
+    public SqliteTable getTable(String tableName) {
+        return tables.get(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 查找可用于按前缀查找的索引，索引的前几列依次与指定的列相同
+     *
+     * @param tableName 表名，不区分大小写
+     * @param columns   前缀列
+     * @return 索引，不存在时返回null
+     */
+    public SqliteIndex findIndex(String tableName, String... columns) {
+        for (SqliteIndex index : indexes.getOrDefault(tableName.toLowerCase(Locale.ROOT), Collections.emptyList())) {
+            if (!index.isSeekable() || index.getColumns().size() < columns.length) {
+                continue;
+            }
+            boolean matched = true;
+            for (int i = 0; i < columns.length && matched; i++) {
+                matched = index.getColumns().get(i).equalsIgnoreCase(columns[i]);
+            }
+            if (matched) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 全表扫描，按rowid升序访问每一行
+     *
+     * @param tableName 表名，不区分大小写
+     * @param visitor   访问者，返回false时停止扫描
+     * @throws IOException 读取异常
+     */
+    public void scan(String tableName, Predicate<SqliteRow> visitor) throws IOException {
+        SqliteTable table = requireTable(tableName);
+        scanTable(table.getRootPage(), table, visitor);
+    }
+
+    /**
+     * 按rowid查找一行
+     *
+     * @param tableName 表名，不区分大小写
+     * @param rowid     rowid
+     * @return 行，不存在时返回null
+     * @throws IOException 读取异常
+     */
+    public SqliteRow findByRowid(String tableName, long rowid) throws IOException {
+        return findByRowid(requireTable(tableName), rowid);
+    }
+
+    /**
+     * 按索引前缀查找，按索引顺序访问前缀相同的每一行
+     *
+     * @param index   索引
+     * @param prefix  前缀值，依次对应索引的前几列
+     * @param visitor 访问者，返回false时停止查找
+     * @throws IOException 读取异常
+     */
+    public void scanIndex(SqliteIndex index, Object[] prefix, Predicate<SqliteRow> visitor) throws IOException {
+        SqliteTable table = requireTable(index.getTableName());
+        visitIndex(index.getRootPage(), index, normalize(prefix), entry -> {
+            // 索引记录的最后一列是rowid
+            SqliteRow row = findByRowid(table, (Long) entry[entry.length - 1]);
+            return row == null || visitor.test(row);
+        });
+    }
+
+    /**
+     * 按索引前缀倒序查找，从索引顺序中最大的记录开始访问前缀相同的每一行
+     *
+     * @param index   索引
+     * @param prefix  前缀值，依次对应索引的前几列
+     * @param upper   上界（不含），依次对应索引的前几列，为null时从前缀范围的末尾开始
+     * @param visitor 访问者，返回false时停止查找
+     * @throws IOException 读取异常
+     */
+    public void scanIndexDescending(SqliteIndex index, Object[] prefix, Object[] upper, Predicate<SqliteRow> visitor) throws IOException {
+        SqliteTable table = requireTable(index.getTableName());
+        Object[] normalizedPrefix = normalize(prefix);
+        Object[] normalizedUpper = upper == null ? null : normalize(upper);
+        visitIndexDescending(index.getRootPage(), index, normalizedPrefix, normalizedUpper, entry -> {
+            SqliteRow row = findByRowid(table, (Long) entry[entry.length - 1]);
+            return row == null || visitor.test(row);
+        });
+    }
+
+    /**
+     * 读取 sqlite_master 加载表与索引结构
+     *
+     * @throws IOException 读取异常
+     */
+    private void loadSchema() throws IOException {
+        SqliteTable master = SqliteSchemaParser.parseTable("sqlite_master", 1,
+                "CREATE TABLE sqlite_master(type text, name text, tbl_name text, rootpage integer, sql text)");
+        List<SqliteRow> rows = new ArrayList<>();
+        scanTable(1, master, rows::add);
+
+        Map<String, SqliteTable> newTables = new HashMap<>();
+        for (SqliteRow row : rows) {
+            Long rootPage = row.getLong("rootpage");
+            String sql = row.getString("sql");
+            if ("table".equals(row.getString("type")) && rootPage != null && rootPage > 0 && sql != null) {
+                SqliteTable table = SqliteSchemaParser.parseTable(row.getString("name"), rootPage.intValue(), sql);
+                newTables.put(table.getName().toLowerCase(Locale.ROOT), table);
+            }
+        }
+        Map<String, List<SqliteIndex>> newIndexes = new HashMap<>();
+        for (SqliteRow row : rows) {
+            Long rootPage = row.getLong("rootpage");
+            SqliteTable table = newTables.get(String.valueOf(row.getString("tbl_name")).toLowerCase(Locale.ROOT));
+            if (!"index".equals(row.getString("type")) || rootPage == null || rootPage <= 0 || table == null) {
+                continue;
+            }
+            String sql = row.getString("sql");
+            SqliteIndex index = sql == null
+                    ? SqliteSchemaParser.parseAutoIndex(row.getString("name"), table, rootPage.intValue())
+                    : SqliteSchemaParser.parseIndex(row.getString("name"), table.getName(), rootPage.intValue(), sql);
+            if (index != null) {
+                newIndexes.computeIfAbsent(table.getName().toLowerCase(Locale.ROOT), key -> new ArrayList<>()).add(index);
+            }
+        }
+        this.tables = newTables;
+        this.indexes = newIndexes;
+    }
+
+    /**
+     * 获取表结构，不存在或者不支持时抛出异常
+     *
+     * @param tableName 表名
+     * @return 表结构
+     * @throws IOException 表不存在或者不支持
+     */
+    private SqliteTable requireTable(String tableName) throws IOException {
+        SqliteTable table = getTable(tableName);
+        if (table == null) {
+            throw new IOException("No such table: " + tableName);
+        }
+        if (table.isWithoutRowid()) {
+            throw new IOException("WITHOUT ROWID table is not supported: " + tableName);
+        }
+        return table;
+    }
+
+    /**
+     * 按顺序遍历表B-tree
+     *
+     * @param pageNo  页号
+     * @param table   表结构
+     * @param visitor 访问者
+     * @return 是否继续遍历
+     * @throws IOException 读取异常
+     */
+    private boolean scanTable(int pageNo, SqliteTable table, Predicate<SqliteRow> visitor) throws IOException {
+        byte[] page = pageCache.getPage(pageNo);
+        int header = pageNo == 1 ? DATABASE_HEADER_SIZE : 0;
+        int type = page[header] & 0xFF;
+        int cellCount = u16(page, header + 3);
+        if (type == LEAF_TABLE) {
+            for (int i = 0; i < cellCount; i++) {
+                if (!visitor.test(readTableRow(page, u16(page, header + 8 + 2 * i), table))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        checkType(type, INTERIOR_TABLE, pageNo);
+        for (int i = 0; i < cellCount; i++) {
+            if (!scanTable(s32(page, u16(page, header + 12 + 2 * i)), table, visitor)) {
+                return false;
+            }
+        }
+        return scanTable(s32(page, header + 8), table, visitor);
+    }
+
+    /**
+     * 在表B-tree中按rowid二分查找
+     *
+     * @param table 表结构
+     * @param rowid rowid
+     * @return 行，不存在时返回null
+     * @throws IOException 读取异常
+     */
+    private SqliteRow findByRowid(SqliteTable table, long rowid) throws IOException {
+        int pageNo = table.getRootPage();
+        int[] position = new int[1];
+        while (true) {
+            byte[] page = pageCache.getPage(pageNo);
+            int header = pageNo == 1 ? DATABASE_HEADER_SIZE : 0;
+            int type = page[header] & 0xFF;
+            int cellCount = u16(page, header + 3);
+            boolean leaf = type == LEAF_TABLE;
+            if (!leaf) {
+                checkType(type, INTERIOR_TABLE, pageNo);
+            }
+            int cellPointers = header + (leaf ? 8 : 12);
+            // 第一个key大于等于rowid的单元
+            int low = 0;
+            int high = cellCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                position[0] = u16(page, cellPointers + 2 * middle);
+                if (leaf) {
+                    // 跳过负载长度
+                    readVarint(page, position);
+                } else {
+                    // 跳过左子页号
+                    position[0] += 4;
+                }
+                if (readVarint(page, position) < rowid) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (leaf) {
+                if (low == cellCount) {
+                    return null;
+                }
+                int cell = u16(page, cellPointers + 2 * low);
+                SqliteRow row = readTableRow(page, cell, table);
+                return row.getRowid() == rowid ? row : null;
+            }
+            pageNo = low == cellCount ? s32(page, header + 8) : s32(page, u16(page, cellPointers + 2 * low));
+        }
+    }
+
+    /**
+     * 按索引顺序遍历前缀相同的索引记录
+     *
+     * @param pageNo  页号
+     * @param index   索引
+     * @param prefix  前缀值
+     * @param visitor 访问者，参数为索引记录（索引列 + rowid）
+     * @return 遍历状态
+     * @throws IOException 读取异常
+     */
+    private int visitIndex(int pageNo, SqliteIndex index, Object[] prefix, IndexVisitor visitor) throws IOException {
+        byte[] page = pageCache.getPage(pageNo);
+        int header = pageNo == 1 ? DATABASE_HEADER_SIZE : 0;
+        int type = page[header] & 0xFF;
+        int cellCount = u16(page, header + 3);
+        boolean interior = type == INTERIOR_INDEX;
+        if (!interior) {
+            checkType(type, LEAF_INDEX, pageNo);
+        }
+        int cellPointers = header + (interior ? 12 : 8);
+        // 二分查找第一个不小于前缀的单元，之前的单元及其左子树都小于前缀
+        int low = 0;
+        int high = cellCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(readIndexEntry(page, u16(page, cellPointers + 2 * middle), interior), prefix, index) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < cellCount; i++) {
+            int cell = u16(page, cellPointers + 2 * i);
+            if (interior) {
+                int state = visitIndex(s32(page, cell), index, prefix, visitor);
+                if (state != CONTINUE) {
+                    return state;
+                }
+            }
+            Object[] entry = readIndexEntry(page, cell, interior);
+            if (comparePrefix(entry, prefix, index) > 0) {
+                return DONE;
+            }
+            if (!visitor.visit(entry)) {
+                return STOP;
+            }
+        }
+        return interior ? visitIndex(s32(page, header + 8), index, prefix, visitor) : CONTINUE;
+    }
+
+    /**
+     * 按索引倒序遍历前缀相同且小于上界的索引记录
+     *
+     * @param pageNo  页号
+     * @param index   索引
+     * @param prefix  前缀值
+     * @param upper   上界（不含），为null时不限制
+     * @param visitor 访问者，参数为索引记录（索引列 + rowid）
+     * @return 遍历状态
+     * @throws IOException 读取异常
+     */
+    private int visitIndexDescending(int pageNo, SqliteIndex index, Object[] prefix, Object[] upper, IndexVisitor visitor) throws IOException {
+        byte[] page = pageCache.getPage(pageNo);
+        int header = pageNo == 1 ? DATABASE_HEADER_SIZE : 0;
+        int type = page[header] & 0xFF;
+        int cellCount = u16(page, header + 3);
+        boolean interior = type == INTERIOR_INDEX;
+        if (!interior) {
+            checkType(type, LEAF_INDEX, pageNo);
+        }
+        int cellPointers = header + (interior ? 12 : 8);
+        // 二分查找第一个越过上界的单元，之后的单元及其左子树都越过上界
+        int low = 0;
+        int high = cellCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (isBeyond(readIndexEntry(page, u16(page, cellPointers + 2 * middle), interior), prefix, upper, index)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        if (interior) {
+            // 该单元的左子树（或最右子树）中可能还有未越过上界的记录
+            int child = low == cellCount ? s32(page, header + 8) : s32(page, u16(page, cellPointers + 2 * low));
+            int state = visitIndexDescending(child, index, prefix, upper, visitor);
+            if (state != CONTINUE) {
+                return state;
+            }
+        }
+        for (int i = low - 1; i >= 0; i--) {
+            int cell = u16(page, cellPointers + 2 * i);
+            Object[] entry = readIndexEntry(page, cell, interior);
+            if (comparePrefix(entry, prefix, index) < 0) {
+                return DONE;
+            }
+            if (!visitor.visit(entry)) {
+                return STOP;
+            }
+            if (interior) {
+                int state = visitIndexDescending(s32(page, cell), index, prefix, upper, visitor);
+                if (state != CONTINUE) {
+                    return state;
+                }
+            }
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * 索引记录是否越过倒序遍历的起点
+     *
+     * @param entry  索引记录
+     * @param prefix 前缀值
+     * @param upper  上界（不含），为null时以前缀范围的末尾为界
+     * @param index  索引
+     * @return 是否越过
+     */
+    private boolean isBeyond(Object[] entry, Object[] prefix, Object[] upper, SqliteIndex index) {
+        return upper == null ? comparePrefix(entry, prefix, index) > 0 : comparePrefix(entry, upper, index) >= 0;
+    }
+
+    /**
+     * 读取表叶子页中的一行
+     *
+     * @param page  页
+     * @param cell  单元的位置
+     * @param table 表结构
+     * @return 行
+     * @throws IOException 读取异常
+     */
+    private SqliteRow readTableRow(byte[] page, int cell, SqliteTable table) throws IOException {
+        int[] position = {cell};
+        long payloadSize = readVarint(page, position);
+        long rowid = readVarint(page, position);
+        Object[] record = decodeRecord(readPayload(page, position[0], payloadSize, true));
+        // 通过 ALTER TABLE 新增的列在旧记录中不存在，使用默认值
+        int columnCount = table.getColumns().size();
+        Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = i < record.length ? record[i] : table.getDefaults().get(i);
+        }
+        if (table.getRowidColumn() >= 0 && table.getRowidColumn() < columnCount) {
+            values[table.getRowidColumn()] = rowid;
+        }
+        return new SqliteRow(rowid, values, table.getColumnIndex());
+    }
+
+    /**
+     * 读取索引页中的一条索引记录
+     *
+     * @param page     页
+     * @param cell     单元的位置
+     * @param interior 是否是内部页
+     * @return 索引记录
+     * @throws IOException 读取异常
+     */
+    private Object[] readIndexEntry(byte[] page, int cell, boolean interior) throws IOException {
+        int[] position = {interior ? cell + 4 : cell};
+        long payloadSize = readVarint(page, position);
+        return decodeRecord(readPayload(page, position[0], payloadSize, false));
+    }
+
+    /**
+     * 读取单元的负载，超出页内可存放长度的部分保存在溢出页链表中
+     *
+     * @param page        页
+     * @param offset      负载在页内的起始位置
+     * @param payloadSize 负载长度
+     * @param table       是否是表页
+     * @return 负载
+     * @throws IOException 读取异常
+     */
+    private byte[] readPayload(byte[] page, int offset, long payloadSize, boolean table) throws IOException {
+        int maxLocal = table ? usableSize - 35 : ((usableSize - 12) * 64 / 255) - 23;
+        byte[] payload = new byte[(int) payloadSize];
+        if (payloadSize <= maxLocal) {
+            System.arraycopy(page, offset, payload, 0, payload.length);
+            return payload;
+        }
+        int minLocal = ((usableSize - 12) * 32 / 255) - 23;
+        int local = (int) (minLocal + (payloadSize - minLocal) % (usableSize - 4));
+        if (local > maxLocal) {
+            local = minLocal;
+        }
+        System.arraycopy(page, offset, payload, 0, local);
+        // 依次读取溢出页，每个溢出页的前4个字节是下一页的页号
+        int overflowPage = s32(page, offset + local);
+        int copied = local;
+        while (copied < payload.length) {
+            if (overflowPage <= 0) {
+                throw new IOException("Truncated overflow chain");
+            }
+            byte[] overflow = pageCache.getPage(overflowPage);
+            int length = Math.min(usableSize - 4, payload.length - copied);
+            System.arraycopy(overflow, 4, payload, copied, length);
+            copied += length;
+            overflowPage = s32(overflow, 0);
+        }
+        return payload;
+    }
+
+    /**
+     * 解码记录
+     *
+     * @param payload 记录
+     * @return 列值，类型为 null、Long、Double、String 或 byte[]
+     */
+    private Object[] decodeRecord(byte[] payload) {
+        int[] position = {0};
+        int headerSize = (int) readVarint(payload, position);
+        List<Long> serialTypes = new ArrayList<>();
+        while (position[0] < headerSize) {
+            serialTypes.add(readVarint(payload, position));
+        }
+        Object[] values = new Object[serialTypes.size()];
+        int offset = headerSize;
+        for (int i = 0; i < values.length; i++) {
+            long serialType = serialTypes.get(i);
+            if (serialType == 0) {
+                values[i] = null;
+            } else if (serialType <= 6) {
+                int length = serialType == 5 ? 6 : serialType == 6 ? 8 : (int) serialType;
+                values[i] = readInteger(payload, offset, length);
+                offset += length;
+            } else if (serialType == 7) {
+                values[i] = Double.longBitsToDouble(readInteger(payload, offset, 8));
+                offset += 8;
+            } else if (serialType == 8 || serialType == 9) {
+                values[i] = serialType - 8;
+            } else if (serialType >= 12) {
+                int length = (int) ((serialType - 12) / 2);
+                if ((serialType & 1) == 0) {
+                    byte[] blob = new byte[length];
+                    System.arraycopy(payload, offset, blob, 0, length);
+                    values[i] = blob;
+                } else {
+                    values[i] = new String(payload, offset, length, charset);
+                }
+                offset += length;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 比较索引记录的前几列与前缀值
+     *
+     * @param entry  索引记录
+     * @param prefix 前缀值
+     * @param index  索引
+     * @return 比较结果
+     */
+    private int comparePrefix(Object[] entry, Object[] prefix, SqliteIndex index) {
+        for (int i = 0; i < prefix.length; i++) {
+            int result = compareValues(i < entry.length ? entry[i] : null, prefix[i]);
+            if (Boolean.TRUE.equals(index.getDescending().get(i))) {
+                result = -result;
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 按 SQLite 的排序规则比较两个值：NULL < 数值 < 文本 < BLOB，文本按 BINARY 规则比较
+     *
+     * @param left  左值
+     * @param right 右值
+     * @return 比较结果
+     */
+    private int compareValues(Object left, Object right) {
+        int leftRank = rank(left);
+        int rightRank = rank(right);
+        if (leftRank != rightRank) {
+            return Integer.compare(leftRank, rightRank);
+        }
+        switch (leftRank) {
+            case 1:
+                if (left instanceof Long && right instanceof Long) {
+                    return Long.compare((Long) left, (Long) right);
+                }
+                return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+            case 2:
+                return compareBytes(((String) left).getBytes(charset), ((String) right).getBytes(charset));
+            case 3:
+                return compareBytes((byte[]) left, (byte[]) right);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 值的类型顺序
+     *
+     * @param value 值
+     * @return 类型顺序
+     */
+    private static int rank(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return 1;
+        }
+        return value instanceof String ? 2 : 3;
+    }
+
+    /**
+     * 按无符号字节比较
+     *
+     * @param left  左值
+     * @param right 右值
+     * @return 比较结果
+     */
+    private static int compareBytes(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int result = (left[i] & 0xFF) - (right[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    /**
+     * 将调用方传入的一组值转换为记录中使用的类型
+     *
+     * @param values 值
+     * @return 转换后的值
+     */
+    private static Object[] normalize(Object[] values) {
+        Object[] normalized = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            normalized[i] = normalize(values[i]);
+        }
+        return normalized;
+    }
+
+    /**
+     * 将调用方传入的值转换为记录中使用的类型
+     *
+     * @param value 值
+     * @return 转换后的值
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        return value;
+    }
+
+    /**
+     * 校验页类型
+     *
+     * @param type     实际类型
+     * @param expected 期望类型
+     * @param pageNo   页号
+     * @throws IOException 页类型不正确
+     */
+    private static void checkType(int type, int expected, int pageNo) throws IOException {
+        if (type != expected) {
+            throw new IOException("Unexpected page type " + type + " at page " + pageNo);
+        }
+    }
+
+    /**
+     * 读取变长整数
+     *
+     * @param buffer   缓冲区
+     * @param position 读取位置，读取后向后移动
+     * @return 值
+     */
+    private static long readVarint(byte[] buffer, int[] position) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int b = buffer[position[0]++] & 0xFF;
+            value = (value << 7) | (b & 0x7F);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return (value << 8) | (buffer[position[0]++] & 0xFF);
+    }
+
+    /**
+     * 读取大端有符号整数
+     *
+     * @param buffer 缓冲区
+     * @param offset 起始位置
+     * @param length 字节数
+     * @return 值
+     */
+    private static long readInteger(byte[] buffer, int offset, int length) {
+        // 第一个字节带符号
+        long value = buffer[offset];
+        for (int i = 1; i < length; i++) {
+            value = (value << 8) | (buffer[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 读取大端无符号双字节整数
+     *
+     * @param buffer 缓冲区
+     * @param offset 起始位置
+     * @return 值
+     */
+    private static int u16(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+    }
+
+    /**
+     * 读取大端四字节整数
+     *
+     * @param buffer 缓冲区
+     * @param offset 起始位置
+     * @return 值
+     */
+    private static int s32(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    @Override
+    public void close() throws IOException {
+        pageCache.close();
+    }
+
+    /**
+     * 索引记录访问者
+     */
+    @FunctionalInterface
+    private interface IndexVisitor {
+
+        /**
+         * 访问一条索引记录
+         *
+         * @param entry 索引记录（索引列 + rowid）
+         * @return 是否继续
+         * @throws IOException 读取异常
+         */
+        boolean visit(Object[] entry) throws IOException;
+    }
+}
@@ -0,0 +1,75 @@
+package com.xcs.wx.sqlite;
+
+import java.util.Map;
+
+/**
+ * 表中的一行
+ *
+ * @author xcs
+ * @date 2024年7月5日15:34:09
+ */
+public class SqliteRow {
+
+    /**
+     * rowid
+     */
+    private final long rowid;
+
+    /**
+     * 按表定义顺序排列的列值，类型为 null、Long、Double、String 或 byte[]
+     */
+    private final Object[] values;
+
+    /**
+     * 列名（小写）与下标的映射
+     */
+    private final Map<String, Integer> columnIndex;
+
+    SqliteRow(long rowid, Object[] values, Map<String, Integer> columnIndex) {
+        this.rowid = rowid;
+        this.values = values;
+        this.columnIndex = columnIndex;
+    }
+
+    /**
+     * 获取rowid
+     *
+     * @return rowid
+     */
+    public long getRowid() {
+        return rowid;
+    }
+
+    /**
+     * 按列名获取值，列名不区分大小写
+     *
+     * @param column 列名
+     * @return 值，列不存在时返回null
+     */
+    public Object get(String column) {
+        Integer index = columnIndex.get(column.toLowerCase());
+        return index == null ? null : values[index];
+    }
+
+    /**
+     * 按列名获取整数值
+     *
+     * @param column 列名
+     * @return 整数值，为空时返回null
+     */
+    public Long getLong(String column) {
+        Object value = get(column);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    /**
+     * 按列名获取文本值
+     *
+     * @param column 列名
+     * @return 文本值，为空时返回null
+     */
+    public String getString(String column) {
+        Object value = get(column);
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,355 @@
+package com.xcs.wx.sqlite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 解析 sqlite_master 中的建表与建索引语句，只识别读取数据需要的部分：列名、INTEGER PRIMARY KEY、
+ * 默认值、PRIMARY KEY/UNIQUE 约束以及索引列
+ *
+ * @author xcs
+ * @date 2024年7月5日15:52:17
+ */
+final class SqliteSchemaParser {
+
+    /**
+     * 表级约束的关键字
+     */
+    private static final List<String> TABLE_CONSTRAINTS = Arrays.asList("CONSTRAINT", "PRIMARY", "UNIQUE", "CHECK", "FOREIGN");
+
+    /**
+     * 列约束的关键字，类型名在遇到这些关键字时结束
+     */
+    private static final List<String> COLUMN_CONSTRAINTS = Arrays.asList("CONSTRAINT", "PRIMARY", "NOT", "NULL", "UNIQUE", "CHECK",
+            "DEFAULT", "COLLATE", "REFERENCES", "GENERATED", "AS");
+
+    private SqliteSchemaParser() {
+    }
+
+    /**
+     * 解析建表语句
+     *
+     * @param name     表名
+     * @param rootPage 根页号
+     * @param sql      建表语句
+     * @return 表结构
+     */
+    static SqliteTable parseTable(String name, int rootPage, String sql) {
+        SqliteTable table = new SqliteTable();
+        table.setName(name);
+        table.setRootPage(rootPage);
+        List<String> tokens = tokenize(sql);
+        int open = tokens.indexOf("(");
+        int close = matchParen(tokens, open);
+        // 括号后面的表选项
+        for (int i = close + 1; i + 1 < tokens.size(); i++) {
+            if ("WITHOUT".equalsIgnoreCase(tokens.get(i)) && "ROWID".equalsIgnoreCase(tokens.get(i + 1))) {
+                table.setWithoutRowid(true);
+            }
+        }
+        for (List<String> definition : splitTopLevel(tokens, open + 1, close)) {
+            if (definition.isEmpty()) {
+                continue;
+            }
+            String first = definition.get(0).toUpperCase(Locale.ROOT);
+            if (TABLE_CONSTRAINTS.contains(first)) {
+                parseTableConstraint(table, definition);
+            } else {
+                parseColumn(table, definition);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 解析建索引语句
+     *
+     * @param name      索引名称
+     * @param tableName 表名
+     * @param rootPage  根页号
+     * @param sql       建索引语句
+     * @return 索引结构
+     */
+    static SqliteIndex parseIndex(String name, String tableName, int rootPage, String sql) {
+        SqliteIndex index = new SqliteIndex();
+        index.setName(name);
+        index.setTableName(tableName);
+        index.setRootPage(rootPage);
+        List<String> tokens = tokenize(sql);
+        int open = tokens.indexOf("(");
+        int close = matchParen(tokens, open);
+        // 部分索引只包含部分行，不能用于查找
+        if (close + 1 < tokens.size() && "WHERE".equalsIgnoreCase(tokens.get(close + 1))) {
+            index.setSeekable(false);
+        }
+        for (List<String> column : splitTopLevel(tokens, open + 1, close)) {
+            index.getColumns().add(column.isEmpty() ? "" : unquote(column.get(0)));
+            boolean descending = false;
+            for (int i = 1; i < column.size(); i++) {
+                String token = column.get(i).toUpperCase(Locale.ROOT);
+                if ("DESC".equals(token)) {
+                    descending = true;
+                } else if ("COLLATE".equals(token) && i + 1 < column.size() && "BINARY".equalsIgnoreCase(column.get(i + 1))) {
+                    i++;
+                } else if (!"ASC".equals(token)) {
+                    // 表达式索引或者其他排序规则
+                    index.setSeekable(false);
+                }
+            }
+            index.getDescending().add(descending);
+        }
+        return index;
+    }
+
+    /**
+     * 根据表的约束生成自动索引，自动索引在 sqlite_master 中没有语句，名称为 sqlite_autoindex_表名_序号
+     *
+     * @param name     索引名称
+     * @param table    表结构
+     * @param rootPage 根页号
+     * @return 索引结构，无法对应到约束时返回null
+     */
+    static SqliteIndex parseAutoIndex(String name, SqliteTable table, int rootPage) {
+        int number;
+        try {
+            number = Integer.parseInt(name.substring(name.lastIndexOf('_') + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (number < 1 || number > table.getUniqueConstraints().size()) {
+            return null;
+        }
+        SqliteIndex index = new SqliteIndex();
+        index.setName(name);
+        index.setTableName(table.getName());
+        index.setRootPage(rootPage);
+        for (String column : table.getUniqueConstraints().get(number - 1)) {
+            index.getColumns().add(column);
+            index.getDescending().add(false);
+        }
+        return index;
+    }
+
+    /**
+     * 解析列定义
+     *
+     * @param table      表结构
+     * @param definition 列定义
+     */
+    private static void parseColumn(SqliteTable table, List<String> definition) {
+        String column = unquote(definition.get(0));
+        int columnIndex = table.getColumns().size();
+        // 类型名
+        StringBuilder type = new StringBuilder();
+        int i = 1;
+        while (i < definition.size() && !COLUMN_CONSTRAINTS.contains(definition.get(i).toUpperCase(Locale.ROOT))) {
+            if (!"(".equals(definition.get(i))) {
+                type.append(definition.get(i).toUpperCase(Locale.ROOT));
+            } else {
+                i = matchParen(definition, i);
+            }
+            i++;
+        }
+        Object defaultValue = null;
+        for (; i < definition.size(); i++) {
+            String token = definition.get(i).toUpperCase(Locale.ROOT);
+            if ("PRIMARY".equals(token)) {
+                boolean descending = i + 2 < definition.size() && "DESC".equalsIgnoreCase(definition.get(i + 2));
+                // INTEGER PRIMARY KEY 是rowid的别名，值不保存在记录中
+                if ("INTEGER".contentEquals(type) && !descending) {
+                    table.setRowidColumn(columnIndex);
+                } else {
+                    table.getUniqueConstraints().add(new ArrayList<>(Arrays.asList(column)));
+                }
+            } else if ("UNIQUE".equals(token)) {
+                table.getUniqueConstraints().add(new ArrayList<>(Arrays.asList(column)));
+            } else if ("DEFAULT".equals(token) && i + 1 < definition.size()) {
+                defaultValue = parseLiteral(definition, i + 1);
+            }
+        }
+        table.getColumns().add(column);
+        table.getTypes().add(type.toString());
+        table.getDefaults().add(defaultValue);
+        table.getColumnIndex().put(column.toLowerCase(Locale.ROOT), columnIndex);
+    }
+
+    /**
+     * 解析表级的 PRIMARY KEY 与 UNIQUE 约束
+     *
+     * @param table      表结构
+     * @param definition 约束定义
+     */
+    private static void parseTableConstraint(SqliteTable table, List<String> definition) {
+        for (int i = 0; i < definition.size(); i++) {
+            String token = definition.get(i).toUpperCase(Locale.ROOT);
+            if (!"PRIMARY".equals(token) && !"UNIQUE".equals(token)) {
+                continue;
+            }
+            int open = definition.subList(i, definition.size()).indexOf("(");
+            if (open < 0) {
+                return;
+            }
+            open += i;
+            List<String> columns = new ArrayList<>();
+            for (List<String> column : splitTopLevel(definition, open + 1, matchParen(definition, open))) {
+                if (!column.isEmpty()) {
+                    columns.add(unquote(column.get(0)));
+                }
+            }
+            // 单列的 INTEGER PRIMARY KEY 是rowid的别名，不会生成自动索引
+            if ("PRIMARY".equals(token) && columns.size() == 1) {
+                Integer columnIndex = table.getColumnIndex().get(columns.get(0).toLowerCase(Locale.ROOT));
+                if (columnIndex != null && "INTEGER".equals(table.getTypes().get(columnIndex))) {
+                    table.setRowidColumn(columnIndex);
+                    return;
+                }
+            }
+            table.getUniqueConstraints().add(columns);
+            return;
+        }
+    }
+
+    /**
+     * 解析默认值中的字面量
+     *
+     * @param tokens 分词
+     * @param start  字面量开始的位置
+     * @return 字面量的值，无法解析的表达式返回null
+     */
+    private static Object parseLiteral(List<String> tokens, int start) {
+        String token = tokens.get(start);
+        boolean negative = false;
+        if (("-".equals(token) || "+".equals(token)) && start + 1 < tokens.size()) {
+            negative = "-".equals(token);
+            token = tokens.get(start + 1);
+        }
+        if (token.startsWith("'")) {
+            return token.substring(1, token.length() - 1).replace("''", "'");
+        }
+        try {
+            long value = Long.parseLong(token);
+            return negative ? -value : value;
+        } catch (NumberFormatException ignore) {
+        }
+        try {
+            double value = Double.parseDouble(token);
+            return negative ? -value : value;
+        } catch (NumberFormatException ignore) {
+        }
+        return null;
+    }
+
+    /**
+     * 分词，括号与逗号作为单独的词，字符串字面量保留单引号，标识符保留原始的引号
+     *
+     * @param sql 语句
+     * @return 分词结果
+     */
+    private static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',' || c == '-' || c == '+') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                char end = c == '[' ? ']' : c;
+                int j = i + 1;
+                while (j < length) {
+                    if (sql.charAt(j) == end) {
+                        // 连续两个引号表示转义
+                        if (end != ']' && j + 1 < length && sql.charAt(j + 1) == end) {
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                tokens.add(sql.substring(i, Math.min(j + 1, length)));
+                i = j + 1;
+            } else {
+                int j = i;
+                while (j < length && !Character.isWhitespace(sql.charAt(j)) && "(),'\"`[".indexOf(sql.charAt(j)) < 0) {
+                    j++;
+                }
+                tokens.add(sql.substring(i, j));
+                i = j;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 按顶层的逗号拆分括号内的内容
+     *
+     * @param tokens 分词
+     * @param from   开始位置（包含）
+     * @param to     结束位置（不包含）
+     * @return 拆分结果
+     */
+    private static List<List<String>> splitTopLevel(List<String> tokens, int from, int to) {
+        List<List<String>> parts = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            String token = tokens.get(i);
+            if ("(".equals(token)) {
+                depth++;
+            } else if (")".equals(token)) {
+                depth--;
+            } else if (",".equals(token) && depth == 0) {
+                parts.add(current);
+                current = new ArrayList<>();
+                continue;
+            }
+            current.add(token);
+        }
+        parts.add(current);
+        return parts;
+    }
+
+    /**
+     * 查找与左括号匹配的右括号
+     *
+     * @param tokens 分词
+     * @param open   左括号的位置
+     * @return 右括号的位置，不存在时返回分词的数量
+     */
+    private static int matchParen(List<String> tokens, int open) {
+        int depth = 0;
+        for (int i = Math.max(open, 0); i < tokens.size(); i++) {
+            if ("(".equals(tokens.get(i))) {
+                depth++;
+            } else if (")".equals(tokens.get(i)) && --depth == 0) {
+                return i;
+            }
+        }
+        return tokens.size();
+    }
+
+    /**
+     * 去掉标识符的引号
+     *
+     * @param identifier 标识符
+     * @return 去掉引号后的标识符
+     */
+    private static String unquote(String identifier) {
+        if (identifier.length() >= 2) {
+            char first = identifier.charAt(0);
+            if (first == '"' || first == '`' || first == '\'') {
+                return identifier.substring(1, identifier.length() - 1).replace(String.valueOf(first) + first, String.valueOf(first));
+            }
+            if (first == '[') {
+                return identifier.substring(1, identifier.length() - 1);
+            }
+        }
+        return identifier;
+    }
+}
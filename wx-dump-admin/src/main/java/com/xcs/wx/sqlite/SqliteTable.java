@@ -0,0 +1,63 @@
+package com.xcs.wx.sqlite;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表结构，由 sqlite_master 中的建表语句解析得到
+ *
+ * @author xcs
+ * @date 2024年7月5日15:38:52
+ */
+@Data
+public class SqliteTable {
+
+    /**
+     * 表名
+     */
+    private String name;
+
+    /**
+     * B-tree根页号
+     */
+    private int rootPage;
+
+    /**
+     * 列名，按定义顺序排列
+     */
+    private List<String> columns = new ArrayList<>();
+
+    /**
+     * 列的声明类型（大写）
+     */
+    private List<String> types = new ArrayList<>();
+
+    /**
+     * 列的默认值，通过 ALTER TABLE 新增的列在旧记录中不存在，读取时使用默认值
+     */
+    private List<Object> defaults = new ArrayList<>();
+
+    /**
+     * 列名（小写）与下标的映射
+     */
+    private Map<String, Integer> columnIndex = new HashMap<>();
+
+    /**
+     * INTEGER PRIMARY KEY 列的下标，该列的值就是rowid，-1表示没有
+     */
+    private int rowidColumn = -1;
+
+    /**
+     * 是否是 WITHOUT ROWID 表
+     */
+    private boolean withoutRowid;
+
+    /**
+     * PRIMARY KEY 与 UNIQUE 约束的列，按定义顺序对应 sqlite_autoindex_表名_N
+     */
+    private List<List<String>> uniqueConstraints = new ArrayList<>();
+}
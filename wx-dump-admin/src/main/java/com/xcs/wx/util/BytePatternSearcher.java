@@ -0,0 +1,217 @@
+package com.xcs.wx.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 字节模式查找器
+ * <p>
+ * 使用 Horspool 算法：以窗口最后一个字节查坏字符表决定跳过的距离，
+ * 候选位置再以 8 字节为单位（带掩码）比较，尾部不足 8 字节的部分逐字节比较。
+ * 支持通配字节，通配位置匹配任意值。构造完成后只读，可以在多个线程中共享。
+ *
+ * @author xcs
+ * @date 2024年7月11日14:10:52
+ */
+public class BytePatternSearcher {
+
+    /**
+     * 通配字节在特征码字符串中的写法
+     */
+    private static final String WILDCARD = "??";
+
+    /**
+     * 模式长度
+     */
+    private final int length;
+
+    /**
+     * 模式字节，通配位置为0
+     */
+    private final byte[] pattern;
+
+    /**
+     * 掩码，非通配位置为0xFF，通配位置为0
+     */
+    private final byte[] mask;
+
+    /**
+     * 按 8 字节分组的模式与掩码（小端序）
+     */
+    private final long[] patternWords;
+    private final long[] maskWords;
+
+    /**
+     * 坏字符跳转表
+     */
+    private final int[] shift = new int[256];
+
+    /**
+     * 精确匹配的模式
+     *
+     * @param pattern 模式字节
+     */
+    public BytePatternSearcher(byte[] pattern) {
+        this(pattern, null);
+    }
+
+    /**
+     * 带通配字节的模式
+     *
+     * @param pattern  模式字节
+     * @param wildcard 通配位置，为null时表示没有通配字节
+     */
+    public BytePatternSearcher(byte[] pattern, boolean[] wildcard) {
+        if (pattern == null || pattern.length == 0) {
+            throw new IllegalArgumentException("pattern is empty");
+        }
+        if (wildcard != null && wildcard.length != pattern.length) {
+            throw new IllegalArgumentException("wildcard length mismatch");
+        }
+        this.length = pattern.length;
+        this.pattern = new byte[length];
+        this.mask = new byte[length];
+        for (int i = 0; i < length; i++) {
+            boolean any = wildcard != null && wildcard[i];
+            this.mask[i] = any ? 0 : (byte) 0xFF;
+            this.pattern[i] = any ? 0 : pattern[i];
+        }
+
+        // 按 8 字节分组，便于候选位置整字比较
+        int words = length >>> 3;
+        this.patternWords = new long[words];
+        this.maskWords = new long[words];
+        ByteBuffer patternBuffer = ByteBuffer.wrap(this.pattern).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer maskBuffer = ByteBuffer.wrap(this.mask).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < words; i++) {
+            patternWords[i] = patternBuffer.getLong(i << 3);
+            maskWords[i] = maskBuffer.getLong(i << 3);
+        }
+
+        // 最后一个通配位置之后才能安全跳过，通配位置可以与任意字节对齐
+        int defaultShift = length;
+        for (int i = 0; i < length - 1; i++) {
+            if (this.mask[i] == 0) {
+                defaultShift = length - 1 - i;
+            }
+        }
+        for (int c = 0; c < shift.length; c++) {
+            shift[c] = defaultShift;
+        }
+        for (int i = 0; i < length - 1; i++) {
+            if (this.mask[i] != 0) {
+                int distance = length - 1 - i;
+                int index = this.pattern[i] & 0xFF;
+                shift[index] = Math.min(shift[index], distance);
+            }
+        }
+    }
+
+    /**
+     * 解析特征码字符串，如 "69 70 ?? 6F 6E 65"，"??" 表示通配字节
+     *
+     * @param signature 以空白分隔的十六进制字节
+     * @return 查找器
+     */
+    public static BytePatternSearcher parse(String signature) {
+        String[] tokens = signature.trim().split("\\s+");
+        byte[] pattern = new byte[tokens.length];
+        boolean[] wildcard = new boolean[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            if (WILDCARD.equals(tokens[i]) || "?".equals(tokens[i])) {
+                wildcard[i] = true;
+            } else {
+                pattern[i] = (byte) Integer.parseInt(tokens[i], 16);
+            }
+        }
+        return new BytePatternSearcher(pattern, wildcard);
+    }
+
+    /**
+     * 模式长度
+     *
+     * @return 模式长度
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 查找第一个匹配位置
+     *
+     * @param data 待查找的字节数组
+     * @param from 起始位置（包含）
+     * @param to   结束位置（不包含）
+     * @return 匹配的起始位置，未找到时返回-1
+     */
+    public int indexOf(byte[] data, int from, int to) {
+        IntList matches = new IntList(1);
+        search(data, from, to, 1, matches);
+        return matches.isEmpty() ? -1 : matches.get(0);
+    }
+
+    /**
+     * 查找所有匹配位置
+     *
+     * @param data 待查找的字节数组
+     * @return 匹配的起始位置
+     */
+    public int[] findAll(byte[] data) {
+        IntList matches = new IntList();
+        search(data, 0, data.length, Integer.MAX_VALUE, matches);
+        return matches.toArray();
+    }
+
+    /**
+     * 在指定范围内查找匹配位置，结果追加到 matches
+     *
+     * @param data    待查找的字节数组
+     * @param from    起始位置（包含）
+     * @param to      结束位置（不包含）
+     * @param limit   最多追加的匹配数量
+     * @param matches 匹配的起始位置
+     * @return 本次追加的匹配数量
+     */
+    public int search(byte[] data, int from, int to, int limit, IntList matches) {
+        int found = 0;
+        if (to - from < length || limit <= 0) {
+            return found;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int last = length - 1;
+        byte lastByte = pattern[last];
+        boolean lastAny = mask[last] == 0;
+        int end = to - length;
+        int i = from;
+        while (i <= end) {
+            byte b = data[i + last];
+            // 先比较窗口末尾字节，不相等时直接按坏字符表跳过
+            if ((lastAny || b == lastByte) && matchesAt(buffer, data, i)) {
+                matches.add(i);
+                if (++found >= limit) {
+                    break;
+                }
+            }
+            i += shift[b & 0xFF];
+        }
+        return found;
+    }
+
+    /**
+     * 比较候选位置
+     */
+    private boolean matchesAt(ByteBuffer buffer, byte[] data, int offset) {
+        int words = patternWords.length;
+        for (int w = 0; w < words; w++) {
+            if ((buffer.getLong(offset + (w << 3)) & maskWords[w]) != patternWords[w]) {
+                return false;
+            }
+        }
+        for (int j = words << 3; j < length; j++) {
+            if ((data[offset + j] & mask[j]) != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package com.xcs.wx.util;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import com.sun.jna.platform.win32.Crypt32Util;
+import com.sun.jna.platform.win32.WinCrypt;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 解密密钥工具类，保存每个账号校验通过的密钥，下次解密时先校验保存的密钥，避免扫描进程内存
+ * <p>
+ * 密钥经 DPAPI 以当前 Windows 用户的身份加密后保存，并以 wxId 作为附加熵，
+ * 其他用户或者其他账号的目录下无法解出。
+ *
+ * @author xcs
+ * @date 2024年7月12日10:16:38
+ */
+@Slf4j
+public class DecryptKeyUtil {
+
+    /**
+     * DPAPI 描述
+     */
+    private static final String DESCRIPTION = "wx-dump key";
+
+    private DecryptKeyUtil() {
+    }
+
+    /**
+     * 读取账号保存的密钥
+     *
+     * @param wxId wxId
+     * @return 十六进制密钥，不存在或解密失败时返回null
+     */
+    public static String read(String wxId) {
+        String keyDir = DirUtil.getKeyDir(wxId);
+        // 不存在的情况下返回null
+        if (!FileUtil.exist(keyDir)) {
+            return null;
+        }
+        try {
+            byte[] protectedKey = Base64.decode(FileUtil.readUtf8String(keyDir).trim());
+            byte[] key = Crypt32Util.cryptUnprotectData(protectedKey, entropy(wxId), WinCrypt.CRYPTPROTECT_UI_FORBIDDEN, null);
+            return HexUtil.encodeHexStr(key);
+        } catch (Exception e) {
+            log.warn("Failed to read the saved key of {}, the key will be searched again", wxId, e);
+        }
+        return null;
+    }
+
+    /**
+     * 保存账号的密钥
+     *
+     * @param wxId wxId
+     * @param key  十六进制密钥
+     */
+    public static void write(String wxId, String key) {
+        try {
+            byte[] protectedKey = Crypt32Util.cryptProtectData(HexUtil.decodeHex(key), entropy(wxId),
+                    WinCrypt.CRYPTPROTECT_UI_FORBIDDEN, DESCRIPTION, null);
+            FileUtil.writeString(Base64.encode(protectedKey), DirUtil.getKeyDir(wxId), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log.warn("Failed to save the key of {}", wxId, e);
+        }
+    }
+
+    /**
+     * 删除账号保存的密钥
+     *
+     * @param wxId wxId
+     */
+    public static void delete(String wxId) {
+        FileUtil.del(DirUtil.getKeyDir(wxId));
+    }
+
+    /**
+     * 附加熵，使密钥只能在对应账号下解出
+     *
+     * @param wxId wxId
+     * @return 附加熵
+     */
+    private static byte[] entropy(String wxId) {
+        return wxId.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.xcs.wx.util;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import com.xcs.wx.domain.bo.FileFingerprintBO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 解密清单工具类，记录每个加密数据库上次解密时的文件指纹，用于跳过未变化的数据库
+ *
+ * @author xcs
+ * @date 2024年7月4日10:21:05
+ */
+@Slf4j
+public class DecryptManifestUtil {
+
+    private DecryptManifestUtil() {
+    }
+
+    /**
+     * 读取账号的解密清单
+     *
+     * @param wxId wxId
+     * @return 文件名称与文件指纹的映射
+     */
+    public static Map<String, FileFingerprintBO> read(String wxId) {
+        Map<String, FileFingerprintBO> manifest = new ConcurrentHashMap<>();
+        String manifestDir = DirUtil.getManifestDir(wxId);
+        // 不存在的情况下返回空清单
+        if (!FileUtil.exist(manifestDir)) {
+            return manifest;
+        }
+        try {
+            List<FileFingerprintBO> fingerprints = JSONUtil.toList(FileUtil.readUtf8String(manifestDir), FileFingerprintBO.class);
+            fingerprints.forEach(fingerprint -> manifest.put(fingerprint.getFileName(), fingerprint));
+        } catch (Exception e) {
+            log.warn("Failed to read the decrypt manifest, all databases will be decrypted again", e);
+        }
+        return manifest;
+    }
+
+    /**
+     * 保存账号的解密清单，多个文件并行解密时串行写入，后写入的清单包含之前的全部修改
+     *
+     * @param wxId     wxId
+     * @param manifest 文件名称与文件指纹的映射
+     */
+    public static synchronized void write(String wxId, Map<String, FileFingerprintBO> manifest) {
+        List<FileFingerprintBO> fingerprints = manifest.values().stream()
+                .sorted((o1, o2) -> o1.getFileName().compareTo(o2.getFileName()))
+                .collect(Collectors.toList());
+        FileUtil.writeString(JSONUtil.toJsonPrettyStr(fingerprints), DirUtil.getManifestDir(wxId), "UTF-8");
+    }
+
+    /**
+     * 计算加密数据库的文件指纹
+     *
+     * @param file 加密数据库
+     * @return 文件指纹，读取失败时返回null
+     */
+    public static FileFingerprintBO fingerprint(File file) {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // 读取第一页
+            byte[] firstPage = new byte[(int) Math.min(SqlCipherUtil.DEFAULT_PAGESIZE, randomAccessFile.length())];
+            randomAccessFile.readFully(firstPage);
+            // 提取盐值
+            byte[] salt = Arrays.copyOfRange(firstPage, 0, Math.min(SqlCipherUtil.SALT_SIZE, firstPage.length));
+            return new FileFingerprintBO(FileUtil.getName(file), randomAccessFile.length(), file.lastModified(),
+                    HexUtil.encodeHexStr(salt), DigestUtil.sha256Hex(firstPage));
+        } catch (IOException e) {
+            log.warn("Failed to fingerprint {}", file, e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.xcs.wx.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据库解密状态，记录正在等待解密的数据源，解密完成前对应的Repository不可用
+ *
+ * @author xcs
+ * @date 2024年7月5日09:42:11
+ */
+public class DecryptStateHolder {
+
+    /**
+     * 等待解密的数据源名称
+     */
+    private static final Set<String> PENDING = ConcurrentHashMap.newKeySet();
+
+    private DecryptStateHolder() {
+    }
+
+    /**
+     * 标记数据库等待解密
+     *
+     * @param wxId   wxId
+     * @param dbName 数据库名
+     */
+    public static void markPending(String wxId, String dbName) {
+        PENDING.add(DSNameUtil.getDSName(wxId, dbName));
+    }
+
+    /**
+     * 标记数据库已处理完成，无论解密成功与否
+     *
+     * @param wxId   wxId
+     * @param dbName 数据库名
+     */
+    public static void markDone(String wxId, String dbName) {
+        PENDING.remove(DSNameUtil.getDSName(wxId, dbName));
+    }
+
+    /**
+     * 数据源是否在等待解密
+     *
+     * @param dsName 数据源名称
+     * @return 是否在等待解密
+     */
+    public static boolean isPending(String dsName) {
+        return PENDING.contains(dsName);
+    }
+}
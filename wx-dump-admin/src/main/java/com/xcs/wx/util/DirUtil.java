@@ -45,6 +45,16 @@ public class DirUtil {
      */
     private static final String USER_CONFIG = "User.config";
 
+    /**
+     * Manifest.config
+     */
+    private static final String MANIFEST_CONFIG = "Manifest.config";
+
+    /**
+     * Key.config
+     */
+    private static final String KEY_CONFIG = "Key.config";
+
     /**
      * SwitchUser.config
      */
@@ -111,6 +121,24 @@ public class DirUtil {
         return USER_DIR + SEPARATOR + DATA + SEPARATOR + DB + SEPARATOR + wxId + SEPARATOR + USER_CONFIG;
     }
 
+    /**
+     * 获取解密清单目录
+     *
+     * @return 目录
+     */
+    public static String getManifestDir(String wxId) {
+        return USER_DIR + SEPARATOR + DATA + SEPARATOR + DB + SEPARATOR + wxId + SEPARATOR + MANIFEST_CONFIG;
+    }
+
+    /**
+     * 获取密钥配置目录
+     *
+     * @return 目录
+     */
+    public static String getKeyDir(String wxId) {
+        return USER_DIR + SEPARATOR + DATA + SEPARATOR + DB + SEPARATOR + wxId + SEPARATOR + KEY_CONFIG;
+    }
+
     /**
      * 获取数据库目录
      *
@@ -0,0 +1,96 @@
+package com.xcs.wx.util;
+
+import java.util.Arrays;
+
+/**
+ * 可增长的 int 列表
+ * <p>
+ * 按倍数扩容，避免装箱，也避免每次追加都复制整个数组。
+ *
+ * @author xcs
+ * @date 2024年7月11日14:02:37
+ */
+public class IntList {
+
+    /**
+     * 默认容量
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * 元素
+     */
+    private int[] elements;
+
+    /**
+     * 元素数量
+     */
+    private int size;
+
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntList(int capacity) {
+        this.elements = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * 追加元素
+     *
+     * @param value 元素
+     */
+    public void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length << 1);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * 获取元素
+     *
+     * @param index 下标
+     * @return 元素
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return elements[index];
+    }
+
+    /**
+     * 元素数量
+     *
+     * @return 元素数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否为空
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 清空元素，保留已分配的容量以便复用
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 转换为数组
+     *
+     * @return 元素数组
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
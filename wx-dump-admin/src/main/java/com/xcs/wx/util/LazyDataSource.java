@@ -0,0 +1,253 @@
+package com.xcs.wx.util;
+
+import cn.hutool.core.io.IoUtil;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.baomidou.dynamic.datasource.ds.AbstractDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 延迟创建的数据源，注册时只占一个名称，第一次获取连接时才创建真正的连接池，空闲超时后关闭连接池，再次访问时重新创建
+ *
+ * @author xcs
+ * @date 2024年7月16日10:42:18
+ */
+@Slf4j
+public class LazyDataSource extends AbstractDataSource implements Closeable {
+
+    /**
+     * 数据源名称
+     */
+    private final String name;
+
+    /**
+     * 创建连接池之前执行，不持有当前数据源的锁，例如为新连接池腾出连接预算
+     */
+    private final Runnable beforeCreate;
+
+    /**
+     * 创建真正的连接池
+     */
+    private final Supplier<DataSource> creator;
+
+    /**
+     * 当前的连接池，未创建或已因空闲关闭时为null
+     */
+    private volatile DataSource delegate;
+
+    /**
+     * 最后一次获取连接的时间
+     */
+    private volatile long lastAccessTime = System.currentTimeMillis();
+
+    /**
+     * 数据源是否已被移除或替换
+     */
+    private volatile boolean closed;
+
+    /**
+     * 获取连接时持有读锁，关闭连接池时持有写锁，避免刚取到的连接池被关闭
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public LazyDataSource(String name, Runnable beforeCreate, Supplier<DataSource> creator) {
+        this.name = name;
+        this.beforeCreate = beforeCreate;
+        this.creator = creator;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        lastAccessTime = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            return connect(obtain(), username, password);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 数据源名称
+     *
+     * @return 数据源名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 最后一次获取连接的时间
+     *
+     * @return 时间戳，单位：毫秒
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * 连接池是否已创建
+     *
+     * @return 是否已创建
+     */
+    public boolean isInitialized() {
+        return delegate != null;
+    }
+
+    /**
+     * 连接池中的物理连接数量，包括空闲与借出的连接
+     *
+     * @return 连接数量
+     */
+    public int getConnectionCount() {
+        DruidDataSource druidDataSource = unwrapDruid(delegate);
+        return druidDataSource == null ? 0 : druidDataSource.getPoolingCount() + druidDataSource.getActiveCount();
+    }
+
+    /**
+     * 连接池中借出的连接数量
+     *
+     * @return 借出的连接数量
+     */
+    public int getActiveCount() {
+        DruidDataSource druidDataSource = unwrapDruid(delegate);
+        return druidDataSource == null ? 0 : druidDataSource.getActiveCount();
+    }
+
+    /**
+     * 关闭超出minIdle的空闲连接，最久未使用的连接先关闭
+     *
+     * @return 关闭的连接数量
+     */
+    public int shrink() {
+        DruidDataSource druidDataSource = unwrapDruid(delegate);
+        if (druidDataSource == null) {
+            return 0;
+        }
+        int before = druidDataSource.getPoolingCount();
+        druidDataSource.shrink(false, false);
+        return before - druidDataSource.getPoolingCount();
+    }
+
+    /**
+     * 空闲超过指定时间且没有借出的连接时关闭连接池
+     *
+     * @param idleTimeout 空闲时间，单位：毫秒
+     * @return 是否已关闭
+     */
+    public boolean closeIfIdle(long idleTimeout) {
+        // 正在获取连接时不关闭
+        if (!lock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            DataSource dataSource = delegate;
+            if (dataSource == null || System.currentTimeMillis() - lastAccessTime < idleTimeout) {
+                return false;
+            }
+            // 还有借出的连接时不关闭
+            DruidDataSource druidDataSource = unwrapDruid(dataSource);
+            if (druidDataSource != null && druidDataSource.getActiveCount() > 0) {
+                return false;
+            }
+            delegate = null;
+            IoUtil.close(asCloseable(dataSource));
+            log.info("Closed idle data source {}", name);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            DataSource dataSource = delegate;
+            delegate = null;
+            if (dataSource != null) {
+                IoUtil.close(asCloseable(dataSource));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取当前的连接池，不存在时创建
+     *
+     * @return 连接池
+     * @throws SQLException 数据源已被移除
+     */
+    private DataSource obtain() throws SQLException {
+        DataSource dataSource = delegate;
+        if (dataSource != null) {
+            return dataSource;
+        }
+        beforeCreate.run();
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Data source has been closed: " + name);
+            }
+            if (delegate == null) {
+                long start = System.currentTimeMillis();
+                delegate = creator.get();
+                log.info("Created data source {} in {} ms", name, System.currentTimeMillis() - start);
+            }
+            return delegate;
+        }
+    }
+
+    /**
+     * 从连接池获取连接
+     *
+     * @param dataSource 连接池
+     * @param username   用户名，为null时使用连接池的配置
+     * @param password   密码
+     * @return 连接
+     * @throws SQLException 获取连接失败
+     */
+    private static Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    /**
+     * 获取包装的DruidDataSource
+     *
+     * @param dataSource 连接池
+     * @return DruidDataSource，连接池不存在或者不是Druid时为null
+     */
+    private static DruidDataSource unwrapDruid(DataSource dataSource) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(DruidDataSource.class)) {
+                return dataSource.unwrap(DruidDataSource.class);
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to unwrap druid data source", e);
+        }
+        return null;
+    }
+
+    /**
+     * 连接池的关闭方法，ItemDataSource与DruidDataSource都实现了Closeable
+     *
+     * @param dataSource 连接池
+     * @return Closeable，不支持关闭时为null
+     */
+    private static Closeable asCloseable(DataSource dataSource) {
+        return dataSource instanceof Closeable ? (Closeable) dataSource : null;
+    }
+}
@@ -0,0 +1,182 @@
+package com.xcs.wx.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 多模式字节匹配器（Aho–Corasick）
+ * <p>
+ * 将所有模式构造成一个确定有限自动机，扫描时每个字节只查一次状态转移表，
+ * 一次遍历即可找到所有模式的所有出现位置，耗时与模式数量无关。
+ * 构造完成后只读，可以在多个线程中共享。
+ *
+ * @author xcs
+ * @date 2024年7月11日09:24:16
+ */
+public class MultiPatternMatcher {
+
+    /**
+     * 字节取值数量
+     */
+    private static final int ALPHABET_SIZE = 256;
+
+    /**
+     * 匹配的模式
+     */
+    private final byte[][] patterns;
+
+    /**
+     * 状态转移表，transitions[state * 256 + byte] 为下一个状态
+     */
+    private final int[] transitions;
+
+    /**
+     * 每个状态结束时匹配到的模式下标，包括通过失败链接可达的模式
+     */
+    private final int[][] outputs;
+
+    /**
+     * 匹配回调
+     */
+    public interface MatchHandler {
+
+        /**
+         * 匹配到一个模式
+         *
+         * @param patternIndex 模式下标
+         * @param position     模式在缓冲区中的起始位置
+         */
+        void onMatch(int patternIndex, int position);
+    }
+
+    public MultiPatternMatcher(byte[]... patterns) {
+        this.patterns = patterns;
+        // 构造字典树
+        List<int[]> gotoTable = new ArrayList<>();
+        List<int[]> outputList = new ArrayList<>();
+        gotoTable.add(newState());
+        outputList.add(new int[0]);
+        for (int p = 0; p < patterns.length; p++) {
+            int state = 0;
+            for (byte b : patterns[p]) {
+                int next = gotoTable.get(state)[b & 0xFF];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.get(state)[b & 0xFF] = next;
+                    gotoTable.add(newState());
+                    outputList.add(new int[0]);
+                }
+                state = next;
+            }
+            outputList.set(state, append(outputList.get(state), p));
+        }
+
+        // 按层次遍历计算失败链接，并补全为完整的状态转移表
+        int stateCount = gotoTable.size();
+        int[] fail = new int[stateCount];
+        this.transitions = new int[stateCount * ALPHABET_SIZE];
+        this.outputs = new int[stateCount][];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            int next = gotoTable.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        outputs[0] = outputList.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            // 失败状态的输出也属于当前状态
+            outputs[state] = concat(outputList.get(state), outputs[fail[state]]);
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                int next = gotoTable.get(state)[c];
+                if (next < 0) {
+                    transitions[state * ALPHABET_SIZE + c] = transitions[fail[state] * ALPHABET_SIZE + c];
+                } else {
+                    transitions[state * ALPHABET_SIZE + c] = next;
+                    fail[next] = transitions[fail[state] * ALPHABET_SIZE + c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * 模式数量
+     *
+     * @return 模式数量
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * 模式长度
+     *
+     * @param patternIndex 模式下标
+     * @return 模式长度
+     */
+    public int length(int patternIndex) {
+        return patterns[patternIndex].length;
+    }
+
+    /**
+     * 最长模式的长度
+     *
+     * @return 最长模式的长度
+     */
+    public int maxLength() {
+        int max = 0;
+        for (byte[] pattern : patterns) {
+            max = Math.max(max, pattern.length);
+        }
+        return max;
+    }
+
+    /**
+     * 在缓冲区的指定范围内查找所有模式
+     *
+     * @param buffer  缓冲区
+     * @param from    起始位置（包含）
+     * @param to      结束位置（不包含）
+     * @param handler 匹配回调
+     */
+    public void search(byte[] buffer, int from, int to, MatchHandler handler) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = transitions[(state << 8) | (buffer[i] & 0xFF)];
+            int[] matched = outputs[state];
+            for (int patternIndex : matched) {
+                handler.onMatch(patternIndex, i - patterns[patternIndex].length + 1);
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET_SIZE];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
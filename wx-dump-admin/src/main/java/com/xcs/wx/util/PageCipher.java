@@ -0,0 +1,108 @@
+package com.xcs.wx.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * SQLCipher 页解密器
+ * <p>
+ * 每个线程持有一个已初始化的 AES/CBC/NoPadding 实例，同一个密钥只初始化一次。
+ * CBC 解密时每个分组只依赖前一个密文分组，因此先把页的 IV 当作一个密文分组送入解密器，
+ * 后续的页内容就会以该 IV 作为链接值解密，无需为每一页重新 init 和创建 IvParameterSpec，
+ * 稳定状态下解密一页不产生任何对象分配。
+ * <p>
+ * 非线程安全，通过 {@link #current(byte[])} 获取当前线程的实例。
+ *
+ * @author xcs
+ * @date 2024年7月3日09:42:18
+ */
+public class PageCipher {
+
+    /**
+     * 加密算法
+     */
+    private static final String TRANSFORMATION = "AES/CBC/NoPadding";
+
+    /**
+     * AES分组长度
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * 每个线程复用的解密器
+     */
+    private static final ThreadLocal<PageCipher> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 解密器
+     */
+    private final Cipher cipher;
+
+    /**
+     * 接收IV分组解密结果的临时区域，内容无意义
+     */
+    private final byte[] ivScratch = new byte[BLOCK_SIZE];
+
+    /**
+     * 当前使用的密钥
+     */
+    private byte[] key;
+
+    private PageCipher() throws GeneralSecurityException {
+        this.cipher = Cipher.getInstance(TRANSFORMATION);
+    }
+
+    /**
+     * 获取当前线程的解密器，并确保使用指定的密钥
+     *
+     * @param key 密钥
+     * @return PageCipher
+     * @throws GeneralSecurityException 初始化异常
+     */
+    public static PageCipher current(byte[] key) throws GeneralSecurityException {
+        PageCipher pageCipher = CURRENT.get();
+        if (pageCipher == null) {
+            pageCipher = new PageCipher();
+            CURRENT.set(pageCipher);
+        }
+        pageCipher.init(key);
+        return pageCipher;
+    }
+
+    /**
+     * 密钥变化时才重新初始化
+     *
+     * @param key 密钥
+     * @throws GeneralSecurityException 初始化异常
+     */
+    private void init(byte[] key) throws GeneralSecurityException {
+        if (Arrays.equals(this.key, key)) {
+            return;
+        }
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(new byte[BLOCK_SIZE]));
+        this.key = key.clone();
+    }
+
+    /**
+     * 解密一页的内容
+     *
+     * @param input        密文
+     * @param inputOffset  密文起始位置
+     * @param length       密文长度，必须是16的整数倍
+     * @param iv           初始化向量所在的数组
+     * @param ivOffset     初始化向量的起始位置
+     * @param output       明文输出数组
+     * @param outputOffset 明文起始位置
+     * @throws ShortBufferException 输出空间不足
+     */
+    public void decrypt(byte[] input, int inputOffset, int length, byte[] iv, int ivOffset, byte[] output, int outputOffset) throws ShortBufferException {
+        // 将IV作为上一个密文分组送入解密器，使其成为后续内容的链接值
+        cipher.update(iv, ivOffset, BLOCK_SIZE, ivScratch, 0);
+        // 解密页内容
+        cipher.update(input, inputOffset, length, output, outputOffset);
+    }
+}
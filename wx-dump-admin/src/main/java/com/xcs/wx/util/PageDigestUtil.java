@@ -0,0 +1,131 @@
+package com.xcs.wx.util;
+
+import com.xcs.wx.domain.bo.PageDigestBO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 逐页密文摘要工具类，摘要与解密后的文件存放在同一目录
+ *
+ * @author xcs
+ * @date 2024年7月4日15:06:40
+ */
+@Slf4j
+public class PageDigestUtil {
+
+    /**
+     * 摘要文件的后缀
+     */
+    private static final String SUFFIX = ".pages";
+
+    /**
+     * 断点文件的后缀
+     */
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /**
+     * 摘要文件的魔数
+     */
+    private static final int MAGIC = 0x57504447;
+
+    /**
+     * 摘要文件的版本
+     */
+    private static final int VERSION = 1;
+
+    private PageDigestUtil() {
+    }
+
+    /**
+     * 获取解密文件对应的摘要文件
+     *
+     * @param output 解密后的文件
+     * @return 摘要文件
+     */
+    public static File getDigestFile(String output) {
+        return new File(output + SUFFIX);
+    }
+
+    /**
+     * 获取解密文件对应的断点文件，断点文件与摘要文件格式相同，只记录已经连续写入完成的页
+     *
+     * @param output 解密后的文件
+     * @return 断点文件
+     */
+    public static File getCheckpointFile(String output) {
+        return new File(output + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * 读取摘要文件
+     *
+     * @param digestFile 摘要文件
+     * @return 摘要，不存在或者格式不正确时返回null
+     */
+    public static PageDigestBO read(File digestFile) {
+        if (!digestFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(digestFile.toPath())))) {
+            // 校验魔数与版本
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] salt = new byte[in.readUnsignedByte()];
+            in.readFully(salt);
+            long outputSize = in.readLong();
+            long outputLastModified = in.readLong();
+            long[] digests = new long[in.readInt()];
+            for (int i = 0; i < digests.length; i++) {
+                digests[i] = in.readLong();
+            }
+            return new PageDigestBO(salt, outputSize, outputLastModified, digests);
+        } catch (IOException e) {
+            log.warn("Failed to read the page digest {}", digestFile, e);
+        }
+        return null;
+    }
+
+    /**
+     * 写入摘要文件
+     *
+     * @param digestFile 摘要文件
+     * @param pageDigest 摘要
+     */
+    public static void write(File digestFile, PageDigestBO pageDigest) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(digestFile.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(pageDigest.getSalt().length);
+            out.write(pageDigest.getSalt());
+            out.writeLong(pageDigest.getOutputSize());
+            out.writeLong(pageDigest.getOutputLastModified());
+            out.writeInt(pageDigest.getDigests().length);
+            for (long digest : pageDigest.getDigests()) {
+                out.writeLong(digest);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write the page digest {}", digestFile, e);
+        }
+    }
+
+    /**
+     * 删除摘要文件
+     *
+     * @param digestFile 摘要文件
+     */
+    public static void delete(File digestFile) {
+        try {
+            Files.deleteIfExists(digestFile.toPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete the page digest {}", digestFile, e);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.xcs.wx.util;
 
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.InvalidKeyException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
@@ -23,31 +28,104 @@ public class Pbkdf2HmacUtil {
     private static final String ALGORITHM = "HmacSHA1";
 
     /**
-     * 使用HMAC算法进行PBKDF2密钥派生
+     * 摘要算法
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    /**
+     * SHA1分组长度
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * SHA1摘要长度
+     */
+    private static final int DIGEST_SIZE = 20;
+
+    /**
+     * 派生密钥缓存容量
+     */
+    private static final int CACHE_CAPACITY = 256;
+
+    /**
+     * 已校验通过的派生密钥缓存，key为(原始密钥, 盐值, 迭代次数, 密钥长度)的SHA-256摘要
+     */
+    private static final Cache<String, byte[]> DERIVED_KEY_CACHE = CacheUtil.newLRUCache(CACHE_CAPACITY);
+
+    /**
+     * 获取已缓存的派生密钥，同一个账号的同一个数据库重复解密时不再重新计算
+     *
+     * @param password   用户的密码
+     * @param salt       加盐值
+     * @param iterations 迭代次数
+     * @param dkLen      生成的密钥长度
+     * @return 派生出的密钥，未缓存时返回null
+     */
+    public static byte[] getCachedKey(byte[] password, byte[] salt, int iterations, int dkLen) {
+        byte[] derivedKey = DERIVED_KEY_CACHE.get(cacheKey(password, salt, iterations, dkLen));
+        // 返回副本，避免调用方修改缓存内容
+        return derivedKey == null ? null : derivedKey.clone();
+    }
+
+    /**
+     * 缓存派生密钥，只应缓存已经校验通过的密钥，避免错误的候选秘钥挤掉有效的缓存
+     *
+     * @param password   用户的密码
+     * @param salt       加盐值
+     * @param iterations 迭代次数
+     * @param dkLen      生成的密钥长度
+     * @param derivedKey 派生出的密钥
+     */
+    public static void cacheKey(byte[] password, byte[] salt, int iterations, int dkLen, byte[] derivedKey) {
+        DERIVED_KEY_CACHE.put(cacheKey(password, salt, iterations, dkLen), derivedKey.clone());
+    }
+
+    /**
+     * 计算缓存的key，使用摘要而不是原始密钥
+     *
+     * @param password   用户的密码
+     * @param salt       加盐值
+     * @param iterations 迭代次数
+     * @param dkLen      生成的密钥长度
+     * @return 缓存的key
+     */
+    private static String cacheKey(byte[] password, byte[] salt, int iterations, int dkLen) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 3 + password.length + salt.length);
+        buffer.putInt(password.length).put(password).put(salt).putInt(iterations).putInt(dkLen);
+        return DigestUtil.sha256Hex(buffer.array());
+    }
+
+    /**
+     * 使用HMAC-SHA1算法进行PBKDF2密钥派生
+     * <p>
+     * HMAC的内层与外层摘要都以固定的 key^ipad、key^opad 分组开头，这两个分组只在开始时压缩一次，
+     * 保存为SHA-1的中间状态；每次迭代从中间状态继续压缩，所有状态与分组都在固定的数组中，迭代过程不分配内存。
      *
      * @param password   用户的密码
      * @param salt       加盐值，用于增加加密的复杂度
      * @param iterations 迭代次数，增加计算量以抵抗暴力破解
      * @param dkLen      生成的密钥长度
      * @return 派生出的密钥
-     * @throws NoSuchAlgorithmException InvalidKeyException 抛出异常
+     * @throws NoSuchAlgorithmException 抛出异常
      */
-    public static byte[] pbkdf2Hmac(byte[] password, byte[] salt, int iterations, int dkLen) throws NoSuchAlgorithmException, InvalidKeyException {
-        // 初始化Mac实例
-        Mac mac = Mac.getInstance(ALGORITHM);
-        // 使用密码和算法初始化Mac
-        mac.init(new SecretKeySpec(password, ALGORITHM));
+    public static byte[] pbkdf2Hmac(byte[] password, byte[] salt, int iterations, int dkLen) throws NoSuchAlgorithmException {
+        // HMAC密钥超过分组长度时先做一次摘要
+        byte[] hmacKey = password.length > BLOCK_SIZE ? MessageDigest.getInstance(DIGEST_ALGORITHM).digest(password) : password;
+        HmacSha1 hmac = new HmacSha1(hmacKey);
 
         // 用于存储最终结果的数组
         byte[] result = new byte[dkLen];
         // 用于存储盐值和计数器的数组
         byte[] block = new byte[salt.length + 4];
-
         // 将盐值复制到block数组
         System.arraycopy(salt, 0, block, 0, salt.length);
 
+        // 每次迭代使用的固定缓冲区
+        byte[] u = new byte[DIGEST_SIZE];
+        byte[] t = new byte[DIGEST_SIZE];
+
         // 主循环，对每个派生块进行处理
-        for (int i = 1; i <= (dkLen + mac.getMacLength() - 1) / mac.getMacLength(); i++) {
+        for (int i = 1; i <= (dkLen + DIGEST_SIZE - 1) / DIGEST_SIZE; i++) {
             // 在block数组的盐值后面添加计数器
             block[salt.length] = (byte) (i >>> 24);
             block[salt.length + 1] = (byte) (i >>> 16);
@@ -55,26 +133,186 @@ public class Pbkdf2HmacUtil {
             block[salt.length + 3] = (byte) i;
 
             // 计算第一次迭代的结果U
-            byte[] u = mac.doFinal(block);
+            hmac.compute(block, block.length, u);
             // T数组，用于存储异或结果
-            byte[] t = u.clone();
+            System.arraycopy(u, 0, t, 0, DIGEST_SIZE);
 
             // 内循环，进行额外的迭代以增加安全性
             for (int j = 1; j < iterations; j++) {
                 // 对U再次进行HMAC运算
-                u = mac.doFinal(u);
+                hmac.compute(u, DIGEST_SIZE, u);
                 // 将结果U与T进行异或，累加迭代结果
-                for (int k = 0; k < t.length; k++) {
+                for (int k = 0; k < DIGEST_SIZE; k++) {
                     t[k] ^= u[k];
                 }
             }
             // 将T的内容复制到最终结果数组中
-            System.arraycopy(t, 0, result, (i - 1) * mac.getMacLength(), Math.min(t.length, dkLen - (i - 1) * mac.getMacLength()));
+            System.arraycopy(t, 0, result, (i - 1) * DIGEST_SIZE, Math.min(DIGEST_SIZE, dkLen - (i - 1) * DIGEST_SIZE));
         }
         // 返回最终的密钥
         return result;
     }
 
+    /**
+     * 基于预先计算的 key^ipad、key^opad 中间状态的HMAC-SHA1，所有缓冲区在创建时分配，不是线程安全的
+     */
+    private static final class HmacSha1 {
+
+        /**
+         * key^ipad 压缩后的中间状态
+         */
+        private final int[] innerState = new int[5];
+
+        /**
+         * key^opad 压缩后的中间状态
+         */
+        private final int[] outerState = new int[5];
+
+        /**
+         * 当前的摘要状态
+         */
+        private final int[] state = new int[5];
+
+        /**
+         * 消息扩展
+         */
+        private final int[] w = new int[80];
+
+        /**
+         * 当前分组
+         */
+        private final byte[] block = new byte[BLOCK_SIZE];
+
+        /**
+         * 内层摘要
+         */
+        private final byte[] innerDigest = new byte[DIGEST_SIZE];
+
+        private HmacSha1(byte[] hmacKey) {
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                block[i] = (byte) ((i < hmacKey.length ? hmacKey[i] : 0) ^ 0x36);
+            }
+            reset(state);
+            compress(block, 0);
+            System.arraycopy(state, 0, innerState, 0, 5);
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                block[i] = (byte) ((i < hmacKey.length ? hmacKey[i] : 0) ^ 0x5c);
+            }
+            reset(state);
+            compress(block, 0);
+            System.arraycopy(state, 0, outerState, 0, 5);
+        }
+
+        /**
+         * 计算一次HMAC
+         *
+         * @param message 消息
+         * @param length  消息长度
+         * @param output  输出缓冲区，可以与消息是同一个数组
+         */
+        private void compute(byte[] message, int length, byte[] output) {
+            digest(innerState, message, length, innerDigest);
+            digest(outerState, innerDigest, DIGEST_SIZE, output);
+        }
+
+        /**
+         * 从已经压缩了一个分组的中间状态开始，对消息做摘要
+         *
+         * @param initState 中间状态
+         * @param message   消息
+         * @param length    消息长度
+         * @param output    输出缓冲区
+         */
+        private void digest(int[] initState, byte[] message, int length, byte[] output) {
+            System.arraycopy(initState, 0, state, 0, 5);
+            int offset = 0;
+            // 完整的分组直接压缩
+            for (; length - offset >= BLOCK_SIZE; offset += BLOCK_SIZE) {
+                compress(message, offset);
+            }
+            // 剩余部分加上填充与总长度（包括key^pad分组）
+            int remaining = length - offset;
+            System.arraycopy(message, offset, block, 0, remaining);
+            block[remaining] = (byte) 0x80;
+            if (remaining + 1 > BLOCK_SIZE - Long.BYTES) {
+                Arrays.fill(block, remaining + 1, BLOCK_SIZE, (byte) 0);
+                compress(block, 0);
+                Arrays.fill(block, 0, BLOCK_SIZE - Long.BYTES, (byte) 0);
+            } else {
+                Arrays.fill(block, remaining + 1, BLOCK_SIZE - Long.BYTES, (byte) 0);
+            }
+            long bitLength = ((long) BLOCK_SIZE + length) << 3;
+            for (int i = 0; i < Long.BYTES; i++) {
+                block[BLOCK_SIZE - 1 - i] = (byte) (bitLength >>> (i * 8));
+            }
+            compress(block, 0);
+            for (int i = 0; i < 5; i++) {
+                output[i * 4] = (byte) (state[i] >>> 24);
+                output[i * 4 + 1] = (byte) (state[i] >>> 16);
+                output[i * 4 + 2] = (byte) (state[i] >>> 8);
+                output[i * 4 + 3] = (byte) state[i];
+            }
+        }
+
+        /**
+         * SHA-1初始状态
+         *
+         * @param h 状态
+         */
+        private static void reset(int[] h) {
+            h[0] = 0x67452301;
+            h[1] = 0xEFCDAB89;
+            h[2] = 0x98BADCFE;
+            h[3] = 0x10325476;
+            h[4] = 0xC3D2E1F0;
+        }
+
+        /**
+         * SHA-1分组压缩
+         *
+         * @param data   数据
+         * @param offset 分组起始位置
+         */
+        private void compress(byte[] data, int offset) {
+            for (int i = 0; i < 16; i++) {
+                int p = offset + i * 4;
+                w[i] = (data[p] << 24) | ((data[p + 1] & 0xff) << 16) | ((data[p + 2] & 0xff) << 8) | (data[p + 3] & 0xff);
+            }
+            for (int i = 16; i < 80; i++) {
+                w[i] = Integer.rotateLeft(w[i - 3] ^ w[i - 8] ^ w[i - 14] ^ w[i - 16], 1);
+            }
+            int a = state[0], b = state[1], c = state[2], d = state[3], e = state[4];
+            for (int i = 0; i < 80; i++) {
+                int f;
+                int k;
+                if (i < 20) {
+                    f = (b & c) | (~b & d);
+                    k = 0x5A827999;
+                } else if (i < 40) {
+                    f = b ^ c ^ d;
+                    k = 0x6ED9EBA1;
+                } else if (i < 60) {
+                    f = (b & c) | (b & d) | (c & d);
+                    k = 0x8F1BBCDC;
+                } else {
+                    f = b ^ c ^ d;
+                    k = 0xCA62C1D6;
+                }
+                int temp = Integer.rotateLeft(a, 5) + f + e + k + w[i];
+                e = d;
+                d = c;
+                c = Integer.rotateLeft(b, 30);
+                b = a;
+                a = temp;
+            }
+            state[0] += a;
+            state[1] += b;
+            state[2] += c;
+            state[3] += d;
+            state[4] += e;
+        }
+    }
+
     /**
      * 检查密钥是否有效
      *
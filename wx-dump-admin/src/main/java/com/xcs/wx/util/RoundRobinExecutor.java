@@ -0,0 +1,106 @@
+package com.xcs.wx.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 按分组轮流调度的执行器
+ * <p>
+ * 每个分组（账号）有自己的等待队列，同时运行的任务数不超过线程池大小，
+ * 有空闲线程时依次从每个分组取一个任务，避免先提交的账号占满线程池，后提交的账号一直排队。
+ *
+ * @author xcs
+ * @date 2024年7月8日10:26:37
+ */
+public class RoundRobinExecutor {
+
+    /**
+     * 实际执行任务的线程池
+     */
+    private final Executor delegate;
+
+    /**
+     * 同时运行的最大任务数
+     */
+    private final int maxRunning;
+
+    /**
+     * 每个分组的等待队列，按轮转顺序排列，队列为空的分组会被移除
+     */
+    private final Map<String, Deque<Runnable>> queues = new LinkedHashMap<>();
+
+    /**
+     * 正在运行的任务数
+     */
+    private int running;
+
+    public RoundRobinExecutor(Executor delegate, int maxRunning) {
+        this.delegate = delegate;
+        this.maxRunning = Math.max(1, maxRunning);
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param group 分组
+     * @param task  任务
+     */
+    public void execute(String group, Runnable task) {
+        synchronized (this) {
+            queues.computeIfAbsent(group, key -> new ArrayDeque<>()).add(task);
+        }
+        dispatch();
+    }
+
+    /**
+     * 有空闲名额时，从队首的分组取一个任务执行，并把该分组移到队尾
+     */
+    private void dispatch() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                if (running >= maxRunning || queues.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Deque<Runnable>>> iterator = queues.entrySet().iterator();
+                Map.Entry<String, Deque<Runnable>> first = iterator.next();
+                iterator.remove();
+                task = first.getValue().poll();
+                // 还有任务的分组排到队尾
+                if (!first.getValue().isEmpty()) {
+                    queues.put(first.getKey(), first.getValue());
+                }
+                running++;
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        finish();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 线程池拒绝时归还名额
+                synchronized (this) {
+                    running--;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 任务结束，归还名额并调度下一个任务
+     */
+    private void finish() {
+        synchronized (this) {
+            running--;
+        }
+        dispatch();
+    }
+}
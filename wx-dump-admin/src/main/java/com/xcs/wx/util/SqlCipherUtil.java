@@ -0,0 +1,147 @@
+package com.xcs.wx.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * 微信 SQLCipher 数据库的页结构工具类
+ * <p>
+ * 每一页固定 4096 字节，末尾 48 字节为保留字段（IV + hashMac + 填充），第一页的前 16 字节为盐值。
+ *
+ * @author xcs
+ * @date 2024年7月5日14:10:26
+ */
+public class SqlCipherUtil {
+
+    /**
+     * SQLite数据库的文件头
+     */
+    public static final byte[] SQLITE_FILE_HEADER = "SQLite format 3\u0000".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 一页的大小
+     */
+    public static final int DEFAULT_PAGESIZE = 4096;
+
+    /**
+     * 盐值长度
+     */
+    public static final int SALT_SIZE = 16;
+
+    /**
+     * 每页末尾保留字段的长度（IV + hashMac + 填充）
+     */
+    public static final int RESERVE_SIZE = 48;
+
+    /**
+     * IV长度
+     */
+    public static final int IV_SIZE = 16;
+
+    /**
+     * hashMac长度
+     */
+    private static final int HASH_MAC_SIZE = 20;
+
+    /**
+     * 迭代次数
+     */
+    private static final int ITERATIONS = 64000;
+
+    /**
+     * Key长度
+     */
+    private static final int HASH_KEY_LENGTH = 32;
+
+    private SqlCipherUtil() {
+    }
+
+    /**
+     * 根据第一页的盐值派生页密钥，并用第一页的hashMac校验，校验通过的密钥会被缓存
+     *
+     * @param password  微信秘钥
+     * @param firstPage 第一页密文
+     * @return 页密钥，秘钥不匹配时返回null
+     * @throws Exception 派生或者校验异常
+     */
+    public static byte[] deriveKey(byte[] password, byte[] firstPage) throws Exception {
+        byte[] salt = Arrays.copyOfRange(firstPage, 0, SALT_SIZE);
+        byte[] key = Pbkdf2HmacUtil.getCachedKey(password, salt, ITERATIONS, HASH_KEY_LENGTH);
+        if (key != null) {
+            return key;
+        }
+        key = verifyKey(password, firstPage);
+        if (key != null) {
+            Pbkdf2HmacUtil.cacheKey(password, salt, ITERATIONS, HASH_KEY_LENGTH, key);
+        }
+        return key;
+    }
+
+    /**
+     * 根据第一页的盐值派生页密钥，并用第一页的hashMac校验，不读写缓存，用于验证候选秘钥
+     *
+     * @param password  微信秘钥
+     * @param firstPage 第一页密文
+     * @return 页密钥，秘钥不匹配时返回null
+     * @throws Exception 派生或者校验异常
+     */
+    public static byte[] verifyKey(byte[] password, byte[] firstPage) throws Exception {
+        // 提取盐值
+        byte[] salt = Arrays.copyOfRange(firstPage, 0, SALT_SIZE);
+        // 提取第一页的内容与IV
+        byte[] firstPageBodyAndIv = Arrays.copyOfRange(firstPage, SALT_SIZE, DEFAULT_PAGESIZE - RESERVE_SIZE + IV_SIZE);
+        // 提取第一页的hashMac
+        int macOffset = DEFAULT_PAGESIZE - RESERVE_SIZE + IV_SIZE;
+        byte[] firstPageHashMac = Arrays.copyOfRange(firstPage, macOffset, macOffset + HASH_MAC_SIZE);
+
+        // 生成key
+        byte[] key = Pbkdf2HmacUtil.pbkdf2Hmac(password, salt, ITERATIONS, HASH_KEY_LENGTH);
+
+        byte[] macSalt = new byte[salt.length];
+        for (int i = 0; i < salt.length; i++) {
+            macSalt[i] = (byte) (salt[i] ^ 58);
+        }
+        return Pbkdf2HmacUtil.checkKey(key, macSalt, firstPageHashMac, firstPageBodyAndIv) ? key : null;
+    }
+
+    /**
+     * 解密一页，输出的明文页与SQLite页结构一致：第一页以文件头开始，保留字段原样保留
+     *
+     * @param pageCipher   当前线程的解密器
+     * @param page         密文页
+     * @param pageIndex    页号（从0开始）
+     * @param output       明文缓冲区
+     * @param outputOffset 明文写入位置
+     * @throws GeneralSecurityException 解密异常
+     */
+    public static void decryptPage(PageCipher pageCipher, byte[] page, long pageIndex, byte[] output, int outputOffset) throws GeneralSecurityException {
+        // 第一页的前16个字节是盐值，需要替换成SQLite文件头
+        int bodyOffset = 0;
+        if (pageIndex == 0) {
+            System.arraycopy(SQLITE_FILE_HEADER, 0, output, outputOffset, SALT_SIZE);
+            bodyOffset = SALT_SIZE;
+        }
+        // 直接解密到输出缓冲区
+        pageCipher.decrypt(page, bodyOffset, DEFAULT_PAGESIZE - RESERVE_SIZE - bodyOffset, page, DEFAULT_PAGESIZE - RESERVE_SIZE, output, outputOffset + bodyOffset);
+        // 保留字段原样写入
+        System.arraycopy(page, DEFAULT_PAGESIZE - RESERVE_SIZE, output, outputOffset + DEFAULT_PAGESIZE - RESERVE_SIZE, RESERVE_SIZE);
+    }
+
+    /**
+     * 检查页面是否为填充页面（全部为0），每次比较8个字节
+     *
+     * @param buffer 页面所在的缓冲区
+     * @param offset 页面在缓冲区中的起始位置
+     * @return 如果是填充页面返回true，否则返回false
+     */
+    public static boolean isPaddingPage(ByteBuffer buffer, int offset) {
+        for (int i = offset; i < offset + DEFAULT_PAGESIZE; i += Long.BYTES) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
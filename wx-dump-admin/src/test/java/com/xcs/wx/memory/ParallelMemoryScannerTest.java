@@ -0,0 +1,72 @@
+package com.xcs.wx.memory;
+
+import com.xcs.wx.util.BytePatternSearcher;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ParallelMemoryScanner 测试，带上限时结果必须与顺序扫描一致，与线程调度无关
+ *
+ * @author xcs
+ * @date 2024年7月18日11:05:20
+ */
+class ParallelMemoryScannerTest {
+
+    private static final long BASE_ADDRESS = 0x10000L;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void createPool() {
+        pool = new ForkJoinPool(8);
+    }
+
+    @AfterAll
+    static void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void limitedScanReturnsLowestAddresses() {
+        Random random = new Random(20240718L);
+        for (int n = 0; n < 200; n++) {
+            byte[] data = new byte[200_000 + random.nextInt(100_000)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) random.nextInt(3);
+            }
+            byte[] pattern = new byte[1 + random.nextInt(6)];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = (byte) random.nextInt(3);
+            }
+            int limit = 1 + random.nextInt(50);
+            ParallelMemoryScanner scanner = new ParallelMemoryScanner(pool,
+                    () -> new ByteArrayProcessMemoryReader(BASE_ADDRESS, data, 4096), 1024 + random.nextInt(8000));
+            assertEquals(naiveScan(data, pattern, limit), scanner.scan(0, Long.MAX_VALUE >>> 1, new BytePatternSearcher(pattern), limit));
+        }
+    }
+
+    /**
+     * 逐字节比较的顺序扫描，作为对照
+     */
+    private static List<Long> naiveScan(byte[] data, byte[] pattern, int limit) {
+        List<Long> found = new ArrayList<>();
+        for (int i = 0; i + pattern.length <= data.length && found.size() < limit; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                found.add(BASE_ADDRESS + i);
+            }
+        }
+        return found;
+    }
+}
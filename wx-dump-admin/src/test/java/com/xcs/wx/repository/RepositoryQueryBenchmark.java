@@ -0,0 +1,346 @@
+package com.xcs.wx.repository;
+
+import cn.hutool.core.io.FileUtil;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xcs.wx.config.DecryptProperties;
+import com.xcs.wx.config.SqliteProperties;
+import com.xcs.wx.constant.SqliteConstant;
+import com.xcs.wx.domain.bo.DecryptStatsBO;
+import com.xcs.wx.service.impl.DatabaseOptimizeServiceImpl;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * queryMsgByTalker 与 querySession 的基准测试，对比默认连接与调优后的只读连接
+ * <p>
+ * 生成若干个MSG分库与一个MicroMsg.db，分别在无索引与优化后（索引 + ANALYZE）两种情况下，
+ * 用默认配置与 application.yml 中的 sqlite 配置打开 Druid 连接池，执行与 Repository 相同的SQL。
+ * querySession 的SQL直接读取 SessionMapper.xml。不属于单元测试，在IDE中以测试classpath运行main方法：
+ * <pre>
+ * RepositoryQueryBenchmark [工作目录] [分库数量] [每个分库的消息数] [轮数]
+ * </pre>
+ *
+ * @author xcs
+ * @date 2024年7月18日14:26:03
+ */
+public class RepositoryQueryBenchmark {
+
+    /**
+     * 会话数量
+     */
+    private static final int TALKERS = 2000;
+
+    /**
+     * 每轮执行 queryMsgByTalker 的次数
+     */
+    private static final int MSG_QUERIES = 200;
+
+    /**
+     * 每轮执行 querySession 的次数
+     */
+    private static final int SESSION_QUERIES = 20;
+
+    /**
+     * 每页消息数，与 MsgRepositoryImpl 一致
+     */
+    private static final int PAGE_SIZE = 20;
+
+    public static void main(String[] args) throws Exception {
+        File workDir = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir") + "/wx-dump-benchmark");
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int rowsPerShard = args.length > 2 ? Integer.parseInt(args[2]) : 250_000;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        FileUtil.del(workDir);
+        FileUtil.mkdir(workDir);
+        List<String> msgDbs = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            String msgDb = new File(workDir, "MSG" + i + ".db").getAbsolutePath();
+            createMsgDb(msgDb, i, rowsPerShard);
+            msgDbs.add(msgDb);
+        }
+        // 与 MsgRepositoryImpl 一致，从最新的分库开始查询
+        Collections.reverse(msgDbs);
+        String microMsgDb = new File(workDir, "MicroMsg.db").getAbsolutePath();
+        createMicroMsgDb(microMsgDb);
+        String sessionSql = loadSessionSql();
+
+        SqliteProperties.Profile baseline = new SqliteProperties.Profile();
+        SqliteProperties tuned = tunedProperties();
+
+        run("no index", msgDbs, microMsgDb, sessionSql, baseline, tuned, rounds);
+        DatabaseOptimizeServiceImpl optimizeService = new DatabaseOptimizeServiceImpl(new DecryptProperties());
+        for (String msgDb : msgDbs) {
+            optimizeService.optimize(msgDb, new DecryptStatsBO());
+        }
+        optimizeService.optimize(microMsgDb, new DecryptStatsBO());
+        run("indexed", msgDbs, microMsgDb, sessionSql, baseline, tuned, rounds);
+    }
+
+    /**
+     * 分别以默认配置与调优配置执行一组查询
+     */
+    private static void run(String label, List<String> msgDbs, String microMsgDb, String sessionSql,
+                            SqliteProperties.Profile baseline, SqliteProperties tuned, int rounds) throws SQLException {
+        for (boolean tune : new boolean[]{false, true}) {
+            List<DruidDataSource> msgPools = new ArrayList<>();
+            for (String msgDb : msgDbs) {
+                msgPools.add(createPool(msgDb, tune ? tuned.resolve(FileUtil.getName(msgDb)) : baseline));
+            }
+            DruidDataSource sessionPool = createPool(microMsgDb, tune ? tuned.resolve(FileUtil.getName(microMsgDb)) : baseline);
+            try {
+                Random random = new Random(42);
+                for (int round = 0; round < rounds; round++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < MSG_QUERIES; i++) {
+                        queryMsgByTalker(msgPools, "wxid_" + random.nextInt(TALKERS));
+                    }
+                    double msgMillis = (System.nanoTime() - start) / 1e6 / MSG_QUERIES;
+                    start = System.nanoTime();
+                    for (int i = 0; i < SESSION_QUERIES; i++) {
+                        querySession(sessionPool, sessionSql);
+                    }
+                    double sessionMillis = (System.nanoTime() - start) / 1e6 / SESSION_QUERIES;
+                    System.out.printf("%-8s %-8s round %d: queryMsgByTalker %.2f ms, querySession %.2f ms%n",
+                            label, tune ? "tuned" : "baseline", round, msgMillis, sessionMillis);
+                }
+            } finally {
+                msgPools.forEach(DruidDataSource::close);
+                sessionPool.close();
+            }
+        }
+    }
+
+    /**
+     * 与 MsgRepositoryImpl 的JDBC查询一致，从最新的分库开始取满一页
+     */
+    private static int queryMsgByTalker(List<DruidDataSource> msgPools, String talker) throws SQLException {
+        int offset = PAGE_SIZE;
+        for (DruidDataSource pool : msgPools) {
+            if (offset <= 0) {
+                break;
+            }
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT * FROM MSG WHERE StrTalker = ? ORDER BY Sequence DESC limit " + offset)) {
+                statement.setString(1, talker);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        resultSet.getBytes("CompressContent");
+                        offset--;
+                    }
+                }
+            }
+        }
+        return PAGE_SIZE - offset;
+    }
+
+    /**
+     * 执行 SessionMapper.querySession 的SQL
+     */
+    private static int querySession(DruidDataSource sessionPool, String sessionSql) throws SQLException {
+        int count = 0;
+        try (Connection connection = sessionPool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sessionSql)) {
+            while (resultSet.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按 DatabaseServiceImpl 的方式创建连接池
+     */
+    private static DruidDataSource createPool(String dbPath, SqliteProperties.Profile profile) throws SQLException {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setDriverClassName(SqliteConstant.DRIVER_CLASS_NAME);
+        dataSource.setUrl(toUrl(dbPath, profile));
+        dataSource.setInitialSize(1);
+        dataSource.setMinIdle(1);
+        dataSource.setTestWhileIdle(false);
+        dataSource.setTestOnBorrow(false);
+        dataSource.setTestOnReturn(false);
+        List<String> initSqls = toInitSqls(profile);
+        if (!initSqls.isEmpty()) {
+            dataSource.setConnectionInitSqls(initSqls);
+        }
+        dataSource.init();
+        return dataSource;
+    }
+
+    /**
+     * 与 DatabaseServiceImpl.getUrl 一致的连接地址（不含内存数据库）
+     */
+    private static String toUrl(String dbPath, SqliteProperties.Profile profile) {
+        List<String> params = new ArrayList<>();
+        if (Boolean.TRUE.equals(profile.getReadOnly())) {
+            params.add("mode=ro");
+        }
+        if (Boolean.TRUE.equals(profile.getImmutable())) {
+            params.add("immutable=1");
+        }
+        if (params.isEmpty()) {
+            return SqliteConstant.URL_PREFIX + dbPath;
+        }
+        String path = new File(dbPath).getAbsolutePath().replace('\\', '/');
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        path = path.replace("%", "%25").replace("?", "%3f").replace("#", "%23").replace(" ", "%20");
+        return SqliteConstant.URL_PREFIX + "file://" + path + "?" + String.join("&", params);
+    }
+
+    /**
+     * 与 DatabaseServiceImpl.getInitSqls 一致的PRAGMA
+     */
+    private static List<String> toInitSqls(SqliteProperties.Profile profile) {
+        List<String> sqls = new ArrayList<>();
+        if (Boolean.TRUE.equals(profile.getQueryOnly())) {
+            sqls.add("PRAGMA query_only = 1");
+        }
+        if (profile.getMmapSize() != null) {
+            sqls.add("PRAGMA mmap_size = " + profile.getMmapSize());
+        }
+        if (profile.getCacheSize() != null) {
+            sqls.add("PRAGMA cache_size = " + profile.getCacheSize());
+        }
+        if (profile.getTempStore() != null && !profile.getTempStore().isEmpty()) {
+            sqls.add("PRAGMA temp_store = " + profile.getTempStore());
+        }
+        return sqls;
+    }
+
+    /**
+     * 与 application.yml 中 sqlite 配置一致
+     */
+    private static SqliteProperties tunedProperties() {
+        SqliteProperties properties = new SqliteProperties();
+        SqliteProperties.Profile msgOverride = new SqliteProperties.Profile();
+        msgOverride.setMmapSize(1024L * 1024 * 1024);
+        properties.getOverrides().put("MSG\\d*\\.db", msgOverride);
+        SqliteProperties.Profile appletOverride = new SqliteProperties.Profile();
+        appletOverride.setCacheSize(-2048);
+        properties.getOverrides().put("Applet\\.db", appletOverride);
+        return properties;
+    }
+
+    /**
+     * 生成一个MSG分库，消息平均分布在所有会话中
+     */
+    private static void createMsgDb(String dbPath, int shard, int rows) throws SQLException {
+        Random random = new Random(shard);
+        byte[] content = new byte[256];
+        try (Connection connection = DriverManager.getConnection(SqliteConstant.URL_PREFIX + dbPath)) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE MSG (localId INTEGER PRIMARY KEY AUTOINCREMENT, TalkerId INT DEFAULT 0, MsgSvrID INT, Type INT, SubType INT, "
+                        + "IsSender INT, CreateTime INT, Sequence INT DEFAULT 0, StatusEx INT DEFAULT 0, FlagEx INT, Status INT, MsgServerSeq INT, "
+                        + "MsgSequence INT, StrTalker TEXT, StrContent TEXT DEFAULT '', DisplayContent TEXT, Reserved0 INT DEFAULT 0, "
+                        + "Reserved1 INT DEFAULT 0, Reserved2 INT DEFAULT 0, Reserved3 INT DEFAULT 0, Reserved4 TEXT, Reserved5 TEXT, "
+                        + "Reserved6 TEXT, CompressContent BLOB, BytesExtra BLOB, BytesTrans BLOB)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO MSG (MsgSvrID, Type, SubType, IsSender, CreateTime, Sequence, "
+                    + "StrTalker, StrContent, CompressContent, BytesExtra) VALUES (?, ?, 0, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    long sequence = (long) shard * rows + i;
+                    random.nextBytes(content);
+                    statement.setLong(1, random.nextLong());
+                    statement.setInt(2, random.nextInt(10) == 0 ? 3 : 1);
+                    statement.setInt(3, random.nextInt(2));
+                    statement.setLong(4, 1_600_000_000L + sequence);
+                    statement.setLong(5, sequence * 1000);
+                    statement.setString(6, "wxid_" + random.nextInt(TALKERS));
+                    statement.setString(7, "message " + sequence + " " + Long.toHexString(random.nextLong()));
+                    statement.setBytes(8, content);
+                    statement.setBytes(9, Arrays.copyOf(content, 64));
+                    statement.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * 生成MicroMsg.db中 querySession 用到的表
+     */
+    private static void createMicroMsgDb(String dbPath) throws SQLException {
+        Random random = new Random(7);
+        try (Connection connection = DriverManager.getConnection(SqliteConstant.URL_PREFIX + dbPath)) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE Session (strUsrName TEXT PRIMARY KEY, nOrder INT DEFAULT 0, nUnReadCount INTEGER DEFAULT 0, "
+                        + "parentRef TEXT, Reserved0 INTEGER DEFAULT 0, Reserved1 TEXT, strNickName TEXT, nStatus INTEGER, nIsSend INTEGER, "
+                        + "strContent TEXT, nMsgType INTEGER, nMsgLocalID INTEGER, nMsgStatus INTEGER, nTime INTEGER)");
+                statement.execute("CREATE TABLE Contact (UserName TEXT, Alias TEXT, Remark TEXT, NickName TEXT, Type INTEGER)");
+                statement.execute("CREATE TABLE ContactHeadImgUrl (usrName TEXT PRIMARY KEY, smallHeadImgUrl TEXT, bigHeadImgUrl TEXT)");
+            }
+            try (PreparedStatement session = connection.prepareStatement("INSERT INTO Session (strUsrName, nOrder, strNickName, strContent, nMsgLocalID, nTime) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)");
+                 PreparedStatement headImg = connection.prepareStatement("INSERT INTO ContactHeadImgUrl (usrName, smallHeadImgUrl) VALUES (?, ?)")) {
+                for (int i = 0; i < 3000; i++) {
+                    String userName = i % 20 == 0 ? "gh_" + i : "wxid_" + i;
+                    session.setString(1, userName);
+                    session.setLong(2, 1_600_000_000L + random.nextInt(100_000_000));
+                    session.setString(3, "nick " + i);
+                    session.setString(4, "last message " + i);
+                    session.setInt(5, 1 + random.nextInt(1000));
+                    session.setLong(6, 1_600_000_000L + random.nextInt(100_000_000));
+                    session.addBatch();
+                    headImg.setString(1, userName);
+                    headImg.setString(2, "https://wx.qlogo.cn/mmhead/" + Long.toHexString(random.nextLong()) + "/132");
+                    headImg.addBatch();
+                }
+                session.executeBatch();
+                headImg.executeBatch();
+            }
+            try (PreparedStatement contact = connection.prepareStatement("INSERT INTO Contact (UserName, Remark, NickName, Type) VALUES (?, ?, ?, 3)")) {
+                for (int i = 0; i < 20_000; i++) {
+                    contact.setString(1, "wxid_" + i);
+                    contact.setString(2, random.nextBoolean() ? "" : "remark " + i);
+                    contact.setString(3, "nick " + i);
+                    contact.addBatch();
+                }
+                contact.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * 读取 SessionMapper.xml 中 querySession 的SQL
+     */
+    private static String loadSessionSql() throws Exception {
+        try (InputStream inputStream = RepositoryQueryBenchmark.class.getResourceAsStream("/mapper/SessionMapper.xml")) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            NodeList selects = factory.newDocumentBuilder().parse(inputStream).getElementsByTagName("select");
+            for (int i = 0; i < selects.getLength(); i++) {
+                Element select = (Element) selects.item(i);
+                if ("querySession".equals(select.getAttribute("id"))) {
+                    return select.getTextContent().trim();
+                }
+            }
+        }
+        throw new IllegalStateException("querySession not found in SessionMapper.xml");
+    }
+}
@@ -0,0 +1,185 @@
+package com.xcs.wx.sqlite;
+
+import com.xcs.wx.util.Pbkdf2HmacUtil;
+import com.xcs.wx.util.SqlCipherUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * SqliteReader 测试，按索引查找的结果与 SQLite 的查询结果一致
+ * <p>
+ * 用 sqlite-jdbc 建一个保留48字节的数据库，再按微信的格式加密，覆盖多层索引B-tree。
+ *
+ * @author xcs
+ * @date 2024年7月19日10:26:14
+ */
+class SqliteReaderTest {
+
+    private static final int TALKERS = 7;
+
+    private static final int ROWS = 6000;
+
+    @TempDir
+    static Path tempDir;
+
+    private static Connection connection;
+
+    private static SqliteReader reader;
+
+    @BeforeAll
+    static void createDatabase() throws Exception {
+        Path plain = tempDir.resolve("plain.db");
+        try (Connection create = DriverManager.getConnection("jdbc:sqlite:" + plain);
+             Statement statement = create.createStatement()) {
+            statement.execute("PRAGMA page_size = 4096");
+            statement.execute("PRAGMA user_version = 1");
+        }
+        // 与微信一致，每页保留48字节存放IV与hashMac
+        try (RandomAccessFile file = new RandomAccessFile(plain.toFile(), "rw")) {
+            file.seek(20);
+            file.write(SqlCipherUtil.RESERVE_SIZE);
+            file.seek(105);
+            file.writeShort(SqlCipherUtil.DEFAULT_PAGESIZE - SqlCipherUtil.RESERVE_SIZE);
+        }
+        connection = DriverManager.getConnection("jdbc:sqlite:" + plain);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE MSG (localId INTEGER PRIMARY KEY AUTOINCREMENT, StrTalker TEXT, Sequence INT, StrContent TEXT)");
+            statement.execute("CREATE INDEX MSG_StrTalker_Sequence ON MSG (StrTalker, Sequence)");
+        }
+        Random random = new Random(20240719L);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO MSG (StrTalker, Sequence, StrContent) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                // 长会话名让索引页更快分裂
+                insert.setString(1, "wxid_" + random.nextInt(TALKERS) + "_" + "x".repeat(60));
+                insert.setLong(2, 1_000_000L + (long) i * 7 + random.nextInt(7));
+                insert.setString(3, "content " + i);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        byte[] password = new byte[32];
+        random.nextBytes(password);
+        Path encrypted = tempDir.resolve("MSG0.db");
+        Files.write(encrypted, encrypt(Files.readAllBytes(plain), password, random));
+        reader = SqliteReader.open(encrypted.toString(), password, 64);
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        reader.close();
+        connection.close();
+    }
+
+    @Test
+    void scanIndexDescendingMatchesSql() throws Exception {
+        SqliteIndex index = reader.findIndex("MSG", "StrTalker", "Sequence");
+        assertNotNull(index);
+        Random random = new Random(42L);
+        for (int n = 0; n < 200; n++) {
+            String talker = "wxid_" + random.nextInt(TALKERS + 1) + "_" + "x".repeat(60);
+            Long upper = random.nextBoolean() ? null : 1_000_000L + random.nextInt(ROWS * 7 + 100);
+            int limit = 1 + random.nextInt(random.nextBoolean() ? 30 : ROWS);
+            List<Long> expected = new ArrayList<>();
+            String sql = "SELECT localId FROM MSG WHERE StrTalker = ?" + (upper == null ? "" : " AND Sequence < ?")
+                    + " ORDER BY Sequence DESC, localId DESC LIMIT ?";
+            try (PreparedStatement query = connection.prepareStatement(sql)) {
+                int parameter = 1;
+                query.setString(parameter++, talker);
+                if (upper != null) {
+                    query.setLong(parameter++, upper);
+                }
+                query.setInt(parameter, limit);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        expected.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            List<Long> actual = new ArrayList<>();
+            reader.scanIndexDescending(index, new Object[]{talker}, upper == null ? null : new Object[]{talker, upper}, row -> {
+                actual.add(row.getRowid());
+                return actual.size() < limit;
+            });
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void scanIndexMatchesSql() throws Exception {
+        SqliteIndex index = reader.findIndex("MSG", "StrTalker");
+        for (int t = 0; t <= TALKERS; t++) {
+            String talker = "wxid_" + t + "_" + "x".repeat(60);
+            List<Long> expected = new ArrayList<>();
+            try (PreparedStatement query = connection.prepareStatement("SELECT localId FROM MSG WHERE StrTalker = ? ORDER BY Sequence, localId")) {
+                query.setString(1, talker);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        expected.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            List<Long> actual = new ArrayList<>();
+            reader.scanIndex(index, new Object[]{talker}, row -> actual.add(row.getRowid()));
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * 按微信的格式加密：第一页以盐值开头，每页的保留字段存放IV，第一页还存放用于校验秘钥的hashMac
+     */
+    private static byte[] encrypt(byte[] plain, byte[] password, Random random) throws Exception {
+        int pageSize = SqlCipherUtil.DEFAULT_PAGESIZE;
+        int contentSize = pageSize - SqlCipherUtil.RESERVE_SIZE;
+        byte[] salt = new byte[SqlCipherUtil.SALT_SIZE];
+        random.nextBytes(salt);
+        byte[] key = Pbkdf2HmacUtil.pbkdf2Hmac(password, salt, 64000, 32);
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        byte[] output = new byte[plain.length];
+        for (int offset = 0; offset < plain.length; offset += pageSize) {
+            int bodyOffset = offset == 0 ? SqlCipherUtil.SALT_SIZE : 0;
+            byte[] iv = new byte[SqlCipherUtil.IV_SIZE];
+            random.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+            cipher.doFinal(plain, offset + bodyOffset, contentSize - bodyOffset, output, offset + bodyOffset);
+            System.arraycopy(iv, 0, output, offset + contentSize, iv.length);
+        }
+        System.arraycopy(salt, 0, output, 0, salt.length);
+        // 第一页的hashMac
+        byte[] macSalt = new byte[salt.length];
+        for (int i = 0; i < salt.length; i++) {
+            macSalt[i] = (byte) (salt[i] ^ 58);
+        }
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(Pbkdf2HmacUtil.pbkdf2Hmac(key, macSalt, 2, 32), "HmacSHA1"));
+        mac.update(output, SqlCipherUtil.SALT_SIZE, contentSize + SqlCipherUtil.IV_SIZE - SqlCipherUtil.SALT_SIZE);
+        mac.update(new byte[]{1, 0, 0, 0});
+        byte[] hashMac = mac.doFinal();
+        System.arraycopy(hashMac, 0, output, contentSize + SqlCipherUtil.IV_SIZE, hashMac.length);
+        return output;
+    }
+}
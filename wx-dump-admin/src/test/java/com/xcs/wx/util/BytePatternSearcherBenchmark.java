@@ -0,0 +1,80 @@
+package com.xcs.wx.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * BytePatternSearcher 在 100 MB 缓冲区上的基准测试，对比原来逐字节比较、每次匹配都复制数组的 findMatches
+ * <p>
+ * 不属于单元测试，在IDE中以测试classpath运行main方法：
+ * <pre>
+ * BytePatternSearcherBenchmark [缓冲区大小MB] [轮数]
+ * </pre>
+ *
+ * @author xcs
+ * @date 2024年7月18日15:58:31
+ */
+public class BytePatternSearcherBenchmark {
+
+    /**
+     * 埋入缓冲区的匹配数量
+     */
+    private static final int PLANTED = 50;
+
+    public static void main(String[] args) {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        byte[] data = new byte[sizeMb << 20];
+        Random random = new Random(20240718L);
+        random.nextBytes(data);
+        String[] patterns = {"\\Msg\\FTSContact", "iphone\0"};
+        for (String pattern : patterns) {
+            byte[] patternBytes = pattern.getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < PLANTED; i++) {
+                System.arraycopy(patternBytes, 0, data, random.nextInt(data.length - patternBytes.length), patternBytes.length);
+            }
+        }
+
+        for (String pattern : patterns) {
+            byte[] patternBytes = pattern.getBytes(StandardCharsets.US_ASCII);
+            BytePatternSearcher searcher = new BytePatternSearcher(patternBytes);
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                int naive = findMatches(data, patternBytes).length;
+                long naiveMillis = (System.nanoTime() - start) / 1_000_000;
+                start = System.nanoTime();
+                int found = searcher.findAll(data).length;
+                long searcherMillis = (System.nanoTime() - start) / 1_000_000;
+                if (naive != found) {
+                    throw new IllegalStateException("match count differs: " + naive + " != " + found);
+                }
+                System.out.printf("%-16s round %d: findMatches %d ms, BytePatternSearcher %d ms, %d matches%n",
+                        pattern.replace("\0", "\\0"), round, naiveMillis, searcherMillis, found);
+            }
+        }
+    }
+
+    /**
+     * 原来 WeChatServiceImpl 中的 findMatches，作为对照
+     */
+    private static int[] findMatches(byte[] inputBytes, byte[] patternBytes) {
+        int[] matches = new int[0];
+        for (int i = 0; i <= inputBytes.length - patternBytes.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < patternBytes.length; j++) {
+                if (inputBytes[i + j] != patternBytes[j]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                int[] newMatches = new int[matches.length + 1];
+                System.arraycopy(matches, 0, newMatches, 0, matches.length);
+                newMatches[matches.length] = i;
+                matches = newMatches;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,107 @@
+package com.xcs.wx.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * BytePatternSearcher 测试，结果与逐字节比较的查找一致
+ *
+ * @author xcs
+ * @date 2024年7月18日15:40:12
+ */
+class BytePatternSearcherTest {
+
+    @Test
+    void findAllMatchesNaiveSearch() {
+        Random random = new Random(20240718L);
+        for (int n = 0; n < 5000; n++) {
+            // 字母表很小，保证有大量重叠的匹配
+            byte[] data = randomBytes(random, random.nextInt(2000), 1 + random.nextInt(4));
+            byte[] pattern = randomBytes(random, 1 + random.nextInt(20), 1 + random.nextInt(4));
+            boolean[] wildcard = random.nextBoolean() ? randomWildcard(random, pattern.length) : null;
+            BytePatternSearcher searcher = new BytePatternSearcher(pattern, wildcard);
+            assertArrayEquals(naiveSearch(data, pattern, wildcard, 0, data.length, Integer.MAX_VALUE), searcher.findAll(data));
+        }
+    }
+
+    @Test
+    void searchWithinRangeMatchesNaiveSearch() {
+        Random random = new Random(42L);
+        for (int n = 0; n < 5000; n++) {
+            byte[] data = randomBytes(random, 1 + random.nextInt(2000), 1 + random.nextInt(4));
+            byte[] pattern = randomBytes(random, 1 + random.nextInt(20), 1 + random.nextInt(4));
+            boolean[] wildcard = random.nextBoolean() ? randomWildcard(random, pattern.length) : null;
+            int from = random.nextInt(data.length);
+            int to = from + random.nextInt(data.length - from + 1);
+            int limit = 1 + random.nextInt(10);
+            BytePatternSearcher searcher = new BytePatternSearcher(pattern, wildcard);
+            IntList matches = new IntList();
+            int found = searcher.search(data, from, to, limit, matches);
+            int[] expected = naiveSearch(data, pattern, wildcard, from, to, limit);
+            assertEquals(expected.length, found);
+            assertArrayEquals(expected, matches.toArray());
+            assertEquals(expected.length == 0 ? -1 : expected[0], searcher.indexOf(data, from, to));
+        }
+    }
+
+    @Test
+    void overlappingMatches() {
+        byte[] data = "aaaaa".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(new int[]{0, 1, 2}, new BytePatternSearcher("aaa".getBytes(StandardCharsets.US_ASCII)).findAll(data));
+        byte[] abab = "abababa".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(new int[]{0, 2, 4}, new BytePatternSearcher("aba".getBytes(StandardCharsets.US_ASCII)).findAll(abab));
+    }
+
+    @Test
+    void parseSignature() {
+        byte[] data = "xx iphone ipxone ip".getBytes(StandardCharsets.US_ASCII);
+        BytePatternSearcher searcher = BytePatternSearcher.parse("69 70 ?? 6F 6E 65");
+        assertEquals(6, searcher.length());
+        assertArrayEquals(new int[]{3, 10}, searcher.findAll(data));
+    }
+
+    @Test
+    void rejectsInvalidPattern() {
+        assertThrows(IllegalArgumentException.class, () -> new BytePatternSearcher(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> new BytePatternSearcher(new byte[2], new boolean[1]));
+    }
+
+    /**
+     * 逐字节比较的查找，作为对照
+     */
+    static int[] naiveSearch(byte[] data, byte[] pattern, boolean[] wildcard, int from, int to, int limit) {
+        IntList matches = new IntList();
+        for (int i = from; i + pattern.length <= to && matches.size() < limit; i++) {
+            int j = 0;
+            while (j < pattern.length && ((wildcard != null && wildcard[j]) || data[i + j] == pattern[j])) {
+                j++;
+            }
+            if (j == pattern.length) {
+                matches.add(i);
+            }
+        }
+        return matches.toArray();
+    }
+
+    private static byte[] randomBytes(Random random, int length, int alphabet) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('a' + random.nextInt(alphabet));
+        }
+        return bytes;
+    }
+
+    private static boolean[] randomWildcard(Random random, int length) {
+        boolean[] wildcard = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            wildcard[i] = random.nextInt(4) == 0;
+        }
+        return wildcard;
+    }
+}
@@ -0,0 +1,71 @@
+package com.xcs.wx.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * PageCipher 的基准测试，对比原来每页 Cipher.getInstance + init + doFinal 的解密方式，
+ * 输出每轮当前线程分配的字节数（ThreadMXBean）与解密速度
+ * <p>
+ * 不属于单元测试，在IDE中以测试classpath运行main方法：
+ * <pre>
+ * PageCipherBenchmark [数据大小MB] [轮数]
+ * </pre>
+ *
+ * @author xcs
+ * @date 2024年7月19日14:32:07
+ */
+public class PageCipherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(20240703L);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        byte[] pages = new byte[(sizeMb << 20) / SqlCipherUtil.DEFAULT_PAGESIZE * SqlCipherUtil.DEFAULT_PAGESIZE];
+        random.nextBytes(pages);
+        int pageCount = pages.length / SqlCipherUtil.DEFAULT_PAGESIZE;
+        byte[] output = new byte[pages.length];
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < rounds; round++) {
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < pageCount; i++) {
+                byte[] page = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+                System.arraycopy(pages, i * SqlCipherUtil.DEFAULT_PAGESIZE, page, 0, page.length);
+                byte[] decrypted = PageCipherTest.decryptPageWithDoDecrypt(key, page, i);
+                System.arraycopy(decrypted, 0, output, i * SqlCipherUtil.DEFAULT_PAGESIZE, decrypted.length);
+            }
+            long doFinalNanos = System.nanoTime() - start;
+            long doFinalAllocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+
+            allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            byte[] page = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+            for (int i = 0; i < pageCount; i++) {
+                System.arraycopy(pages, i * SqlCipherUtil.DEFAULT_PAGESIZE, page, 0, page.length);
+                SqlCipherUtil.decryptPage(PageCipher.current(key), page, i, output, i * SqlCipherUtil.DEFAULT_PAGESIZE);
+            }
+            long pageCipherNanos = System.nanoTime() - start;
+            long pageCipherAllocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+
+            System.out.printf("round %d: doFinal %.1f MB/s, %d bytes allocated; PageCipher %.1f MB/s, %d bytes allocated%n",
+                    round, speed(pages.length, doFinalNanos), doFinalAllocated, speed(pages.length, pageCipherNanos), pageCipherAllocated);
+        }
+    }
+
+    /**
+     * 计算速度
+     *
+     * @param bytes 字节数
+     * @param nanos 耗时（纳秒）
+     * @return MB/s
+     */
+    private static double speed(long bytes, long nanos) {
+        return (bytes / 1024.0 / 1024.0) / (nanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.xcs.wx.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * PageCipher 测试，解密结果必须与原来每页 Cipher.init + doFinal 的实现逐字节一致
+ *
+ * @author xcs
+ * @date 2024年7月19日14:08:51
+ */
+class PageCipherTest {
+
+    private static final int PAGES = 16;
+
+    @Test
+    void decryptPageMatchesDoDecrypt() throws Exception {
+        Random random = new Random(20240703L);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        byte[] pages = new byte[PAGES * SqlCipherUtil.DEFAULT_PAGESIZE];
+        random.nextBytes(pages);
+        // 同一个解密器连续解密多页，包括第一页的盐值偏移
+        byte[] output = new byte[pages.length];
+        byte[] page = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+        for (int i = 0; i < PAGES; i++) {
+            System.arraycopy(pages, i * SqlCipherUtil.DEFAULT_PAGESIZE, page, 0, page.length);
+            SqlCipherUtil.decryptPage(PageCipher.current(key), page, i, output, i * SqlCipherUtil.DEFAULT_PAGESIZE);
+        }
+        assertArrayEquals(decryptWithDoDecrypt(key, pages), output);
+    }
+
+    @Test
+    void switchingKeysMatchesDoDecrypt() throws Exception {
+        Random random = new Random(42L);
+        byte[][] keys = new byte[3][32];
+        for (byte[] key : keys) {
+            random.nextBytes(key);
+        }
+        for (int n = 0; n < 50; n++) {
+            byte[] key = keys[random.nextInt(keys.length)];
+            int pageIndex = random.nextInt(3);
+            byte[] page = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+            random.nextBytes(page);
+            byte[] output = new byte[SqlCipherUtil.DEFAULT_PAGESIZE];
+            SqlCipherUtil.decryptPage(PageCipher.current(key), page, pageIndex, output, 0);
+            assertArrayEquals(decryptPageWithDoDecrypt(key, page, pageIndex), output);
+        }
+    }
+
+    /**
+     * 原来 DecryptServiceImpl 中逐页解密整个文件的写法，作为对照
+     */
+    static byte[] decryptWithDoDecrypt(byte[] key, byte[] pages) throws Exception {
+        byte[] output = new byte[pages.length];
+        for (int i = 0; i < pages.length / SqlCipherUtil.DEFAULT_PAGESIZE; i++) {
+            byte[] page = Arrays.copyOfRange(pages, i * SqlCipherUtil.DEFAULT_PAGESIZE, (i + 1) * SqlCipherUtil.DEFAULT_PAGESIZE);
+            byte[] decrypted = decryptPageWithDoDecrypt(key, page, i);
+            System.arraycopy(decrypted, 0, output, i * SqlCipherUtil.DEFAULT_PAGESIZE, decrypted.length);
+        }
+        return output;
+    }
+
+    /**
+     * 原来的单页解密：第一页先写入SQLite文件头，跳过盐值后解密，保留字段原样写入
+     */
+    static byte[] decryptPageWithDoDecrypt(byte[] key, byte[] page, int pageIndex) throws Exception {
+        int bodyOffset = pageIndex == 0 ? SqlCipherUtil.SALT_SIZE : 0;
+        byte[] iv = Arrays.copyOfRange(page, page.length - 48, page.length - 32);
+        byte[] body = Arrays.copyOfRange(page, bodyOffset, page.length - 48);
+        byte[] reservedSegment = Arrays.copyOfRange(page, page.length - 48, page.length);
+        byte[] decryptedBody = doDecrypt(key, iv, body);
+        byte[] output = new byte[page.length];
+        if (pageIndex == 0) {
+            System.arraycopy(SqlCipherUtil.SQLITE_FILE_HEADER, 0, output, 0, SqlCipherUtil.SALT_SIZE);
+        }
+        System.arraycopy(decryptedBody, 0, output, bodyOffset, decryptedBody.length);
+        System.arraycopy(reservedSegment, 0, output, page.length - 48, reservedSegment.length);
+        return output;
+    }
+
+    /**
+     * 原来 DecryptServiceImpl 中的 doDecrypt
+     */
+    static byte[] doDecrypt(byte[] key, byte[] iv, byte[] input) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
+        IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
+        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivParameterSpec);
+        return cipher.doFinal(input);
+    }
+}
@@ -0,0 +1,84 @@
+package com.xcs.wx.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pbkdf2HmacUtil 测试，派生结果必须与基于 Mac 的实现完全一致
+ *
+ * @author xcs
+ * @date 2024年7月18日10:12:36
+ */
+class Pbkdf2HmacUtilTest {
+
+    @Test
+    void pbkdf2HmacMatchesMac() throws Exception {
+        Random random = new Random(20240718L);
+        for (int n = 0; n < 200; n++) {
+            // 覆盖超过分组长度的密钥、多分组的盐值以及不是摘要长度整数倍的密钥长度
+            byte[] password = new byte[1 + random.nextInt(150)];
+            byte[] salt = new byte[random.nextInt(140)];
+            random.nextBytes(password);
+            random.nextBytes(salt);
+            int iterations = 1 + random.nextInt(5);
+            int dkLen = 1 + random.nextInt(70);
+            assertArrayEquals(pbkdf2HmacWithMac(password, salt, iterations, dkLen), Pbkdf2HmacUtil.pbkdf2Hmac(password, salt, iterations, dkLen));
+        }
+    }
+
+    @Test
+    void pbkdf2HmacMatchesMacWithWeChatParameters() throws Exception {
+        Random random = new Random(64000L);
+        byte[] password = new byte[32];
+        byte[] salt = new byte[16];
+        random.nextBytes(password);
+        random.nextBytes(salt);
+        assertArrayEquals(pbkdf2HmacWithMac(password, salt, 64000, 32), Pbkdf2HmacUtil.pbkdf2Hmac(password, salt, 64000, 32));
+    }
+
+    @Test
+    void onlyCachedKeysAreReturned() {
+        byte[] password = new byte[32];
+        byte[] salt = new byte[16];
+        salt[0] = 1;
+        assertNull(Pbkdf2HmacUtil.getCachedKey(password, salt, 64000, 32));
+        byte[] key = new byte[32];
+        key[0] = 7;
+        Pbkdf2HmacUtil.cacheKey(password, salt, 64000, 32, key);
+        assertArrayEquals(key, Pbkdf2HmacUtil.getCachedKey(password, salt, 64000, 32));
+        assertNull(Pbkdf2HmacUtil.getCachedKey(password, salt, 2, 32));
+    }
+
+    /**
+     * 原来基于 Mac.doFinal 的实现，作为对照
+     */
+    private static byte[] pbkdf2HmacWithMac(byte[] password, byte[] salt, int iterations, int dkLen) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(password, "HmacSHA1"));
+        byte[] result = new byte[dkLen];
+        byte[] block = new byte[salt.length + 4];
+        System.arraycopy(salt, 0, block, 0, salt.length);
+        for (int i = 1; i <= (dkLen + mac.getMacLength() - 1) / mac.getMacLength(); i++) {
+            block[salt.length] = (byte) (i >>> 24);
+            block[salt.length + 1] = (byte) (i >>> 16);
+            block[salt.length + 2] = (byte) (i >>> 8);
+            block[salt.length + 3] = (byte) i;
+            byte[] u = mac.doFinal(block);
+            byte[] t = u.clone();
+            for (int j = 1; j < iterations; j++) {
+                u = mac.doFinal(u);
+                for (int k = 0; k < t.length; k++) {
+                    t[k] ^= u[k];
+                }
+            }
+            System.arraycopy(t, 0, result, (i - 1) * mac.getMacLength(), Math.min(t.length, dkLen - (i - 1) * mac.getMacLength()));
+        }
+        return result;
+    }
+}